@@ -0,0 +1,261 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * ArtistListAdapter - RecyclerView adapter to store and render artist name and image from
+ *     ArtistItem, rows are keyed by artist Spotify ID
+ *
+ *     this class is used by ArtistSearchFragment and SearchResultHolder
+ *
+ *     the adapter also pages through search results: as the user nears the end of the list
+ *     the next page is requested from SearchResultHolder, one page at a time, duplicates are
+ *     dropped and no more than MAX_ARTIST_ITEMS are kept for very broad queries
+ *
+ *     in two-pane mode the selected artist stays highlighted, by key, across updates
+ *
+ */
+
+public class ArtistListAdapter extends DiffingListAdapter<ArtistItem, ArtistListAdapter.ViewHolder> {
+    private final String LOG_TAG = ArtistListAdapter.class.getSimpleName();
+
+    // page sizes, the first page is small so first results come back faster
+    public  static final int FIRST_PAGE_LIMIT = 10;
+    public  static final int NEXT_PAGE_LIMIT  = 20;
+
+    // stop paging once this many artists are in the list
+    private static final int MAX_ARTIST_ITEMS = 200;
+
+    // start loading the next page when this close to the end of the list
+    private static final int PAGE_THRESHOLD   = 5;
+
+    private Context        myContext;
+    private LayoutInflater myLayoutInflater;
+
+    // paging state for the query shown in this adapter, based on the latest items
+    private String             mySearchQuery;
+    private SearchResultHolder mySearchResults;
+    private int                myNextOffset;
+    private boolean            myHasMorePages;
+    private HashSet<String>    myArtistIds = new HashSet<String>();
+
+    // key of the highlighted artist, only used when the list is in single choice mode
+    private final boolean mySingleChoice;
+    private String        mySelectedKey;
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        ImageView artistImageView;
+        TextView  artistTextView;
+
+        ViewHolder (View itemView) {
+            super (itemView);
+
+            // get and save references to the artist_list_item view elements
+            artistImageView = (ImageView) itemView.findViewById(R.id.artist_icon);
+            artistTextView  = (TextView)  itemView.findViewById(R.id.artist_name);
+        }
+    }
+
+    // constructor used to populate adapter with list of artist items
+    public ArtistListAdapter (Context context, List<ArtistItem> items) {
+        super (items, Metrics.GAUGE_ARTIST_ROWS);
+
+        // save reference to context
+        this.myContext = context;
+
+        // get layout inflater reference from context
+        this.myLayoutInflater = (LayoutInflater) this.myContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+
+        // the two-pane layout keeps the selected artist highlighted
+        this.mySingleChoice = context.getResources().getBoolean(R.bool.artist_list_single_choice);
+    }
+
+    // get list of artist items from adapter, used to save state
+    public ArrayList<ArtistItem> getArtistItems () {
+        return new ArrayList<ArtistItem>(getLatestItems());
+    }
+
+    @Override
+    public String getItemKey (ArtistItem artistItem) {
+        return artistItem.artistSpotifyId;
+    }
+
+    @Override
+    public boolean areContentsTheSame (ArtistItem oldItem, ArtistItem newItem) {
+        return equalStrings(oldItem.artistName, newItem.artistName) &&
+                equalStrings(oldItem.artistImageURL, newItem.artistImageURL);
+    }
+
+    private static boolean equalStrings (String lhs, String rhs) {
+        return (lhs == null) ? (rhs == null) : lhs.equals(rhs);
+    }
+
+    /**
+     * startPaging - remember the query shown in this adapter so further pages can be loaded,
+     *     used after the first page arrives and when the list is restored from saved state
+     */
+    public void startPaging (String searchQuery, SearchResultHolder searchResults) {
+        List<ArtistItem> artistItems = getLatestItems();
+
+        mySearchQuery   = searchQuery;
+        mySearchResults = searchResults;
+        myNextOffset    = artistItems.size();
+        myHasMorePages  = (searchQuery != null) && (searchQuery.isEmpty() == false) &&
+                (artistItems.size() > 0) && (artistItems.size() < MAX_ARTIST_ITEMS);
+
+        myArtistIds.clear();
+        for (ArtistItem artistItem : artistItems) {
+            myArtistIds.add(artistItem.artistSpotifyId);
+        }
+    }
+
+    // replaceArtistItems -- replace the list contents, only changed rows are updated
+    public void replaceArtistItems (List<ArtistItem> artistItems) {
+        submitItems(artistItems);
+    }
+
+    /**
+     * showFirstPage - replace the list with the first page of results for a query and start
+     *     paging, only changed rows are updated
+     *
+     *     artistItems is null when nothing was found, total is -1 when not known (cached page)
+     */
+    public void showFirstPage (String searchQuery, SearchResultHolder searchResults,
+                               List<ArtistItem> artistItems, int limit, int total) {
+        ArrayList<ArtistItem> newItems = new ArrayList<ArtistItem>();
+
+        mySearchQuery   = searchQuery;
+        mySearchResults = searchResults;
+        myNextOffset    = 0;
+        myHasMorePages  = false;
+        myArtistIds.clear();
+
+        if (artistItems != null) {
+            appendPage(newItems, artistItems, 0, limit, total);
+        }
+        submitItems(newItems);
+    }
+
+    /**
+     * addPage - add a later page of results, only the new rows are inserted
+     *
+     *     artistItems is null when the request failed, total is -1 when not known
+     */
+    public void addPage (List<ArtistItem> artistItems, int offset, int limit, int total) {
+        if (artistItems == null) {
+            // leave paging on, scrolling again will retry
+            return;
+        }
+
+        ArrayList<ArtistItem> newItems = new ArrayList<ArtistItem>(getLatestItems());
+        appendPage(newItems, artistItems, offset, limit, total);
+        submitItems(newItems);
+    }
+
+    // appendPage -- add artists not already in the list and update the paging state
+    private void appendPage (ArrayList<ArtistItem> newItems, List<ArtistItem> artistItems,
+                             int offset, int limit, int total) {
+        for (ArtistItem artistItem : artistItems) {
+            if ( (newItems.size() < MAX_ARTIST_ITEMS) && myArtistIds.add(artistItem.artistSpotifyId) ) {
+                newItems.add(artistItem);
+            }
+        }
+
+        myNextOffset   = offset + artistItems.size();
+        myHasMorePages = (artistItems.size() >= limit) &&
+                ( (total < 0) || (myNextOffset < total) ) &&
+                (newItems.size() < MAX_ARTIST_ITEMS);
+    }
+
+    // loadNextPage -- start loading the next page if the user is near the end of the list
+    public void loadNextPage (int lastVisiblePosition) {
+        if ( !myHasMorePages || (lastVisiblePosition < getLatestItems().size() - PAGE_THRESHOLD) ) {
+            return;
+        }
+
+        // the holder ignores the request while a page is already loading
+        if (mySearchResults.loadArtistPage(mySearchQuery, myNextOffset, NEXT_PAGE_LIMIT)) {
+            Log.d(LOG_TAG, "loading page at offset ==> " + myNextOffset);
+        }
+    }
+
+    // cancelPaging -- stop the page request in flight and stop paging
+    public void cancelPaging () {
+        if (mySearchResults != null) {
+            mySearchResults.cancelArtistPage();
+        }
+        myHasMorePages = false;
+    }
+
+    // setSelectedPosition -- highlight the artist at this position in single choice mode
+    public void setSelectedPosition (int position) {
+        if (mySingleChoice) {
+            setSelectedKey(getItemKey(getItem(position)));
+        }
+    }
+
+    // clearSelection -- remove the highlight, if any
+    public void clearSelection () {
+        setSelectedKey(null);
+    }
+
+    // setSelectedKey -- rebind just the rows whose highlight changes
+    private void setSelectedKey (String selectedKey) {
+        String oldKey = mySelectedKey;
+        mySelectedKey = selectedKey;
+
+        List<ArtistItem> artistItems = getItems();
+        for (int i = 0; i < artistItems.size(); i++) {
+            String key = getItemKey(artistItems.get(i));
+            if ( (key != null) && (key.equals(oldKey) || key.equals(selectedKey)) ) {
+                notifyItemChanged(i);
+            }
+        }
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder (ViewGroup parent, int viewType) {
+        // inflate each "artist_list_item" and pass clicks on to the fragment
+        ViewHolder itemHolder = new ViewHolder(
+                myLayoutInflater.inflate(R.layout.artist_list_item, parent, false));
+        listenForClicks(itemHolder);
+        return itemHolder;
+    }
+
+    @Override
+    protected void bindItem (ViewHolder itemHolder, ArtistItem artistItem) {
+        // populate artist name and show if it is the selected artist
+        itemHolder.artistTextView.setText(artistItem.artistName);
+        itemHolder.itemView.setActivated(
+                (mySelectedKey != null) && mySelectedKey.equals(artistItem.artistSpotifyId));
+
+        // load artist image using "Picasso" or with a default image if the URL is not valid
+        if (artistItem.artistImageValid) {
+            try {
+                // decode at row size, the URL may be larger when Spotify has no closer variant
+                Picasso.with(myContext).load(artistItem.artistImageURL)
+                        .resizeDimen(R.dimen.list_item_image_size, R.dimen.list_item_image_size)
+                        .centerInside()
+                        .into(itemHolder.artistImageView);
+            } catch (Exception e) {
+                Log.v(LOG_TAG, "Picasso call failed" + e.toString());
+                itemHolder.artistImageView.setImageResource(R.drawable.ic_artist_image);
+            }
+        } else {
+            itemHolder.artistImageView.setImageResource(R.drawable.ic_artist_image);
+        }
+    }
+}
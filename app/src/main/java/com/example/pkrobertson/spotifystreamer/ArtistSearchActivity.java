@@ -208,7 +208,7 @@ public class ArtistSearchActivity extends AppCompatActivity
         if (closePlayTracksDialog()) {
             // stop playback if back pressed and we're not actively playing a track
             if ( (mPlayTracksService != null) &&
-                    (mPlayTracksService.getState() != PlayTracksService.PlayTracksState.PLAYTRACKS_PLAYING) ) {
+                    (mPlayTracksService.getState() != PlayTracksState.PLAYTRACKS_PLAYING) ) {
                 unbindPlayTracksService();
                 stopService(new Intent(this, PlayTracksService.class));
             }
@@ -278,13 +278,14 @@ public class ArtistSearchActivity extends AppCompatActivity
      */
     @Override
     public void onTrackSelected (ArrayList<TopTrackItem> topTrackItems, int topTrackSelection) {
-        Log.d (LOG_TAG, "onTrackSelected ==>" + topTrackItems.toString());
+        Log.d (LOG_TAG, "onTrackSelected ==> " + topTrackItems.size() + " tracks");
 
         // no need to check for "mTwoPaneView" as onTracksSelected is only called in two panes...
-        // launch PlayTracksService intent and pass in the tracks and selected track
+        // launch PlayTracksService intent and pass in the track session and selected track
         Intent startIntent = new Intent(this, PlayTracksService.class);
         startIntent.setAction(PlayTracksService.ACTION_START);
-        startIntent.putExtra(PlayTracksService.ARRAY_KEY, topTrackItems);
+        startIntent.putExtra(PlayTracksService.SESSION_KEY,
+                TrackRepository.getInstance().putTracks(topTrackItems));
         startIntent.putExtra(PlayTracksService.POSITION_KEY, topTrackSelection);
         startService(startIntent);
 
@@ -312,7 +313,7 @@ public class ArtistSearchActivity extends AppCompatActivity
 
         // stop the service if music is not playing when dismissed
         if ((mPlayTracksService != null) &&
-                (mPlayTracksService.getState() != PlayTracksService.PlayTracksState.PLAYTRACKS_PLAYING)) {
+                (mPlayTracksService.getState() != PlayTracksState.PLAYTRACKS_PLAYING)) {
             unbindPlayTracksService();
             stopService(new Intent(this, PlayTracksService.class));
         }
@@ -1,8 +1,15 @@
 package com.example.pkrobertson.spotifystreamer;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -10,9 +17,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
-import android.widget.AdapterView;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
@@ -23,7 +28,8 @@ import kaaes.spotify.webapi.android.models.Artist;
  * ArtistSearchFragment - a fragment that holds the "fragment_artist_search view and
  *     handles searching for artists
  *
- *     the lifetime of this fragment is managed by ArtistSearchActivity
+ *     the lifetime of this fragment is managed by ArtistSearchActivity, searches in flight are
+ *     owned by SearchResultHolder so they carry on across configuration changes
  *
  */
 
@@ -33,16 +39,36 @@ public class ArtistSearchFragment extends Fragment {
     // used to store/retrieve ArtistItem context on saveInstanceState/onCreate
     private final String ARTIST_ARRAY_KEY    = "artist_items";
     private final String ARTIST_POSITION_KEY = "artist_selection";
+    private final String ARTIST_QUERY_KEY    = "artist_query";
     private  ArrayList<ArtistItem> artistArray;
 
     // hold reference for elements within the fragment/view
-    private EditText artistSearchText;
-    private ListView artistListView;
-    private TextView artistListStatus;
+    private EditText            artistSearchText;
+    private RecyclerView        artistListView;
+    private LinearLayoutManager artistLayoutManager;
+    private TextView            artistListStatus;
 
     // artistAdapter is used to populate and manage artistListView
-    private ArtistListViewAdapter artistAdapter;
-    private int artistListViewPosition = ListView.INVALID_POSITION;
+    private ArtistListAdapter artistAdapter;
+    private int artistListViewPosition = RecyclerView.NO_POSITION;
+
+    // holder of the search in flight and the query it was started for, a newer query always
+    // cancels the older search so only the latest results reach the adapter
+    private SearchResultHolder searchResults;
+    private String             artistSearchQuery = "";
+
+    // used to preload top tracks for visible artists once scrolling stops
+    private TopTracksPrefetcher topTracksPrefetcher;
+    private int                 artistListScrollState = RecyclerView.SCROLL_STATE_IDLE;
+
+    // used to debounce search as you type, search runs once typing pauses
+    private final Handler  searchHandler = new Handler();
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startArtistSearch(artistSearchText.getText().toString().trim(), false);
+        }
+    };
 
     public interface SelectArtistInterface {
         /*
@@ -57,18 +83,24 @@ public class ArtistSearchFragment extends Fragment {
 
         // assume we do not have a saved state
         artistArray            = null;
-        artistListViewPosition = ListView.INVALID_POSITION;
+        artistListViewPosition = RecyclerView.NO_POSITION;
+
+        // find the holder that may still have our search in flight
+        searchResults = SearchResultHolder.getInstance(getFragmentManager());
 
         // restore array of ArtistList items from savedInstanceState
         // the array is then used to initialize the list view adapter during OnCreateView
         // the position is used to scroll to the selected artist
         if (savedInstanceState != null) {
             if (savedInstanceState.containsKey(ARTIST_ARRAY_KEY)) {
-                artistArray = savedInstanceState.getParcelableArrayList(ARTIST_ARRAY_KEY);
+                artistArray = ItemListCodec.decodeArtists(savedInstanceState.getByteArray(ARTIST_ARRAY_KEY));
             }
             if (savedInstanceState.containsKey(ARTIST_POSITION_KEY)) {
                 artistListViewPosition = savedInstanceState.getInt(ARTIST_POSITION_KEY);
             }
+            if (savedInstanceState.containsKey(ARTIST_QUERY_KEY)) {
+                artistSearchQuery = savedInstanceState.getString(ARTIST_QUERY_KEY);
+            }
         }
     }
 
@@ -79,12 +111,20 @@ public class ArtistSearchFragment extends Fragment {
             // create array from contents of the adapter
             artistArray = artistAdapter.getArtistItems();
 
-            // save array to the bundle
-            outInstanceState.putParcelableArrayList(ARTIST_ARRAY_KEY, artistArray);
+            if (getActivity().isChangingConfigurations()) {
+                // the holder outlives the change, hand the array over as is
+                searchResults.keepArtistItems(artistArray, artistListStatus.getText());
+            } else {
+                // save array to the bundle in compact form
+                outInstanceState.putByteArray(ARTIST_ARRAY_KEY, ItemListCodec.encodeArtists(artistArray));
+            }
 
             // save selected position to the bundle
             outInstanceState.putInt(ARTIST_POSITION_KEY, artistListViewPosition);
         }
+
+        // save last query so restoring the search text does not start a new search
+        outInstanceState.putString(ARTIST_QUERY_KEY, artistSearchQuery);
         super.onSaveInstanceState(outInstanceState);
     }
 
@@ -115,26 +155,14 @@ public class ArtistSearchFragment extends Fragment {
                 // nothing to do unless search was clicked and some text was entered
                 if ( (editorAction == EditorInfo.IME_ACTION_SEARCH) && (searchText.isEmpty() == false)) {
 
-                    // show searching status that appears until the list view is populated
-                    artistListStatus.setText(String.format (getString(R.string.artist_searching), searchText));
-
                     // hide the darn keypad...not sure why Android makes this so difficult
                     artistSearchText.clearFocus();
                     InputMethodManager imm = (InputMethodManager)textView.getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
                     imm.hideSoftInputFromWindow(artistSearchText.getWindowToken(), InputMethodManager.HIDE_NOT_ALWAYS);
 
-                    // create new, empty adapter to handle artist search results
-                    artistArray = new ArrayList<ArtistItem>();
-                    artistAdapter = new ArtistListViewAdapter (getActivity(),
-                            R.layout.artist_list_item,
-                            artistArray);
-
-                    // assign the adapter to the artist list view
-                    artistListView.setAdapter(artistAdapter);
-
-                    // kick off artist search task that populates the adaptor when finished
-                    ArtistSearchTask searchTask = new ArtistSearchTask(artistAdapter, artistListStatus);
-                    searchTask.execute(searchText);
+                    // search now rather than waiting for the typing delay
+                    searchHandler.removeCallbacks(searchRunnable);
+                    startArtistSearch(searchText.trim(), true);
 
                     // leave text in text box, clear if back pressed
                     handled = true;
@@ -144,51 +172,205 @@ public class ArtistSearchFragment extends Fragment {
             }
         });
 
+        // search as you type, each keystroke restarts the typing delay
+        artistSearchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                searchHandler.removeCallbacks(searchRunnable);
+                if (incrementalSearchEnabled()) {
+                    searchHandler.postDelayed(searchRunnable, searchDebounceDelay());
+                }
+            }
+        });
+
         // Get a reference to the artist list view
-        artistListView = (ListView) rootView.findViewById(R.id.artist_list_view);
+        artistListView      = (RecyclerView) rootView.findViewById(R.id.artist_list_view);
+        artistLayoutManager = new LinearLayoutManager(getActivity());
+        artistListView.setLayoutManager(artistLayoutManager);
 
         // Get and save reference to text view used to show progress updates and results
         artistListStatus = (TextView) rootView.findViewById(R.id.artist_search_status);
 
+        // prefetch top tracks for rows that are visible when the list fills or stops scrolling
+        topTracksPrefetcher = TopTracksPrefetcher.getInstance(getActivity());
+        artistListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int scrollState) {
+                artistListScrollState = scrollState;
+                if (scrollState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleArtists();
+                }
+            }
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // load the next page of artists as we near the end of the list
+                artistAdapter.loadNextPage(artistLayoutManager.findLastVisibleItemPosition() + 1);
+
+                // also called when the visible rows change after an update, skip while the
+                // user is scrolling
+                if (artistListScrollState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleArtists();
+                }
+            }
+        });
+
+        // after a configuration change the list, and any results that arrived meanwhile, are
+        // waiting in the holder
+        ArrayList<ArtistItem> retainedArray = searchResults.takeArtistItems();
+        if (retainedArray != null) {
+            artistArray = retainedArray;
+        }
+        CharSequence retainedStatus = searchResults.takeArtistStatus();
+        if (retainedStatus != null) {
+            artistListStatus.setText(retainedStatus);
+        }
+
+        // the adapter lives as long as the view, each search only updates the rows that change
+        if (artistArray == null) {
+            artistArray = new ArrayList<ArtistItem>();
+        }
+
+        // create adapter and populate with empty or saved ArtistItem information
+        artistAdapter = new ArtistListAdapter(getActivity(), artistArray);
+
+        // assign the adapter to the artist list view and allow loading more pages
+        artistListView.setAdapter(artistAdapter);
+        artistAdapter.startPaging(artistSearchQuery, searchResults);
+        if (artistListViewPosition != RecyclerView.NO_POSITION) {
+            Log.d(LOG_TAG, "onCreatView list view position ==> " + artistListViewPosition);
+            artistAdapter.setSelectedPosition(artistListViewPosition);
+            artistLayoutManager.scrollToPositionWithOffset(artistListViewPosition, 0);
+        }
+
         // Set up a click listener for the artist list
-        artistListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        artistAdapter.setOnItemClickListener(new DiffingListAdapter.OnItemClickListener() {
 
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
+            public void onItemClick(int position) {
                 // get reference to artist based on current position
                 ArtistItem artist = artistAdapter.getItem(position);
 
+                artistAdapter.setSelectedPosition(position);
                 ((SelectArtistInterface)getActivity()).onArtistSelected(artist);
                 artistListViewPosition = position;
             }
         });
 
-        // this is where we populate the adapter from the saved instance state
-        if (artistArray != null) {
-            // populate adapter with saved ArtistItem information
-            artistAdapter = new ArtistListViewAdapter(getActivity(),
-                    R.layout.artist_list_item,
-                    artistArray);
-
-            // assign the adapter to the artist list view
-            artistListView.setAdapter(artistAdapter);
-            if (artistListViewPosition != ListView.INVALID_POSITION) {
-                Log.d(LOG_TAG, "onCreatView list view position ==> " + artistListViewPosition);
-                // artistListView.smoothScrollToPosition(artistListViewPosition);
-                artistListView.setSelectionFromTop(artistListViewPosition, 0);
-            }
-        }
+        // results of a search still in flight now come to these views
+        searchResults.attachArtistViews(artistAdapter, artistListStatus);
 
         return rootView;
     }
 
+    @Override
+    public void onDestroyView () {
+        // drop any pending search as the views are going away
+        searchHandler.removeCallbacks(searchRunnable);
+        searchResults.detachArtistViews();
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onDestroy () {
+        // nobody is left to show the results, stop the search in flight, unless the fragment
+        // is only being recreated for a configuration change
+        if (!getActivity().isChangingConfigurations()) {
+            cancelArtistSearch();
+        }
+        super.onDestroy();
+    }
+
+    // incrementalSearchEnabled -- check preferences to see if search as you type is enabled
+    private boolean incrementalSearchEnabled () {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getActivity());
+        return prefs.getBoolean(getString(R.string.pref_incremental_key), true);
+    }
+
+    // searchDebounceDelay -- get the typing delay from preferences
+    private int searchDebounceDelay () {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getActivity());
+        String delay = prefs.getString(
+                getString(R.string.pref_debounce_key), getString(R.string.pref_debounce_default));
+        try {
+            return Integer.parseInt(delay);
+        } catch (NumberFormatException e) {
+            return Integer.parseInt(getString(R.string.pref_debounce_default));
+        }
+    }
+
+    // cancelArtistSearch -- stop the search in flight, if any, and its top tracks prefetch
+    private void cancelArtistSearch () {
+        if (artistAdapter != null) {
+            artistAdapter.cancelPaging();
+        }
+        searchResults.cancelArtistSearch();
+        topTracksPrefetcher.cancelAll();
+    }
+
+    // prefetchVisibleArtists -- preload top tracks for up to N of the visible artists
+    private void prefetchVisibleArtists () {
+        int firstVisibleItem = artistLayoutManager.findFirstVisibleItemPosition();
+        int visibleItemCount = artistLayoutManager.findLastVisibleItemPosition() - firstVisibleItem + 1;
+        if ( (firstVisibleItem == RecyclerView.NO_POSITION) || (visibleItemCount <= 0) ) {
+            return;
+        }
+
+        int lastItem = Math.min(firstVisibleItem + Math.min(visibleItemCount, topTracksPrefetcher.getPrefetchCount()),
+                artistAdapter.getItemCount());
+        ArrayList<ArtistItem> visibleArtists = new ArrayList<ArtistItem>();
+        for (int i = firstVisibleItem; i < lastItem; i++) {
+            visibleArtists.add(artistAdapter.getItem(i));
+        }
+        topTracksPrefetcher.prefetch(visibleArtists);
+    }
+
+    /**
+     * startArtistSearch - starts a new artist search, replacing the search in flight. Unless
+     *     forced by the search button, nothing happens if the query did not change.
+     */
+    private void startArtistSearch (String searchText, boolean forceSearch) {
+        if (!forceSearch && searchText.equals(artistSearchQuery)) {
+            return;
+        }
+        artistSearchQuery = searchText;
+
+        // the older search is no longer wanted, even if it has not finished
+        cancelArtistSearch();
+
+        // text was cleared, just clear the list and status
+        if (searchText.isEmpty()) {
+            artistAdapter.clear();
+            artistListStatus.setText("");
+            return;
+        }
+
+        // show searching status that appears until the list view is populated
+        artistListStatus.setText(String.format (getString(R.string.artist_searching), searchText));
+
+        // rows of the previous search stay until the results arrive, then only changed rows
+        // are updated
+        artistAdapter.clearSelection();
+        artistListViewPosition = RecyclerView.NO_POSITION;
+
+        // kick off artist search task that populates the adaptor when finished
+        searchResults.startArtistSearch(searchText);
+    }
+
     /**
      * clearArtistSelection - used to clear selection when the parent activity is managing the
      *     backstack. This just deselects the artist after top tracks are cleared.
      */
     public void clearArtistSelection () {
-        artistListView.clearChoices ();
-        artistAdapter.notifyDataSetChanged();
+        artistAdapter.clearSelection();
     }
 
     /**
@@ -197,7 +379,12 @@ public class ArtistSearchFragment extends Fragment {
      */
     public boolean clearArtistList () {
         // see if we have artists to clear
-        if ( artistListView.getChildCount() > 0 ) {
+        if ( artistAdapter.getItemCount() > 0 ) {
+            // stop any search in progress and forget the last query
+            searchHandler.removeCallbacks(searchRunnable);
+            cancelArtistSearch();
+            artistSearchQuery = "";
+
             // clear adaptor...
             artistAdapter.clear();
 
@@ -206,7 +393,8 @@ public class ArtistSearchFragment extends Fragment {
 
             return true;
         } else if ( artistListStatus.getText().length() > 0 ) {
-            // artist not found message was present, clear it
+            // artist not found or searching message was present, clear it
+            cancelArtistSearch();
             artistListStatus.setText("");
 
             return true;
@@ -217,6 +405,4 @@ public class ArtistSearchFragment extends Fragment {
         }
 
     }
-
-    // TODO: when nothing else to do...need to complete/retain artist search when rotated
 }
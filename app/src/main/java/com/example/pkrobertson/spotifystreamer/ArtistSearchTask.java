@@ -1,47 +1,92 @@
 package com.example.pkrobertson.spotifystreamer;
 
+import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
-import android.widget.TextView;
 
-import kaaes.spotify.webapi.android.SpotifyApi;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
 import kaaes.spotify.webapi.android.SpotifyService;
-import kaaes.spotify.webapi.android.models.Artist;
 import kaaes.spotify.webapi.android.models.ArtistsPager;
-import kaaes.spotify.webapi.android.models.Image;
 
 /**
  * ArtistSearchTask - an async task responsible for searching for artists using the
  *     Spotify web service fragment
  *
- *     this task takes care of populating the artist list view with data returned from Spotify
+ *     this task hands the data returned from Spotify to SearchResultHolder, which passes it on
+ *     to the artist list view showing the search, even if that view was recreated meanwhile
+ *
+ *     results are kept in ArtistSearchCache, an exact hit skips the network and a query that
+ *     extends a cached one shows the filtered cached results first (via onProgressUpdate)
+ *
+ *     when Spotify cannot be reached (see SpotifyCallPolicy) the user is told so instead of
+ *     "not found", along with expired cached results for the query if there are any
+ *
+ *     the first page is searched with a small limit, later pages are requested by the artist
+ *     adapter as the user scrolls and are appended to the list
+ *
+ *     results are mapped to ArtistItem in the background, the main thread only hands the
+ *     finished list to the adapter in one bulk update
  *
  */
-public class ArtistSearchTask extends AsyncTask<String, Void, String> {
+public class ArtistSearchTask extends AsyncTask<String, ArrayList<ArtistItem>, String> {
 
     private final String LOG_TAG = ArtistSearchTask.class.getSimpleName();
 
-    // hold references to the artist list view adapter and the search status text view
-    private ArtistListViewAdapter artistAdapter;
-    private TextView              searchStatus;
+    // holder that owns this search and passes the results on to the artist list view
+    private SearchResultHolder    searchResults;
+
+    // application context used to reach the shared Spotify client
+    private Context               appContext;
 
-    // holds artist name that we are searching for
+    // holds artist name that we are searching for and the page we are loading
     private String                artistSearchString;
+    private int                   pageOffset;
+    private int                   pageLimit;
 
-    // holds Spotify search result
-    private ArtistsPager          searchResult;
+    // holds the mapped search result (from the cache or Spotify), null if the search failed
+    private List<ArtistItem>      artistItems;
+    private int                   searchTotal = -1;
 
-    public ArtistSearchTask (ArtistListViewAdapter artistAdapter, TextView searchStatus) {
+    // results shown for a shorter query while searching, and whether Spotify could be reached
+    private List<ArtistItem>      provisionalItems;
+    private boolean               serviceUnavailable;
+
+    // cancels this task's job on its TaskScheduler lane, even while it is still queued
+    private final TaskScheduler.CancellationToken cancellation = new TaskScheduler.CancellationToken();
+
+    // constructor used to search for the first page of artists
+    public ArtistSearchTask (SearchResultHolder searchResults, Context context) {
+        this (searchResults, context, 0, ArtistListAdapter.FIRST_PAGE_LIMIT);
+    }
+
+    // constructor used to load a later page of artists
+    public ArtistSearchTask (SearchResultHolder searchResults, Context context,
+                             int pageOffset, int pageLimit) {
         super ();
 
         // save references for later use
-        this.artistAdapter = artistAdapter;
-        this.searchStatus  = searchStatus;
+        this.searchResults = searchResults;
+        this.appContext    = context.getApplicationContext();
+        this.pageOffset    = pageOffset;
+        this.pageLimit     = pageLimit;
+    }
+
+    // isFirstPage -- only the first page uses the cache and updates the search status
+    private boolean isFirstPage () {
+        return (pageOffset == 0);
     }
 
     @Override
     protected String doInBackground (String... params) {
 
+        // AsyncTask just lowered this thread to background priority, undo that for the lane
+        TaskScheduler.applyLanePriority();
+
         String result = null;
 
         // See if artist name was entered, if no artist, no search is needed.
@@ -51,66 +96,166 @@ public class ArtistSearchTask extends AsyncTask<String, Void, String> {
 
         // log parameters...
         artistSearchString = params[0];
-        Log.d(LOG_TAG, "artist name = " + artistSearchString);
+        Log.d(LOG_TAG, "artist name = " + artistSearchString + " offset = " + pageOffset);
+
+        if (isFirstPage()) {
+            // answer from the cache when we can...
+            Tracing.beginSection("ArtistSearchTask.cache");
+            ArtistSearchCache cache = ArtistSearchCache.getInstance();
+            ArrayList<ArtistItem> cachedResult = cache.get(artistSearchString);
+            if (cachedResult != null) {
+                Tracing.endSection();
+                artistItems = Collections.unmodifiableList(cachedResult);
+                return (artistItems.isEmpty() ? null : "found at least one cached artist");
+            }
 
-        // get reference to Spotify API handler and service
-        SpotifyApi api = new SpotifyApi();
-        SpotifyService spotify = api.getService();
+            // ...or show what we have for a shorter query while the network refines it
+            ArrayList<ArtistItem> prefixResult = cache.getPrefixMatch(artistSearchString);
+            Tracing.endSection();
+            if ( (prefixResult != null) && (prefixResult.isEmpty() == false) ) {
+                provisionalItems = Collections.unmodifiableList(prefixResult);
+                publishProgress(prefixResult);
+            }
+        }
 
+        // request just the page we need
+        final Map<String, Object> options = new Hashtable<String, Object>();
+        options.put("offset", pageOffset);
+        options.put("limit", pageLimit);
+
+        // get reference to the shared Spotify client
+        SpotifyClient client = SpotifyClient.getInstance(appContext);
+
+        // tag our calls so cancelSearch can abort the HTTP request
+        Metrics metrics = Metrics.getInstance();
+        metrics.count(Metrics.COUNT_ARTIST_SEARCHES);
+        client.beginTaggedCalls(this);
         try {
-            // search for artist based on the artist name
-            searchResult = spotify.searchArtists(artistSearchString);
+            // search for artist based on the artist name, retrying if Spotify is briefly unavailable
+            long searchStart = System.nanoTime();
+            ArtistsPager searchResult;
+            Tracing.beginSection("ArtistSearchTask.network");
+            try {
+                searchResult = client.execute(new SpotifyCallPolicy.ServiceCall<ArtistsPager>() {
+                    @Override
+                    public ArtistsPager call (SpotifyService spotify) {
+                        return spotify.searchArtists(artistSearchString, options);
+                    }
+                }, true);
+            } finally {
+                Tracing.endSection();
+            }
+            metrics.recordSince(Metrics.TIMER_ARTIST_SEARCH, searchStart);
+            searchTotal = searchResult.artists.total;
+
+            // map the result here so the main thread only has to show it
+            long mapStart = System.nanoTime();
+            Tracing.beginSection("ArtistSearchTask.map");
+            artistItems = Collections.unmodifiableList(
+                    SpotifyItems.getMapper(appContext).buildArtistItems(searchResult.artists.items));
+            Tracing.endSection();
+            metrics.recordSince(Metrics.TIMER_MAP_ARTISTS, mapStart);
+
+            // remember successful first page searches, found or not
+            if (isFirstPage()) {
+                ArtistSearchCache.getInstance().put(artistSearchString, artistItems);
+            }
 
             // did we find any artists?
-            if (searchResult.artists.items.isEmpty() == false) {
+            if (artistItems.isEmpty() == false) {
                 result = "found at least one artist";
             }
+        } catch (SpotifyCallPolicy.ServiceUnavailableException e) {
+            Log.v (LOG_TAG, "Spotify unavailable" + e.toString());
+            metrics.count(Metrics.COUNT_SERVICE_UNAVAILABLE);
+            serviceUnavailable = true;
+            if (isFirstPage()) {
+                result = useStaleResults();
+            }
         } catch (Exception e) {
             Log.v (LOG_TAG, "Spotify call failed" + e.toString());
+        } finally {
+            client.endTaggedCalls();
         }
 
         // Return null only if no artist results found
         return result;
     }
 
+    /**
+     * useStaleResults - Spotify is unavailable, fall back to expired results for this query or
+     *     to the results already shown for a shorter one. Returns null when there are none.
+     */
+    private String useStaleResults () {
+        ArrayList<ArtistItem> staleResult = ArtistSearchCache.getInstance().getStale(artistSearchString);
+        if ( (staleResult != null) && (staleResult.isEmpty() == false) ) {
+            artistItems = Collections.unmodifiableList(staleResult);
+        } else if (provisionalItems != null) {
+            artistItems = provisionalItems;
+        } else {
+            return null;
+        }
+        return "found at least one saved artist";
+    }
+
+    /**
+     * cancelSearch - used when a newer search replaces this one. Stops the task and aborts the
+     *     HTTP call so onPostExecute never runs and the results are dropped.
+     */
+    public void cancelSearch () {
+        cancel(true);
+        cancellation.cancel();
+        SpotifyClient.getInstance(appContext).cancelCalls(this);
+    }
+
+    // getCancellationToken -- run this task with it so cancelSearch also takes it off the lane
+    public TaskScheduler.CancellationToken getCancellationToken () {
+        return cancellation;
+    }
+
     @Override
-    protected void onPostExecute(String result) {
+    protected void onCancelled () {
+        Log.d(LOG_TAG, "search cancelled ==> " + artistSearchString);
+    }
 
-        // did we find any artists?
-        if (result == null) {
-            // tell user artist not found
-            // no need to clear adapter as we always create a new one for each search...
-            searchStatus.setText (String.format(searchStatus.getResources().getString(R.string.artist_not_found), artistSearchString));
-        } else {
-            searchStatus.setText ("");
-
-            // fill in new data...
-            for (Artist artist : searchResult.artists.items) {
-                // get artist name and ID directly from the search results
-                String     artistName = artist.name;
-                String     artistSpotifyId = artist.id;
-                String     artistImageURL = null;
-
-                // find smallest artist image for now...
-                // TODO: during Phase 2 we should look for "best fit"
-                int imageSize = 0;
-                for (Image image : artist.images) {
-                    if ( (imageSize == 0) || (imageSize > image.height) ) {
-                        imageSize = image.height;
-                        artistImageURL = image.url;
-                    }
-                }
+    @Override
+    protected void onProgressUpdate (ArrayList<ArtistItem>... prefixResult) {
+        // show locally filtered results until the network search finishes
+        Tracing.beginSection("ArtistSearchTask.provisional");
+        searchResults.onArtistProvisionalResults(this, prefixResult[0]);
+        Tracing.endSection();
+    }
 
-                // create new artist item based on search results
-                ArtistItem artistItem = new ArtistItem (artistName, artistSpotifyId, artistImageURL);
-                Log.d (LOG_TAG, "artist = " + artistItem.toString());
+    @Override
+    protected void onPostExecute(String result) {
+        long postStart = System.nanoTime();
+        Tracing.beginSection("ArtistSearchTask.post");
 
-                // add the artist information to the artist adapter
-                artistAdapter.add (artistItem);
-            }
+        if (!isFirstPage()) {
+            // later pages are simply appended, or dropped if the request failed
+            searchResults.onArtistResults(this, artistSearchString, artistItems,
+                    pageOffset, pageLimit, searchTotal, null);
+        } else if ( (result == null) && serviceUnavailable ) {
+            // tell user Spotify could not be reached, which is not the same as no artists
+            searchResults.onArtistResults(this, artistSearchString, null, pageOffset, pageLimit, searchTotal,
+                    appContext.getString(R.string.artist_service_unavailable));
+        } else if (result == null) {
+            // tell user artist not found, dropping any provisional results shown from the cache
+            searchResults.onArtistResults(this, artistSearchString, null, pageOffset, pageLimit, searchTotal,
+                    String.format(appContext.getString(R.string.artist_not_found), artistSearchString));
+        } else if (serviceUnavailable) {
+            // show saved results and say they may be out of date
+            searchResults.onArtistResults(this, artistSearchString, artistItems, pageOffset, pageLimit, searchTotal,
+                    appContext.getString(R.string.artist_showing_saved));
+        } else {
+            // replace provisional results and allow the adapter to load more pages...
+            searchResults.onArtistResults(this, artistSearchString, artistItems,
+                    pageOffset, pageLimit, searchTotal, "");
+        }
 
-        // This does nothing as far as I can tell...remove?
-        artistAdapter.notifyDataSetChanged();
+        Tracing.endSection();
+        if (BuildConfig.DEBUG) {
+            Log.d(LOG_TAG, "onPostExecute main thread " + ((System.nanoTime() - postStart) / 1000) + "us");
         }
     }
 }
@@ -0,0 +1,264 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * DiffingListAdapter - base RecyclerView adapter for the artist and top tracks lists. New
+ *     contents are compared with the current ones off the main thread and only the rows that
+ *     were inserted, removed, moved or changed are updated.
+ *
+ *     lists submitted one after the other are compared in the same order on a single background
+ *     thread, so each comparison starts from the previous list. Items get stable IDs from their
+ *     keys.
+ *
+ *     in debug builds, rows bound because of an update are counted next to the rows a full
+ *     refresh would have bound, and logged after each update. Row updates block other main
+ *     thread messages until the next layout, so binds counted up to a message posted after the
+ *     update are the binds that update caused. Bind time goes to Metrics in every build.
+ *
+ *     this class is used by ArtistListAdapter and TopTracksListAdapter
+ *
+ */
+public abstract class DiffingListAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH> implements ListDiff.Keys<T> {
+
+    private final String LOG_TAG = getClass().getSimpleName();
+
+    // one thread for all lists, comparisons are short and must stay in order
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread (final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run () {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ListDiff");
+        }
+    });
+
+    private final Handler myHandler = new Handler(Looper.getMainLooper());
+
+    // items shown, and the last items submitted which are shown once their diff is applied
+    private List<T>      myItems;
+    private List<T>      myLatestItems;
+    private List<String> myItemKeys;
+
+    // stable IDs handed out per key
+    private final HashMap<String, Long> myItemIds = new HashMap<String, Long>();
+    private long                        myNextItemId;
+
+    private OnItemClickListener myItemClickListener;
+    private RecyclerView        myRecyclerView;
+
+    // shared metrics, bind time and the number of rows shown in this list's gauge
+    private final Metrics myMetrics = Metrics.getInstance();
+    private final int     myRowGauge;
+
+    // trace section names for this list, built once
+    private final String myBindSection = getClass().getSimpleName() + ".bindItem";
+    private final String myDiffSection = getClass().getSimpleName() + ".applyDiff";
+
+    // statistics
+    private long myBindCount;
+    private long myUpdateBindCount;
+    private long myFullRefreshBindCount;
+    private long myUpdateCount;
+    private long myDiffNs;
+
+    public interface OnItemClickListener {
+        /*
+         * Handle a click on the item at this position
+         */
+        public void onItemClick (int position);
+    }
+
+    protected DiffingListAdapter (List<T> items, int rowGauge) {
+        myRowGauge    = rowGauge;
+        myItems       = Collections.unmodifiableList(new ArrayList<T>(items));
+        myLatestItems = myItems;
+        myItemKeys    = ListDiff.compute(Collections.<T>emptyList(), myItems, this).getNewKeys();
+        setHasStableIds(true);
+    }
+
+    // bindItem -- fill in the row for this item
+    protected abstract void bindItem (VH holder, T item);
+
+    public void setOnItemClickListener (OnItemClickListener itemClickListener) {
+        myItemClickListener = itemClickListener;
+    }
+
+    // listenForClicks -- pass clicks on this row to the item click listener
+    protected void listenForClicks (final VH holder) {
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick (View view) {
+                int position = holder.getAdapterPosition();
+                if ( (myItemClickListener != null) && (position != RecyclerView.NO_POSITION) ) {
+                    myItemClickListener.onItemClick(position);
+                }
+            }
+        });
+    }
+
+    public T getItem (int position) {
+        return myItems.get(position);
+    }
+
+    // getItems -- the items as shown right now
+    public List<T> getItems () {
+        return myItems;
+    }
+
+    // getLatestItems -- the items as they will be shown once pending updates are applied
+    public List<T> getLatestItems () {
+        return myLatestItems;
+    }
+
+    @Override
+    public int getItemCount () {
+        return myItems.size();
+    }
+
+    @Override
+    public long getItemId (int position) {
+        String key = myItemKeys.get(position);
+        Long   id  = myItemIds.get(key);
+        if (id == null) {
+            id = myNextItemId++;
+            myItemIds.put(key, id);
+        }
+        return id;
+    }
+
+    @Override
+    public void onBindViewHolder (VH holder, int position) {
+        long bindStart = System.nanoTime();
+        myBindCount++;
+        Tracing.beginSection(myBindSection);
+        bindItem(holder, myItems.get(position));
+        Tracing.endSection();
+        myMetrics.recordSince(Metrics.TIMER_BIND, bindStart);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView (RecyclerView recyclerView) {
+        myRecyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView (RecyclerView recyclerView) {
+        myRecyclerView = null;
+    }
+
+    /**
+     * submitItems - show these items instead of the current ones. The comparison runs in the
+     *     background and the row updates are applied on the main thread.
+     */
+    public void submitItems (List<T> items) {
+        final List<T> oldItems = myLatestItems;
+        final List<T> newItems = Collections.unmodifiableList(new ArrayList<T>(items));
+        myLatestItems = newItems;
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run () {
+                Tracing.beginSection("ListDiff.compute");
+                final ListDiff diff = ListDiff.compute(oldItems, newItems, DiffingListAdapter.this);
+                Tracing.endSection();
+                myHandler.post(new Runnable() {
+                    @Override
+                    public void run () {
+                        applyDiff(newItems, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    // clear -- remove all items
+    public void clear () {
+        submitItems(Collections.<T>emptyList());
+    }
+
+    // applyDiff -- runs on the main thread, switch to the new items and update only changed rows
+    private void applyDiff (List<T> newItems, final ListDiff diff) {
+        Tracing.beginSection(myDiffSection);
+        myItems    = newItems;
+        myItemKeys = diff.getNewKeys();
+
+        // forget the IDs of items no longer shown, a session of searches sees many artists
+        if (!myItemIds.isEmpty()) {
+            myItemIds.keySet().retainAll(new HashSet<String>(myItemKeys));
+        }
+        myMetrics.setGauge(myRowGauge, myItems.size());
+
+        diff.dispatch(new ListDiff.Receiver() {
+            @Override
+            public void onInserted (int position) {
+                notifyItemInserted(position);
+            }
+
+            @Override
+            public void onRemoved (int position) {
+                notifyItemRemoved(position);
+            }
+
+            @Override
+            public void onMoved (int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged (int position) {
+                notifyItemChanged(position);
+            }
+        });
+
+        myUpdateCount++;
+        myDiffNs += diff.getComputeNs();
+        Tracing.endSection();
+
+        // count the binds of the layout that follows, debug builds only as it logs every update
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+        final long bindsBefore = myBindCount;
+        myHandler.post(new Runnable() {
+            @Override
+            public void run () {
+                myUpdateBindCount += myBindCount - bindsBefore;
+
+                // a full refresh would have bound every row now on screen
+                if (myRecyclerView != null) {
+                    myFullRefreshBindCount += myRecyclerView.getChildCount();
+                }
+                Log.d(LOG_TAG, "update " + diff.toString() + " ==> " + DiffingListAdapter.this.toString());
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return ("updates=" + myUpdateCount +
+                "|updateBinds=" + myUpdateBindCount +
+                "|fullRefreshBinds=" + myFullRefreshBindCount +
+                "|binds=" + myBindCount +
+                "|diffUs=" + (myDiffNs / 1000));
+    }
+}
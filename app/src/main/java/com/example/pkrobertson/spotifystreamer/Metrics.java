@@ -0,0 +1,303 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics - process wide registry of counters, gauges and latency histograms for the hot paths
+ *     (searches, mapping, list binds, playback start and notifications)
+ *
+ *     every metric is known up front and addressed by an int constant, so recording a value is
+ *     a few atomic operations on preallocated arrays and allocates nothing. Latencies go into
+ *     fixed log-linear buckets, four per power of two microseconds, so a percentile read from
+ *     the buckets is within 25% of the true value.
+ *
+ *     dump writes the percentiles, together with the client, scheduler and cache stats and the
+ *     device and build details, to a JSON file so runs can be compared across builds and
+ *     devices. MetricsDumpReceiver triggers it, the search paths themselves log none of this.
+ *
+ *     this class is used by the search tasks, DiffingListAdapter, SpotifyCallPolicy,
+ *     PlayTracksService and MetricsDumpReceiver
+ *
+ */
+public class Metrics {
+    private static final String LOG_TAG = Metrics.class.getSimpleName();
+
+    // counters
+    public static final int COUNT_ARTIST_SEARCHES       = 0;
+    public static final int COUNT_TOP_TRACKS_SEARCHES   = 1;
+    public static final int COUNT_SERVICE_UNAVAILABLE   = 2;
+    public static final int COUNT_TRACKS_STARTED        = 3;
+    public static final int COUNT_NOTIFICATIONS_POSTED  = 4;
+
+    private static final String[] COUNTER_NAMES = {
+            "artistSearches", "topTracksSearches", "serviceUnavailable",
+            "tracksStarted", "notificationsPosted" };
+
+    // gauges, last value set
+    public static final int GAUGE_ARTIST_ROWS           = 0;
+    public static final int GAUGE_TOP_TRACK_ROWS        = 1;
+    public static final int GAUGE_BREAKER_STATE         = 2;
+
+    private static final String[] GAUGE_NAMES = {
+            "artistRows", "topTrackRows", "breakerState" };
+
+    // latency histograms
+    public static final int TIMER_ARTIST_SEARCH         = 0;
+    public static final int TIMER_TOP_TRACKS_SEARCH     = 1;
+    public static final int TIMER_MAP_ARTISTS           = 2;
+    public static final int TIMER_MAP_TOP_TRACKS        = 3;
+    public static final int TIMER_BIND                  = 4;
+    public static final int TIMER_FIRST_SOUND           = 5;
+    public static final int TIMER_BUILD_NOTIFICATION    = 6;
+    // the track gap timers are only filled in debug builds, see PlayTracksService.startGapProbe
+    public static final int TIMER_TRACK_GAP_GAPLESS     = 7;
+    public static final int TIMER_TRACK_GAP_PREPARED    = 8;
+
+    private static final String[] TIMER_NAMES = {
+            "artistSearch", "topTracksSearch", "mapArtists", "mapTopTracks",
+            "bind", "prepareToFirstSound", "buildNotification",
+            "trackGapGapless", "trackGapPrepared" };
+
+    // buckets 0-3 hold 0-3us, then four buckets per power of two up to 2^27us (over 2 minutes)
+    private static final int SUB_BUCKETS  = 4;
+    private static final int BUCKET_COUNT = 27 * SUB_BUCKETS;
+
+    private static final String DUMP_DIR_NAME = "metrics";
+
+    private static Metrics sInstance;
+
+    private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_NAMES.length);
+    private final AtomicLongArray mGauges   = new AtomicLongArray(GAUGE_NAMES.length);
+
+    // histogram buckets for all timers in one array, then count, total and max per timer
+    private final AtomicLongArray mBuckets  = new AtomicLongArray(TIMER_NAMES.length * BUCKET_COUNT);
+    private final AtomicLongArray mCounts   = new AtomicLongArray(TIMER_NAMES.length);
+    private final AtomicLongArray mTotalUs  = new AtomicLongArray(TIMER_NAMES.length);
+    private final AtomicLongArray mMaxUs    = new AtomicLongArray(TIMER_NAMES.length);
+
+    // getInstance -- returns the registry shared by the whole app
+    public static synchronized Metrics getInstance () {
+        if (sInstance == null) {
+            sInstance = new Metrics();
+        }
+        return sInstance;
+    }
+
+    private Metrics () {
+    }
+
+    // count -- add one to a counter
+    public void count (int counter) {
+        mCounters.incrementAndGet(counter);
+    }
+
+    // setGauge -- replace the value of a gauge
+    public void setGauge (int gauge, long value) {
+        mGauges.set(gauge, value);
+    }
+
+    // recordSince -- record the time since startNs, a System.nanoTime value
+    public void recordSince (int timer, long startNs) {
+        recordNs(timer, System.nanoTime() - startNs);
+    }
+
+    // recordNs -- record one latency
+    public void recordNs (int timer, long elapsedNs) {
+        long elapsedUs = Math.max(0, elapsedNs / 1000);
+
+        mBuckets.incrementAndGet(timer * BUCKET_COUNT + bucketFor(elapsedUs));
+        mCounts.incrementAndGet(timer);
+        mTotalUs.addAndGet(timer, elapsedUs);
+
+        long maxUs = mMaxUs.get(timer);
+        while ( (elapsedUs > maxUs) && !mMaxUs.compareAndSet(timer, maxUs, elapsedUs) ) {
+            maxUs = mMaxUs.get(timer);
+        }
+    }
+
+    // bucketFor -- histogram bucket holding this many microseconds
+    private static int bucketFor (long us) {
+        if (us < SUB_BUCKETS) {
+            return (int) us;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(us);
+        int sub      = (int) ((us >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKET_COUNT - 1, (exponent - 1) * SUB_BUCKETS + sub);
+    }
+
+    // bucketUpperUs -- first value above the bucket
+    private static long bucketUpperUs (int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        int sub      = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - 2);
+    }
+
+    /**
+     * getPercentileUs - latency below which this fraction of the recorded values fall, taken
+     *     as the top of the bucket the percentile lands in but never more than the maximum
+     */
+    public long getPercentileUs (int timer, double fraction) {
+        long count = 0;
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(timer * BUCKET_COUNT + i);
+            count += buckets[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperUs(i), mMaxUs.get(timer));
+            }
+        }
+        return mMaxUs.get(timer);
+    }
+
+    // reset -- start counting again, gauges keep their values
+    public void reset () {
+        for (int i = 0; i < mCounters.length(); i++) {
+            mCounters.set(i, 0);
+        }
+        for (int i = 0; i < mBuckets.length(); i++) {
+            mBuckets.set(i, 0);
+        }
+        for (int i = 0; i < TIMER_NAMES.length; i++) {
+            mCounts.set(i, 0);
+            mTotalUs.set(i, 0);
+            mMaxUs.set(i, 0);
+        }
+    }
+
+    // toJson -- counters, gauges and timer percentiles in ms, component stats, plus device and
+    //     build details
+    public JSONObject toJson (Context context) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("timeMs", System.currentTimeMillis());
+
+        JSONObject device = new JSONObject();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdk", Build.VERSION.SDK_INT);
+        result.put("device", device);
+
+        JSONObject app = new JSONObject();
+        try {
+            PackageInfo packageInfo =
+                    context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            app.put("versionName", packageInfo.versionName);
+            app.put("versionCode", packageInfo.versionCode);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.v(LOG_TAG, "package info not available" + e.toString());
+        }
+        result.put("app", app);
+
+        JSONObject counters = new JSONObject();
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            counters.put(COUNTER_NAMES[i], mCounters.get(i));
+        }
+        result.put("counters", counters);
+
+        JSONObject gauges = new JSONObject();
+        for (int i = 0; i < GAUGE_NAMES.length; i++) {
+            gauges.put(GAUGE_NAMES[i], mGauges.get(i));
+        }
+        result.put("gauges", gauges);
+
+        JSONObject timers = new JSONObject();
+        for (int i = 0; i < TIMER_NAMES.length; i++) {
+            long count = mCounts.get(i);
+            JSONObject timer = new JSONObject();
+            timer.put("count", count);
+            timer.put("p50Ms", getPercentileUs(i, 0.50) / 1000.0);
+            timer.put("p95Ms", getPercentileUs(i, 0.95) / 1000.0);
+            timer.put("p99Ms", getPercentileUs(i, 0.99) / 1000.0);
+            timer.put("maxMs", mMaxUs.get(i) / 1000.0);
+            timer.put("meanMs", (count == 0) ? 0 : (mTotalUs.get(i) / count) / 1000.0);
+            timers.put(TIMER_NAMES[i], timer);
+        }
+        result.put("timers", timers);
+
+        // the counters kept by the client, scheduler and caches, in their own toString form
+        JSONObject components = new JSONObject();
+        components.put("spotifyClient", SpotifyClient.getInstance(context).toString());
+        components.put("scheduler", TaskScheduler.getInstance().toString());
+        components.put("artistSearchCache", ArtistSearchCache.getInstance().toString());
+        components.put("topTracksCache", TopTracksCache.getInstance(context).toString());
+        components.put("topTracksPrefetcher", TopTracksPrefetcher.getInstance(context).toString());
+        result.put("components", components);
+        return result;
+    }
+
+    /**
+     * dump - write the metrics to a new file in the app's external files directory (internal
+     *     storage when there is none), returns the file or null. Not for the main thread.
+     */
+    public File dump (Context context) {
+        File baseDir = context.getExternalFilesDir(null);
+        if (baseDir == null) {
+            baseDir = context.getFilesDir();
+        }
+        File dumpDir = new File(baseDir, DUMP_DIR_NAME);
+        if (!dumpDir.exists() && !dumpDir.mkdirs()) {
+            Log.v(LOG_TAG, "unable to create " + dumpDir.toString());
+            return null;
+        }
+
+        File   file   = new File(dumpDir, "metrics-" + System.currentTimeMillis() + ".json");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(toJson(context).toString(2));
+            return file;
+        } catch (Exception e) {
+            Log.v(LOG_TAG, "unable to write metrics" + e.toString());
+            file.delete();
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // nothing more we can do
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < TIMER_NAMES.length; i++) {
+            if (result.length() > 0) {
+                result.append('|');
+            }
+            result.append(TIMER_NAMES[i]).append("[n=").append(mCounts.get(i))
+                    .append("|p50Us=").append(getPercentileUs(i, 0.50))
+                    .append("|p95Us=").append(getPercentileUs(i, 0.95))
+                    .append("|p99Us=").append(getPercentileUs(i, 0.99)).append(']');
+        }
+        return result.toString();
+    }
+}
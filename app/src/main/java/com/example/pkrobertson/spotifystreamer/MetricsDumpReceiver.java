@@ -0,0 +1,55 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * MetricsDumpReceiver - writes the Metrics registry to a file on request, for comparing builds
+ *     and devices without a debugger attached:
+ *
+ *     adb shell am broadcast -a com.example.pkrobertson.spotifystreamer.DUMP_METRICS [--ez reset true]
+ *
+ *     the receiver requires the DUMP permission, which adb holds and apps normally do not. The
+ *     file is written on the background lane of TaskScheduler and its path is logged. With the
+ *     "reset" extra the metrics start over after the dump so each run is measured on its own.
+ *
+ *     this class is used by the system, see AndroidManifest.xml
+ *
+ */
+public class MetricsDumpReceiver extends BroadcastReceiver {
+    private static final String LOG_TAG = MetricsDumpReceiver.class.getSimpleName();
+
+    public static final String ACTION_DUMP_METRICS = "com.example.pkrobertson.spotifystreamer.DUMP_METRICS";
+    public static final String EXTRA_RESET         = "reset";
+
+    @Override
+    public void onReceive (Context context, Intent intent) {
+        if (!ACTION_DUMP_METRICS.equals(intent.getAction())) {
+            return;
+        }
+
+        final Context       appContext    = context.getApplicationContext();
+        final boolean       reset         = intent.getBooleanExtra(EXTRA_RESET, false);
+        final PendingResult pendingResult = goAsync();
+
+        TaskScheduler.getInstance().submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+            @Override
+            public void run () {
+                try {
+                    Metrics metrics = Metrics.getInstance();
+                    File    file    = metrics.dump(appContext);
+                    if (reset) {
+                        metrics.reset();
+                    }
+                    Log.i(LOG_TAG, "metrics written to ==> " + ((file == null) ? "nothing" : file.getPath()));
+                } finally {
+                    pendingResult.finish();
+                }
+            }
+        }, null);
+    }
+}
@@ -126,7 +126,7 @@ public class PlayTracksActivity
 
         // stop playback if back pressed and we're not actively playing a track
         if ((mPlayTracksService != null) &&
-                (mPlayTracksService.getState() != PlayTracksService.PlayTracksState.PLAYTRACKS_PLAYING)) {
+                (mPlayTracksService.getState() != PlayTracksState.PLAYTRACKS_PLAYING)) {
             unbindPlayTracksService();
             stopService(new Intent(this, PlayTracksService.class));
         }
@@ -146,7 +146,7 @@ public class PlayTracksActivity
     public void handlePlayTracksDismiss () {
         // should not ever get called...
         if ((mPlayTracksService != null) &&
-                (mPlayTracksService.getState() != PlayTracksService.PlayTracksState.PLAYTRACKS_PLAYING)) {
+                (mPlayTracksService.getState() != PlayTracksState.PLAYTRACKS_PLAYING)) {
             unbindPlayTracksService();
             stopService(new Intent(this, PlayTracksService.class));
         }
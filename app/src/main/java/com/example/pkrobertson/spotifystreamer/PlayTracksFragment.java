@@ -5,13 +5,10 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.view.MenuItemCompat;
 import android.support.v7.widget.ShareActionProvider;
 import android.util.Log;
-import android.util.Patterns;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -37,6 +34,9 @@ import java.util.Locale;
  *
  *     the lifetime of this fragment is managed by PlayTracksActivity and ArtistSearchActivity
  *
+ *     the view is updated by PlayTracksService through a PlaybackListener while resumed,
+ *     progress arrives only while a track plays and about once per seek bar pixel
+ *
  */
 public class PlayTracksFragment extends DialogFragment {
 
@@ -45,14 +45,12 @@ public class PlayTracksFragment extends DialogFragment {
     // key used to retrieve fragment args
 	private static final String DIALOG_ARGS = "playtracksdialog";
 	
-    // message id and handler used to update seekbar and current position during playback
-    private static final int MONITOR_SERVICE = 42;
-    private static final int MONITOR_SLOW    = 250; // 250ms
-    private static final int MONITOR_FAST    = 100; // 100ms, not all that fast ;)
+    // the current time text only changes once a second
+    private static final int PROGRESS_TEXT_MS = 1000;
 
        // local copy of play tracks instance (when connected), state and currently selected track
     // private PlayTracksService                 mTopTrackService;
-	private PlayTracksService.PlayTracksState mTopTrackState;
+	private PlayTracksState mTopTrackState;
 	private int                               mTopTrackNowPlaying;
     private boolean                           mUpdateSeekBar;
 
@@ -79,22 +77,42 @@ public class PlayTracksFragment extends DialogFragment {
     // used to flag when user dismissed dialog vs screen rotation (handle backstack)
     private boolean mBackButtonPressed;
 
-    // message delay, when playing fast poll, otherwise run a slow poll
-    private int mHandlerDelay = MONITOR_SLOW;
+    // duration last shown, the text is only updated when it changes
+    private int mDurationShown = -1;
+
+    // receives playback events from PlayTracksService while we are resumed
+    private final PlayTracksService.PlaybackListener mPlaybackListener = new PlayTracksService.PlaybackListener() {
+        @Override
+        public void onTrackChanged (int position, TopTrackItem topTrackItem) {
+            mTopTrackNowPlaying = position;
+            mUpdateSeekBar      = true;
+            showNewTrackItem (topTrackItem);
+        }
+
+        @Override
+        public void onStateChanged (PlayTracksState state) {
+            if (state != mTopTrackState) {
+                mTopTrackState = state;
+                showNewState();
+            }
+        }
+
+        @Override
+        public void onProgress (int positionMs, int durationMs) {
+            // leave the seek bar alone while the user is dragging it
+            if (mUpdateSeekBar) {
+                showProgressUpdate(positionMs, durationMs);
+            }
+        }
 
-    // ideally a Handler should be declared static to avoid leaks. In this case we're taking care
-    // to instantiate one time only when PlayTracksFragment is instantiated
-    private Handler mHandler = new Handler() {
         @Override
-        public void handleMessage(Message message) {
-            if (message.what == MONITOR_SERVICE) {
-                checkServiceState ();
-
-                // polling used to update view every 100ms when playing
-                // when idle, poll every 250ms
-                message = obtainMessage(MONITOR_SERVICE);
-                sendMessageDelayed (message, mHandlerDelay);
+        public int getProgressIntervalMs (int durationMs) {
+            // one tick per seek bar pixel is as fine as the view can show
+            int width = mSeekBarTrackProgress.getWidth();
+            if ((durationMs <= 0) || (width <= 0)) {
+                return PROGRESS_TEXT_MS;
             }
+            return Math.min(PROGRESS_TEXT_MS, durationMs / width);
         }
     };
 
@@ -126,16 +144,12 @@ public class PlayTracksFragment extends DialogFragment {
 
     // showNewState - manages the state of playback controls based on Play Tracks Service state
     private void showNewState () {
-        // set default handler delay, updated to faster poll only when playing
-        mHandlerDelay = MONITOR_SLOW;
-
         switch (mTopTrackState) {
             case PLAYTRACKS_PLAYING:
                 mImageButtonPreviousTrack.setClickable(true);
                 mImageButtonPausePlay.setClickable(true);
                 mImageButtonNextTrack.setClickable (true);
                 mImageButtonPausePlay.setImageResource(R.drawable.ic_pause_black);
-                mHandlerDelay = MONITOR_FAST;
                 break;
 
             case PLAYTRACKS_PAUSED:
@@ -163,18 +177,17 @@ public class PlayTracksFragment extends DialogFragment {
     }
 
     // showProgressUpdate - manages the SeekBar and the current position and duration
-    // TODO: could make this slightly more efficient by only updating the duration on change
-	private void showProgressUpdate (PlayTracksService service) {
-        int position = service.getCurrentPosition();
-        int duration = service.getDuration();
-
+	private void showProgressUpdate (int position, int duration) {
 		if (duration > 0) {
             mSeekBarTrackProgress.setMax (duration);
             mSeekBarTrackProgress.setProgress(position);
         }
-        
-		mTextViewDuration.setText(stringForTime(duration));
-        mTextViewCurrentTime.setText(stringForTime(position));		
+
+        if (duration != mDurationShown) {
+            mDurationShown = duration;
+		    mTextViewDuration.setText(stringForTime(duration));
+        }
+        mTextViewCurrentTime.setText(stringForTime(position));
 	}
 
     // showNewTrackItem - updates view of currently playing item when the now playing track changes
@@ -185,10 +198,13 @@ public class PlayTracksFragment extends DialogFragment {
         mTextViewAlbumName.setText (topTrackItem.topTrackAlbumName);
 
         // make sure the image URL is valid, if not load a default image
-        if ((topTrackItem.topTrackPlayImageURL != null) &&
-                Patterns.WEB_URL.matcher(topTrackItem.topTrackPlayImageURL).matches()) {
+        if (topTrackItem.topTrackPlayImageValid) {
             try {
-                Picasso.with(getActivity()).load(topTrackItem.topTrackPlayImageURL).into(mImageViewTrackImage);
+                Picasso.with(getActivity()).load(topTrackItem.topTrackPlayImageURL)
+                        .resizeDimen(R.dimen.play_tracks_image_size, R.dimen.play_tracks_image_size)
+                        .centerInside()
+                        .onlyScaleDown()
+                        .into(mImageViewTrackImage);
             } catch (Exception e) {
                 Log.v(LOG_TAG, "Picasso call failed" + e.toString());
                 mImageViewTrackImage.setImageResource(R.drawable.ic_artist_image);
@@ -204,42 +220,14 @@ public class PlayTracksFragment extends DialogFragment {
                 topTrackItem.topTrackAudioURL + getString(R.string.app_hash_tag));
     }
 
-    // checkServiceState - handles monitoring of playback state and updating the view
-    private void checkServiceState () {
-        PlayTracksService service = playTracksService();
-        if ( service == null ) {
-            return;
-        }
-		// see if this is a new track...
-		int trackNowPlaying = service.getTrackNowPlaying();
-		if ( trackNowPlaying != mTopTrackNowPlaying ) {
-			mTopTrackNowPlaying = trackNowPlaying;
-            mUpdateSeekBar      = true;
-			showNewTrackItem (service.getTrackItem());
-		}
-		
-		// see if this is a different state...
-        PlayTracksService.PlayTracksState topTrackState = service.getState();
-		if (topTrackState != mTopTrackState) {
-			mTopTrackState = topTrackState;
-			showNewState();
-		}
-		
-		// update duration if we're not paused
-		if ( mUpdateSeekBar &&
-                (mTopTrackState == PlayTracksService.PlayTracksState.PLAYTRACKS_PLAYING) ) {
-			showProgressUpdate(service);
-        }
-	}
-
-    // startServiceMonitor -- send a message to kick things off
+    // startServiceMonitor -- have the service push playback events to us
     private void startServiceMonitor () {
-        mHandler.sendEmptyMessage(MONITOR_SERVICE);
+        PlayTracksService.addPlaybackListener(mPlaybackListener);
     }
 
-    // stopServiceMonitor -- remove all messages in the queue
+    // stopServiceMonitor -- stop playback events
     private void stopServiceMonitor () {
-        mHandler.removeMessages(MONITOR_SERVICE);
+        PlayTracksService.removePlaybackListener(mPlaybackListener);
     }
 
     // PlayTrackInterface -- define interface used to get service instance from parent activity
@@ -401,8 +389,9 @@ public class PlayTracksFragment extends DialogFragment {
 	public void onResume () {
         Log.d (LOG_TAG, "onResume");
 		// initialize play tracks view connection
-        mTopTrackState      = PlayTracksService.PlayTracksState.PLAYTRACKS_INACTIVE;
+        mTopTrackState      = PlayTracksState.PLAYTRACKS_INACTIVE;
 	    mTopTrackNowPlaying = ListView.INVALID_POSITION;
+        mDurationShown      = -1;
 
         // bind to the play tracks service and start monitoring playback
 		startServiceMonitor ();
@@ -15,25 +15,42 @@ import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.net.wifi.WifiManager;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
 import android.preference.PreferenceManager;
 import android.support.v4.app.NotificationManagerCompat;
 import android.support.v7.app.NotificationCompat;
 import android.util.Log;
-import android.util.Patterns;
-import android.widget.ListView;
 
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * PlayTracksService - service responsible for playing tracks and managing the state of the
  *     media player. This lifetime of this service is managed by TopTracksActivity or
  *     ArtistSearchActivity based on running on handset or tablet
  *
+ *     shortly before the current track ends the next track is prepared in a second media
+ *     player and chained with setNextMediaPlayer, so tracks follow each other without a gap.
+ *     A next request while that player is ready switches to it without preparing again.
+ *
+ *     clips are played from PreviewAudioCache when cached, otherwise they are streamed through
+ *     PreviewStreamProxy, which fills the cache while the clip plays. The cache lookup runs on
+ *     the TaskScheduler playback lane, which no network call shares, and the player is
+ *     prepared once it returns.
+ *
+ *     views register a PlaybackListener to be told about track, state and progress changes
+ *     instead of polling. Progress is only pushed while a track is playing, as often as the
+ *     most demanding listener asks for.
+ *
+ *     time to first sound, notification build time and tracks started are kept in Metrics,
+ *     track starts, notification builds and prepares are traced (see Tracing)
+ *
  */
 public class PlayTracksService
         extends Service
@@ -50,43 +67,113 @@ public class PlayTracksService
     public static final String ACTION_PREVTRACK = "com.example.pkrobertson.playtracksservice.prev";
     public static final String ACTION_PAUSEPLAY = "com.example.pkrobertson.playtracksservice.pauseplay";
 
-    // define how data is passed to the service in the start intent
-    public static final String ARRAY_KEY    = "com.example.pkrobertson.playtracksservice.array";
+    // define how data is passed to the service in the start intent, tracks are looked up in
+    // TrackRepository by session ID
+    public static final String SESSION_KEY  = "com.example.pkrobertson.playtracksservice.session";
     public static final String POSITION_KEY = "com.example.pkrobertson.playtracksservice.position";
 
-    // playback states presented to the outside world
-	public enum PlayTracksState {
-	    PLAYTRACKS_INACTIVE,
-		PLAYTRACKS_PLAYING,
-		PLAYTRACKS_PAUSED,
-		PLAYTRACKS_ERROR
-		}
+    /**
+     * PlaybackListener - pushed playback events, always called on the main thread
+     */
+    public interface PlaybackListener {
+        // onTrackChanged -- a different track is now playing (or loading)
+        void onTrackChanged (int position, TopTrackItem topTrackItem);
+
+        // onStateChanged -- playback state as seen from outside the service changed
+        void onStateChanged (PlayTracksState state);
+
+        // onProgress -- current position and duration, while playing and after a seek
+        void onProgress (int positionMs, int durationMs);
+
+        // getProgressIntervalMs -- how often onProgress is useful for a track this long
+        int getProgressIntervalMs (int durationMs);
+    }
+
+    // slowest and fastest progress ticks, whatever the listeners ask for
+    private static final int PROGRESS_INTERVAL_MIN_MS = 50;
+    private static final int PROGRESS_INTERVAL_MAX_MS = 1000;
+
+    // listeners are process wide so views can register before the service is bound
+    private static final ArrayList<PlaybackListener> sPlaybackListeners = new ArrayList<PlaybackListener>();
+    private static PlayTracksService                 sRunningService;
 
 	// used to lock Wifi active when actively streaming music
 	private static final String WIFI_LOCK = "com.example.pkrobertson.playtracksservice.wifilock";
 
-    // private states used to manage the media player
-    private enum InternalState {
-		STATE_INITIALIZE,
-		STATE_PREPARING,
-		STATE_PLAYING, 
-		STATE_PAUSED,
-		STATE_STOPPED,
-		STATE_ERROR
-	}
+    // start preparing the next track this long before the current one ends
+    private static final int NEXT_TRACK_LEAD_MS = 10000;
+
+    // how often and how long to watch a new track for its first audio when measuring the gap
+    private static final int  GAP_PROBE_INTERVAL_MS = 5;
+    private static final long GAP_PROBE_TIMEOUT_NS  = 5000L * 1000000L;
 
     // media player and wifi lock instances
     private MediaPlayer          mMediaPlayer = null;
     private WifiManager.WifiLock mWifiLock    = null;
 
+    // second media player holding the next track, ready once mNextPrepared is set
+    private MediaPlayer          mNextMediaPlayer   = null;
+    private int                  mNextTrackPosition = PlaybackQueue.NO_POSITION;
+    private boolean              mNextPrepared      = false;
+
+    // data source lookups run off the main thread, a lookup for a track no longer wanted is
+    //     dropped. The flags say whether each player plays a clip from PreviewAudioCache.
+    private int                  mSourceGeneration  = 0;
+    private boolean              mPlayingCachedClip = false;
+    private boolean              mNextCachedClip    = false;
+
+    // used to start preparing the next track near the end of the current one
+    private final Handler        mHandler           = new Handler();
+    private final Runnable       mPrepareNextRunnable = new Runnable() {
+        @Override
+        public void run () {
+            prepareNextTrack();
+        }
+    };
+
+    // last events pushed to listeners, used to send only what changed
+    private PlayTracksState mDispatchedState = PlayTracksState.PLAYTRACKS_INACTIVE;
+    private int             mDispatchedTrack = PlaybackQueue.NO_POSITION;
+
+    // pushes progress to listeners while playing
+    private final Runnable mProgressRunnable = new Runnable() {
+        @Override
+        public void run () {
+            Tracing.beginSection("PlayTracksService.progressTick");
+            dispatchProgress();
+            scheduleProgress();
+            Tracing.endSection();
+        }
+    };
+
+    // gap measurement, from the current player's completion until the next player's position
+    //     first moves, "gapless" is true when the next player was chained or pre-buffered. Debug
+    //     builds only, it polls the player on the main thread.
+    private long    mCompletedAtNs   = 0;
+    private boolean mGapless         = false;
+    private long    mGapProbeStartNs = 0;
+
+    private final Runnable mGapProbeRunnable = new Runnable() {
+        @Override
+        public void run () {
+            probeGap();
+        }
+    };
+
+    // time to first sound, from prepareAsync until onPrepared starts the player
+    private long mPrepareStartNs = 0;
+
+    // async trace spans for the prepares in progress, 0 when there is none
+    private int  mPrepareTrace     = 0;
+    private int  mPrepareNextTrace = 0;
+
     // IBinder used to allow connections to the PlayTracksFragment
 	private final IBinder        mBinder      = new PlayTracksServiceBinder();
 
     // local copy of top tracks being played, the service advances from track to track automatically
     // and also on demand by intents or bind actions
-    private ArrayList<TopTrackItem> mTopTrackItems = null;
-    private int mTopTrackNowPlaying                = ListView.INVALID_POSITION;
-    private InternalState mState                   = InternalState.STATE_INITIALIZE;
+    private final PlaybackQueue mQueue             = new PlaybackQueue();
+    private PlaybackState mState                   = PlaybackState.STATE_INITIALIZE;
 
     // intents used to handle ongoing notification
     private boolean       mNotificationActive = false;
@@ -100,7 +187,44 @@ public class PlayTracksService
     private Intent        mNextIntent;
     private PendingIntent mNextPendingIntent;
 
-    private NotificationCompat.Builder mBuilder;
+    // notification variants for one track, only the pause/play action and error text differ
+    private static final int NOTIFY_PLAYING = 0;  // shows the pause action
+    private static final int NOTIFY_PAUSED  = 1;  // shows the play action
+    private static final int NOTIFY_ERROR   = 2;  // play action and error text
+    private static final int NOTIFY_COUNT   = 3;
+
+    // bursts of state changes are coalesced into one notify at most this often
+    private static final int NOTIFY_MIN_INTERVAL_MS = 500;
+
+    // built notifications for mNotificationTrack, indexed by variant, and its large icon
+    private final Notification[] mNotifications     = new Notification[NOTIFY_COUNT];
+    private int                  mNotificationTrack = PlaybackQueue.NO_POSITION;
+    private Bitmap               mLargeIcon         = null;
+
+    // true while buildNotification starts the icon load, Picasso delivers a memory cache hit
+    //     from inside into()
+    private boolean              mLoadingIcon       = false;
+
+    // what was last posted, and when
+    private int                  mPostedTrack       = PlaybackQueue.NO_POSITION;
+    private int                  mPostedVariant     = -1;
+    private long                 mPostedAtMs        = 0;
+    private boolean              mNotifyPending     = false;
+
+    // statistics, per track and since the service started
+    private int  mTrackPostCount;
+    private int  mTrackImageLoadCount;
+    private long mPostCount;
+    private long mCoalescedCount;
+    private long mImageLoadCount;
+
+    private final Runnable mNotifyRunnable = new Runnable() {
+        @Override
+        public void run () {
+            mNotifyPending = false;
+            postNotification();
+        }
+    };
 
     // target used to load picasso image into a bitmap, thanks GitHub!
     private Target target = new Target() {
@@ -112,7 +236,20 @@ public class PlayTracksService
         @Override
         public void onBitmapLoaded (Bitmap bitmap, Picasso.LoadedFrom from){
             Log.d (LOG_TAG, "onBitmapLoaded: got image from picasso");
-            mBuilder.setLargeIcon (bitmap);
+
+            // keep the icon for this track, a cache hit during buildNotification is simply
+            // used by the build that is under way
+            mLargeIcon = bitmap;
+            if (mLoadingIcon) {
+                return;
+            }
+
+            // otherwise rebuild the track's notifications once
+            for (int i = 0; i < NOTIFY_COUNT; i++) {
+                mNotifications[i] = null;
+            }
+            mPostedVariant = -1;
+            requestNotificationUpdate();
         }
 
         @Override
@@ -122,11 +259,15 @@ public class PlayTracksService
     };
 
     // loadTopTrackImage -- used to get thumbnail from picasso and update notification
-    private void loadTopTrackImage (String imageURL) {
-        // make sure the image URL is valid, if not load a default image
-        if ((imageURL != null) && Patterns.WEB_URL.matcher(imageURL).matches()) {
+    private void loadTopTrackImage (TopTrackItem topTrackItem) {
+        // image URL was validated when the track item was built
+        if (topTrackItem.topTrackListImageValid) {
             try {
-                Picasso.with(this).load(imageURL).into(target);
+                // the list image is picked to cover the large icon, decode it at icon size
+                int iconSize = SpotifyItems.getImageSelector(this).getNotificationImagePx();
+                Picasso.with(this).load(topTrackItem.topTrackListImageURL).resize(iconSize, iconSize).centerCrop().into(target);
+                mTrackImageLoadCount++;
+                mImageLoadCount++;
             } catch (Exception e) {
                 Log.v(LOG_TAG, "Picasso call failed" + e.toString());
             }
@@ -142,14 +283,55 @@ public class PlayTracksService
         return ( prefs.getBoolean(getString(R.string.pref_notification_key), false) );
     }
 
-    // buildNotification -- builds notification based on current state of the player
+    // notificationVariant -- which variant matches the current state of the player
+    private int notificationVariant () {
+        switch (mState) {
+            case STATE_INITIALIZE:
+            case STATE_PREPARING:
+            case STATE_PLAYING:
+                return NOTIFY_PLAYING;
+
+            case STATE_ERROR:
+                return NOTIFY_ERROR;
+
+            default:
+                return NOTIFY_PAUSED;
+        }
+    }
+
+    // buildNotification -- returns the notification for the current track and state, built
+    //     once per track and variant. The large icon is loaded once per track.
     private Notification  buildNotification () {
         // should not happen, but just to be safe...
-        if (mTopTrackItems == null) {
+        TopTrackItem topTrackItem = mQueue.getCurrent();
+        if (topTrackItem == null) {
             return null;
         }
 
-        TopTrackItem topTrackItem  = mTopTrackItems.get(mTopTrackNowPlaying);
+        // new track, drop what we built for the old one and fetch its icon
+        if (mQueue.getPosition() != mNotificationTrack) {
+            mNotificationTrack   = mQueue.getPosition();
+            mLargeIcon           = null;
+            mTrackPostCount      = 0;
+            mTrackImageLoadCount = 0;
+            for (int i = 0; i < NOTIFY_COUNT; i++) {
+                mNotifications[i] = null;
+            }
+            mLoadingIcon = true;
+            try {
+                loadTopTrackImage (topTrackItem);
+            } finally {
+                mLoadingIcon = false;
+            }
+        }
+
+        int variant = notificationVariant();
+        if (mNotifications[variant] != null) {
+            return mNotifications[variant];
+        }
+        long buildStart = System.nanoTime();
+        Tracing.beginSection("PlayTracksService.buildNotification");
+
         int          pausePlayIcon;
         String       pausePlayLabel;
         String       contentTitle;
@@ -159,15 +341,13 @@ public class PlayTracksService
         contentTitle = getString(R.string.app_name);
         contentText  = topTrackItem.topTrackName;
         // determine if pause or play action is active
-        switch (mState) {
-            case STATE_INITIALIZE:
-            case STATE_PREPARING:
-            case STATE_PLAYING:
+        switch (variant) {
+            case NOTIFY_PLAYING:
                 pausePlayIcon  = android.R.drawable.ic_media_pause;
                 pausePlayLabel = getString(R.string.label_pause);
                 break;
 
-            case STATE_ERROR:
+            case NOTIFY_ERROR:
                 // override contentText to show error happended
                 contentText = getString (R.string.error_play_tracks);
                 // no break
@@ -177,9 +357,9 @@ public class PlayTracksService
                 break;
         }
 
-        // build the notification, save in a state where we can add the icon later
-        (mBuilder = new NotificationCompat.Builder(this))
-                .setVisibility(Notification.VISIBILITY_PUBLIC)// put notification on lock screen
+        // build the notification, with the large icon if we already have it
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this);
+        builder.setVisibility(Notification.VISIBILITY_PUBLIC)// put notification on lock screen
                 .setPriority(Notification.PRIORITY_HIGH) // this makes buttons visible
                 .setSmallIcon(R.mipmap.ic_launcher) // small "product icon"
                 .addAction(android.R.drawable.ic_media_previous, getString(R.string.label_previous_track), mPreviousPendingIntent)
@@ -189,13 +369,65 @@ public class PlayTracksService
                 .setContentText(contentText)
                 .setContentIntent(mNotificationPendingIntent)
                 .setOngoing(true);
-
-        // load the image URL as the larger icon
-        loadTopTrackImage (topTrackItem.topTrackListImageURL);
+        if (mLargeIcon != null) {
+            builder.setLargeIcon(mLargeIcon);
+        }
 
         // now package it all up together
-        Notification notification = mBuilder.build ();
-        return (notification);
+        mNotifications[variant] = builder.build ();
+        Tracing.endSection();
+        Metrics.getInstance().recordSince(Metrics.TIMER_BUILD_NOTIFICATION, buildStart);
+        return (mNotifications[variant]);
+    }
+
+    // requestNotificationUpdate -- post the notification now, or after NOTIFY_MIN_INTERVAL_MS
+    //     if one went out recently, so a burst of changes ends in a single notify
+    private void requestNotificationUpdate () {
+        if (!mNotificationActive) {
+            return;
+        }
+        if (mNotifyPending) {
+            mCoalescedCount++;
+            return;
+        }
+
+        long sincePostMs = System.currentTimeMillis() - mPostedAtMs;
+        if (sincePostMs >= NOTIFY_MIN_INTERVAL_MS) {
+            postNotification();
+        } else {
+            mNotifyPending = true;
+            mHandler.postDelayed(mNotifyRunnable, NOTIFY_MIN_INTERVAL_MS - sincePostMs);
+        }
+    }
+
+    // postNotification -- notify only if the track or variant differs from what is showing
+    private void postNotification () {
+        if (!mNotificationActive) {
+            return;
+        }
+        Notification notification = buildNotification();
+        int          variant      = notificationVariant();
+        if ( (notification == null) ||
+             ((mQueue.getPosition() == mPostedTrack) && (variant == mPostedVariant)) ) {
+            return;
+        }
+
+        NotificationManager notificationManager = (NotificationManager)getSystemService(
+                Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(SERVICE_ID, notification);
+
+        mPostedTrack   = mQueue.getPosition();
+        mPostedVariant = variant;
+        mPostedAtMs    = System.currentTimeMillis();
+        mTrackPostCount++;
+        mPostCount++;
+        Metrics.getInstance().count(Metrics.COUNT_NOTIFICATIONS_POSTED);
+        if (BuildConfig.DEBUG) {
+            Log.d(LOG_TAG, "notification ==> track=" + mQueue.getPosition() +
+                    "|trackPosts=" + mTrackPostCount + "|trackImageLoads=" + mTrackImageLoadCount +
+                    "|posts=" + mPostCount + "|coalesced=" + mCoalescedCount +
+                    "|imageLoads=" + mImageLoadCount);
+        }
     }
 
     // setupNotification -- set up intents and the first notification when service is started
@@ -225,35 +457,120 @@ public class PlayTracksService
             Log.d (LOG_TAG, "setupNotification: starting notification");
             startForeground(SERVICE_ID, notification);
             mNotificationActive = true;
+            mPostedTrack        = mQueue.getPosition();
+            mPostedVariant      = notificationVariant();
+            mPostedAtMs         = System.currentTimeMillis();
         }
     }
 
-    // changeInternalState -- used only to update state variable and send to logcat
-    private void changeInternalState (InternalState newState) {
+    // changeInternalState -- update state variable and send to logcat, changes PlaybackState
+    //     does not allow are logged and ignored
+    private void changeInternalState (PlaybackState newState) {
+        if (!mState.canMoveTo(newState)) {
+            Log.e(LOG_TAG, "Invalid state change " + String.valueOf(mState) + " ==>" + String.valueOf(newState));
+            return;
+        }
         Log.d(LOG_TAG, "Changing state to ==>" + String.valueOf(newState));
         mState = newState;
 
-        if (! mNotificationActive )
+        // tell listeners what changed and start or stop progress updates
+        dispatchChanges();
+
+        // coalesced, and skipped when nothing the notification shows has changed
+        requestNotificationUpdate();
+    }
+
+    // addPlaybackListener -- start pushing events, the listener first gets the current state
+    public static void addPlaybackListener (PlaybackListener listener) {
+        if (sPlaybackListeners.contains(listener)) {
             return;
+        }
+        sPlaybackListeners.add(listener);
+        if (sRunningService != null) {
+            sRunningService.dispatchSnapshot(listener);
+        }
+    }
 
+    // removePlaybackListener -- stop pushing events, progress stops with the last listener
+    public static void removePlaybackListener (PlaybackListener listener) {
+        sPlaybackListeners.remove(listener);
+        if ((sRunningService != null) && sPlaybackListeners.isEmpty()) {
+            sRunningService.mHandler.removeCallbacks(sRunningService.mProgressRunnable);
+        }
+    }
 
-        Notification notification = buildNotification();
-        if ( notification != null ) {
-            Log.d (LOG_TAG, "changeInternalState: updating notification");
-            NotificationManager notificationManager = (NotificationManager)getSystemService(
-                    Context.NOTIFICATION_SERVICE);
-            notificationManager.notify(SERVICE_ID, notification);
+    // dispatchSnapshot -- bring a new listener up to date
+    private void dispatchSnapshot (PlaybackListener listener) {
+        TopTrackItem topTrackItem = getTrackItem();
+        if (topTrackItem != null) {
+            listener.onTrackChanged(mQueue.getPosition(), topTrackItem);
         }
+        listener.onStateChanged(getState());
+        listener.onProgress(getCurrentPosition(), getDuration());
+        scheduleProgress();
+    }
+
+    // dispatchChanges -- push track and state changes since the last dispatch
+    private void dispatchChanges () {
+        TopTrackItem topTrackItem = getTrackItem();
+        if ((mQueue.getPosition() != mDispatchedTrack) && (topTrackItem != null)) {
+            mDispatchedTrack = mQueue.getPosition();
+            for (PlaybackListener listener : new ArrayList<PlaybackListener>(sPlaybackListeners)) {
+                listener.onTrackChanged(mQueue.getPosition(), topTrackItem);
+            }
+        }
+
+        PlayTracksState state = getState();
+        if (state != mDispatchedState) {
+            mDispatchedState = state;
+            for (PlaybackListener listener : new ArrayList<PlaybackListener>(sPlaybackListeners)) {
+                listener.onStateChanged(state);
+            }
+        }
+
+        // one last update so a paused or finished track shows where it stopped
+        dispatchProgress();
+        scheduleProgress();
+    }
+
+    // dispatchProgress -- push the current position and duration
+    private void dispatchProgress () {
+        int position = getCurrentPosition();
+        int duration = getDuration();
+        for (PlaybackListener listener : new ArrayList<PlaybackListener>(sPlaybackListeners)) {
+            listener.onProgress(position, duration);
+        }
+    }
+
+    // scheduleProgress -- tick only while playing and someone is listening
+    private void scheduleProgress () {
+        mHandler.removeCallbacks(mProgressRunnable);
+        if ((mState != PlaybackState.STATE_PLAYING) || sPlaybackListeners.isEmpty()) {
+            return;
+        }
+
+        int duration = getDuration();
+        int interval = PROGRESS_INTERVAL_MAX_MS;
+        for (PlaybackListener listener : sPlaybackListeners) {
+            interval = Math.min(interval, listener.getProgressIntervalMs(duration));
+        }
+        mHandler.postDelayed(mProgressRunnable, Math.max(PROGRESS_INTERVAL_MIN_MS, interval));
     }
 
     // playNewTrack -- used to clean up any playback in progress and start a new track
     private void playNewTrack () {
+        // a prepare still in progress is abandoned
+        endPrepareTrace();
+
         // null here should not happen, but this handles any race conditions...
-        if (mTopTrackItems == null) {
+        TopTrackItem topTrackItem  = mQueue.getCurrent();
+        if (topTrackItem == null) {
             return;
         }
-        TopTrackItem topTrackItem  = mTopTrackItems.get (mTopTrackNowPlaying);
-        boolean validAudioURL = true;
+        Tracing.beginSection("PlayTracksService.playNewTrack");
+
+        // a pre-buffered next track is of no use once we start over with the player
+        releaseNextTrack();
 
         // handle current state, create new or cleanup old...
         switch (mState) {
@@ -281,38 +598,290 @@ public class PlayTracksService
         mMediaPlayer.setOnErrorListener(this);
         mMediaPlayer.setWakeMode(getApplicationContext(), PowerManager.PARTIAL_WAKE_LOCK);
 
-        // double check that we have a valid URL, if not we'll just go to an error state
-        if ( (topTrackItem.topTrackAudioURL != null) &&
-                Patterns.WEB_URL.matcher(topTrackItem.topTrackAudioURL).matches() ) {
+        // URL was validated when the track item was built, if not valid go to an error state,
+        // otherwise look up the clip and start preparing once we know where to play it from
+        if ( topTrackItem.topTrackAudioValid ) {
+            mWifiLock.acquire();
+            mPrepareStartNs    = System.nanoTime();
+            mPrepareTrace      = Tracing.beginAsync("PlayTracksService.prepare");
+            mPlayingCachedClip = false;
+            changeInternalState(PlaybackState.STATE_PREPARING);
+            lookupTrackSource(mMediaPlayer, topTrackItem, ++mSourceGeneration);
+        } else {
+            changeInternalState(PlaybackState.STATE_ERROR);
+        }
+        Tracing.endSection();
+	}
+
+    /**
+     * TrackSource - where a track is played from, the cached clip or a stream URL
+     */
+    private static class TrackSource {
+        final String  path;
+        final boolean cachedClip;
+
+        TrackSource (String path, boolean cachedClip) {
+            this.path       = path;
+            this.cachedClip = cachedClip;
+        }
+    }
+
+    // findTrackSource -- play the clip from the preview cache if we have it, otherwise stream it
+    //     through the loopback proxy which keeps a copy for next time. Reads the disk, so it
+    //     runs on the TaskScheduler playback lane.
+    private TrackSource findTrackSource (TopTrackItem topTrackItem) {
+        PreviewAudioCache cache = PreviewAudioCache.getInstance(this);
+        File clip = cache.get(topTrackItem.topTrackAudioURL);
+        if (clip != null) {
+            return new TrackSource(clip.getPath(), true);
+        }
+
+        PreviewStreamProxy proxy    = PreviewStreamProxy.getInstance(this);
+        String             proxyUrl = (proxy != null) ? proxy.getProxyUrl(topTrackItem.topTrackAudioURL) : null;
+        if (proxyUrl != null) {
+            return new TrackSource(proxyUrl, false);
+        }
+
+        // no proxy for this clip, stream directly and download a copy in the background
+        cache.fill(topTrackItem.topTrackAudioURL);
+        return new TrackSource(topTrackItem.topTrackAudioURL, false);
+    }
+
+    // lookupTrackSource -- find the source on the playback lane, then hand it to the player on
+    //     the main thread. "generation" is mSourceGeneration for the current player, 0 for the
+    //     next one.
+    private void lookupTrackSource (final MediaPlayer player, final TopTrackItem topTrackItem,
+                                    final int generation) {
+        TaskScheduler.getInstance().submit(TaskScheduler.LANE_PLAYBACK, new Runnable() {
+            @Override
+            public void run () {
+                final TrackSource source = findTrackSource(topTrackItem);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run () {
+                        if (generation == 0) {
+                            prepareNextSource(player, source);
+                        } else {
+                            prepareSource(player, source, generation);
+                        }
+                    }
+                });
+            }
+        }, null);
+    }
+
+    // prepareSource -- start preparing the current player, unless another track took its place
+    private void prepareSource (MediaPlayer player, TrackSource source, int generation) {
+        if ( (player != mMediaPlayer) || (generation != mSourceGeneration) ||
+             (mState != PlaybackState.STATE_PREPARING) ) {
+            return;
+        }
+
+        try {
+            player.setDataSource(source.path);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Spotify Audio URL is not valid" + e.toString());
+            if ( mWifiLock.isHeld() ) {
+                mWifiLock.release();
+            }
+            endPrepareTrace();
+            changeInternalState(PlaybackState.STATE_ERROR);
+            return;
+        }
+        mPlayingCachedClip = source.cachedClip;
+        player.prepareAsync();
+    }
+
+    // scheduleNextTrack -- prepare the next track NEXT_TRACK_LEAD_MS before this one ends
+    private void scheduleNextTrack () {
+        mHandler.removeCallbacks(mPrepareNextRunnable);
+        if ( (mState != PlaybackState.STATE_PLAYING) || (mNextMediaPlayer != null) ||
+             (mQueue.size() < 2) ) {
+            return;
+        }
+
+        int remaining = mMediaPlayer.getDuration() - mMediaPlayer.getCurrentPosition();
+        mHandler.postDelayed(mPrepareNextRunnable, Math.max(0, remaining - NEXT_TRACK_LEAD_MS));
+    }
+
+    // prepareNextTrack -- prepare the next queue position in a second media player
+    private void prepareNextTrack () {
+        if ( (mState != PlaybackState.STATE_PLAYING) || (mNextMediaPlayer != null) ) {
+            return;
+        }
+
+        int          nextPosition = mQueue.getNextPosition();
+        TopTrackItem nextItem     = mQueue.get(nextPosition);
+        if (!nextItem.topTrackAudioValid) {
+            return;
+        }
+
+        MediaPlayer nextPlayer = new MediaPlayer ();
+        nextPlayer.setAudioStreamType (AudioManager.STREAM_MUSIC);
+        nextPlayer.setOnPreparedListener(mNextPreparedListener);
+        nextPlayer.setOnCompletionListener(this);
+        nextPlayer.setOnErrorListener(this);
+        nextPlayer.setWakeMode(getApplicationContext(), PowerManager.PARTIAL_WAKE_LOCK);
+
+        Log.d(LOG_TAG, "preparing next track ==> " + nextPosition);
+        mNextMediaPlayer   = nextPlayer;
+        mNextTrackPosition = nextPosition;
+        mNextPrepared      = false;
+        mNextCachedClip    = false;
+        mPrepareNextTrace  = Tracing.beginAsync("PlayTracksService.prepareNext");
+        lookupTrackSource(nextPlayer, nextItem, 0);
+    }
+
+    // prepareNextSource -- start preparing the next player, unless it was released meanwhile
+    private void prepareNextSource (MediaPlayer player, TrackSource source) {
+        if (player != mNextMediaPlayer) {
+            return;
+        }
+
+        try {
+            player.setDataSource(source.path);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Spotify Audio URL is not valid" + e.toString());
+            releaseNextTrack();
+            return;
+        }
+        mNextCachedClip = source.cachedClip;
+        player.prepareAsync();
+    }
+
+    // once the next track is ready chain it to the current player for a gapless handover
+    private final MediaPlayer.OnPreparedListener mNextPreparedListener = new MediaPlayer.OnPreparedListener() {
+        @Override
+        public void onPrepared (MediaPlayer player) {
+            if (player != mNextMediaPlayer) {
+                return;
+            }
+            endPrepareNextTrace();
+            mNextPrepared = true;
             try {
-                mMediaPlayer.setDataSource(topTrackItem.topTrackAudioURL);
+                mMediaPlayer.setNextMediaPlayer(player);
             } catch (Exception e) {
-                Log.e(LOG_TAG, "Spotify Audio URL is not valid" + e.toString());
-                validAudioURL = false;
+                // the swap in onCompletion still avoids preparing again
+                Log.v(LOG_TAG, "setNextMediaPlayer failed" + e.toString());
             }
-        } else {
-            validAudioURL = false;
+            Log.d(LOG_TAG, "next track ready ==> " + mNextTrackPosition);
+        }
+    };
+
+    // releaseNextTrack -- drop the pre-buffered next track, if any
+    private void releaseNextTrack () {
+        mHandler.removeCallbacks(mPrepareNextRunnable);
+        if (mNextMediaPlayer == null) {
+            return;
+        }
+        endPrepareNextTrace();
+        if ( (mMediaPlayer != null) && mNextPrepared ) {
+            try {
+                mMediaPlayer.setNextMediaPlayer(null);
+            } catch (Exception e) {
+                // player may already be reset, nothing chained any more
+            }
+        }
+        mNextMediaPlayer.release();
+        mNextMediaPlayer   = null;
+        mNextTrackPosition = PlaybackQueue.NO_POSITION;
+        mNextPrepared      = false;
+        mNextCachedClip    = false;
+    }
+
+    // switchToNextTrack -- make the pre-buffered player current, "started" is true when the
+    //     framework already started it through setNextMediaPlayer
+    private boolean switchToNextTrack (boolean started) {
+        if ( (mNextMediaPlayer == null) || !mNextPrepared ) {
+            return false;
         }
 
-        // start preparing audio or go to error state if the URL was not valid
-        if ( validAudioURL ) {
+        MediaPlayer oldPlayer = mMediaPlayer;
+        mMediaPlayer        = mNextMediaPlayer;
+        mPlayingCachedClip  = mNextCachedClip;
+        mQueue.moveTo(mNextTrackPosition);
+        mNextMediaPlayer    = null;
+        mNextTrackPosition  = PlaybackQueue.NO_POSITION;
+        mNextPrepared       = false;
+        mNextCachedClip     = false;
+
+        oldPlayer.setNextMediaPlayer(null);
+        oldPlayer.release();
+
+        if (!started || !mMediaPlayer.isPlaying()) {
+            mMediaPlayer.start();
+        }
+        if ( !mWifiLock.isHeld() ) {
             mWifiLock.acquire();
-            mMediaPlayer.prepareAsync();
-            changeInternalState(InternalState.STATE_PREPARING);
+        }
+        changeInternalState(PlaybackState.STATE_PLAYING);
+        scheduleNextTrack();
+        return true;
+    }
+
+    // endPrepareTrace -- close the async trace span of the current player's prepare, if open
+    private void endPrepareTrace () {
+        Tracing.endAsync("PlayTracksService.prepare", mPrepareTrace);
+        mPrepareTrace = 0;
+    }
+
+    // endPrepareNextTrace -- close the async trace span of the next player's prepare, if open
+    private void endPrepareNextTrace () {
+        Tracing.endAsync("PlayTracksService.prepareNext", mPrepareNextTrace);
+        mPrepareNextTrace = 0;
+    }
+
+    // startGapProbe -- the next track was started after a completion, watch for its audio. The
+    //     gap timers are diagnostics, so release builds do not poll for them.
+    private void startGapProbe (boolean gapless) {
+        mHandler.removeCallbacks(mGapProbeRunnable);
+        if (!BuildConfig.DEBUG || (mCompletedAtNs == 0)) {
+            mCompletedAtNs = 0;
+            return;
+        }
+        mGapless         = gapless;
+        mGapProbeStartNs = System.nanoTime();
+        probeGap();
+    }
+
+    /**
+     * probeGap - polls the new player until its position moves past 0. The time it started is
+     *     taken as now less that position, so the gap does not depend on the polling interval.
+     *     A chained player can start before onCompletion is delivered, that counts as no gap.
+     */
+    private void probeGap () {
+        if ( (mCompletedAtNs == 0) || (mMediaPlayer == null) || (mState != PlaybackState.STATE_PLAYING) ) {
+            mCompletedAtNs = 0;
+            return;
+        }
+
+        long nowNs      = System.nanoTime();
+        int  positionMs = mMediaPlayer.getCurrentPosition();
+        if (positionMs > 0) {
+            long gapNs = Math.max(0, (nowNs - positionMs * 1000000L) - mCompletedAtNs);
+            Metrics.getInstance().recordNs(
+                    mGapless ? Metrics.TIMER_TRACK_GAP_GAPLESS : Metrics.TIMER_TRACK_GAP_PREPARED, gapNs);
+            if (BuildConfig.DEBUG) {
+                Log.d(LOG_TAG, "track gap ==> " + (gapNs / 1000000) + "ms|gapless=" + mGapless);
+            }
+            mCompletedAtNs = 0;
+        } else if ((nowNs - mGapProbeStartNs) > GAP_PROBE_TIMEOUT_NS) {
+            mCompletedAtNs = 0;
         } else {
-            changeInternalState(InternalState.STATE_ERROR);
+            mHandler.postDelayed(mGapProbeRunnable, GAP_PROBE_INTERVAL_MS);
         }
-	}
+    }
 
     // pauseTrack -- used to pause playback
     private void pauseTrack () {
         switch (mState) {
             case STATE_PLAYING:
+                mHandler.removeCallbacks(mPrepareNextRunnable);
                 mMediaPlayer.pause();
                 if ( mWifiLock.isHeld() ) {
                     mWifiLock.release();
                 }
-                changeInternalState (InternalState.STATE_PAUSED);
+                changeInternalState (PlaybackState.STATE_PAUSED);
                 break;
 
             default:
@@ -327,7 +896,8 @@ public class PlayTracksService
             case STATE_PAUSED:
                 mWifiLock.acquire();
                 mMediaPlayer.start();
-                changeInternalState (InternalState.STATE_PLAYING);
+                changeInternalState (PlaybackState.STATE_PLAYING);
+                scheduleNextTrack();
                 break;
 
             default:
@@ -366,82 +936,40 @@ public class PlayTracksService
         if (serviceInstance == null) {
             return false;
         }
-        switch (serviceInstance.mState) {
-            case STATE_PREPARING:
-            case STATE_PLAYING  :
-            case STATE_PAUSED   :
-                return true;
-
-            default:
-                return false;
-        }
+        return serviceInstance.mState.isActive();
     }
 
     // getState -- return external state of the service
     public PlayTracksState getState () {
-		switch (mState) {
-			case STATE_PREPARING :
-			case STATE_PLAYING   :
-			    return PlayTracksState.PLAYTRACKS_PLAYING;
-			
-			case STATE_PAUSED    :
-			    return PlayTracksState.PLAYTRACKS_PAUSED;
-			
-			case STATE_ERROR     :
-			    return PlayTracksState.PLAYTRACKS_ERROR;
-				
-			default              :
-			    return PlayTracksState.PLAYTRACKS_INACTIVE;
-		}
+		return mState.toPlayTracksState();
 	}
 
     // getTrackNowPlaying -- return current track that is playing or paused
 	public int getTrackNowPlaying () {
-		return mTopTrackNowPlaying;
+		return mQueue.getPosition();
 	}
 
     // getTrackItem -- return track details to allow showing artist/track information
 	public TopTrackItem getTrackItem () {
-		if ( (mTopTrackItems != null) && (mTopTrackNowPlaying != ListView.INVALID_POSITION) ) {
-			return mTopTrackItems.get(mTopTrackNowPlaying);
-		}
-		return null;
+		return mQueue.getCurrent();
 	}
 
     // getDuration -- get duration of the currently playing track
 	public int getDuration () {
-		switch (mState) {
-			case STATE_PLAYING   :
-			case STATE_PAUSED    :
-			    return mMediaPlayer.getDuration ();
-			    
-			default              :
-			    return 0;
-		}
+		return mState.hasTrackPosition() ? mMediaPlayer.getDuration () : 0;
 	}
 
     // getCurrentPosition -- gets current position of the currently playing track
 	public int getCurrentPosition () {
-		switch (mState) {
-			case STATE_PLAYING   :
-			case STATE_PAUSED    :
-			    return mMediaPlayer.getCurrentPosition();
-			    
-			default              :
-			    return 0;
-		}
+		return mState.hasTrackPosition() ? mMediaPlayer.getCurrentPosition() : 0;
 	}
 
     // handleSeekAction -- moves to a new position in a playing or paused track
     public void handleSeekAction (int newPosition) {
-        switch (mState) {
-            case STATE_PLAYING   :
-            case STATE_PAUSED    :
-                mMediaPlayer.seekTo (newPosition);
-                break;
-
-            default              :
-                break;
+        if (mState.hasTrackPosition()) {
+            mMediaPlayer.seekTo (newPosition);
+            scheduleNextTrack();
+            dispatchProgress();
         }
     }
 
@@ -449,9 +977,9 @@ public class PlayTracksService
 	public void handlePreviousAction () {
 		// make sure we have tracks to play
 		if (getTrackItem () != null) {
-			if (--mTopTrackNowPlaying < 0) {
-                mTopTrackNowPlaying = mTopTrackItems.size() - 1;
-		    }
+            // a track the user skips to is not a gap between tracks
+            mCompletedAtNs = 0;
+			mQueue.moveToPrevious();
 		    playNewTrack ();
 		}		
 	}
@@ -460,9 +988,14 @@ public class PlayTracksService
 	public void handleNextAction () {
 		// make sure we have tracks to play
 		if (getTrackItem () != null) {
-			if (++mTopTrackNowPlaying >= mTopTrackItems.size()) {
-                mTopTrackNowPlaying = 0;
-		    }
+            // a track the user skips to is not a gap between tracks
+            mCompletedAtNs = 0;
+
+            // use the pre-buffered next track when it is ready
+            if ( (mState == PlaybackState.STATE_PLAYING) && switchToNextTrack(false) ) {
+                return;
+            }
+			mQueue.moveToNext();
 		    playNewTrack ();
 		}		
 	}
@@ -489,12 +1022,17 @@ public class PlayTracksService
         // TODO: android suggests we need to properly handle media focus change events
         if (intent.getAction().equals(ACTION_START)) {
             Log.i(LOG_TAG, "Received ACTION_START Intent");
-            if (intent.hasExtra(ARRAY_KEY) && intent.hasExtra(POSITION_KEY)) {
-                mTopTrackItems      = intent.getExtras().getParcelableArrayList(ARRAY_KEY);
-                mTopTrackNowPlaying = intent.getExtras().getInt(POSITION_KEY);
+            List<TopTrackItem> topTrackItems = TrackRepository.getInstance().getTracks(
+                    intent.getStringExtra(SESSION_KEY));
+            if ((topTrackItems != null) && intent.hasExtra(POSITION_KEY)) {
+                mQueue.setTracks(topTrackItems, intent.getIntExtra(POSITION_KEY, 0));
 
-                Log.d(LOG_TAG, "got top tracks ==> " + mTopTrackItems.toString());
-                Log.d(LOG_TAG, "got track position ==> " + String.valueOf(mTopTrackNowPlaying));
+                // positions now refer to a different list, forget cached notifications
+                mNotificationTrack = PlaybackQueue.NO_POSITION;
+                mPostedTrack       = PlaybackQueue.NO_POSITION;
+
+                Log.d(LOG_TAG, "got top tracks ==> " + mQueue.size() + " tracks");
+                Log.d(LOG_TAG, "got track position ==> " + String.valueOf(mQueue.getPosition()));
             }
 
             // start playback
@@ -521,12 +1059,33 @@ public class PlayTracksService
         return START_NOT_STICKY;
     }
 
+    @Override
+    public void onCreate () {
+        super.onCreate();
+        sRunningService = this;
+    }
+
     @Override
     public void onDestroy () {
         Log.d(LOG_TAG, "onDestroy");
+        mHandler.removeCallbacks(mProgressRunnable);
+        mHandler.removeCallbacks(mNotifyRunnable);
+        mHandler.removeCallbacks(mGapProbeRunnable);
+        if (sRunningService == this) {
+            sRunningService = null;
+        }
+
+        // views go back to showing nothing playing
+        mState = PlaybackState.STATE_STOPPED;
+        for (PlaybackListener listener : new ArrayList<PlaybackListener>(sPlaybackListeners)) {
+            listener.onStateChanged(PlayTracksState.PLAYTRACKS_INACTIVE);
+        }
+
         if ( (mWifiLock != null) && (mWifiLock.isHeld()) ) {
             mWifiLock.release();
         }
+        releaseNextTrack();
+        endPrepareTrace();
         if (mMediaPlayer != null) {
             mMediaPlayer.release ();
             mMediaPlayer = null;
@@ -537,30 +1096,68 @@ public class PlayTracksService
     @Override
     public void onPrepared (MediaPlayer player) {
         // time to start playing...
+        endPrepareTrace();
         player.start();
-		changeInternalState(InternalState.STATE_PLAYING);
+        if (mPrepareStartNs != 0) {
+            Metrics.getInstance().recordSince(Metrics.TIMER_FIRST_SOUND, mPrepareStartNs);
+            mPrepareStartNs = 0;
+        }
+        Metrics.getInstance().count(Metrics.COUNT_TRACKS_STARTED);
+		changeInternalState(PlaybackState.STATE_PLAYING);
+        startGapProbe(false);
+        scheduleNextTrack();
     }
 	
 	@Override
     public void onCompletion (MediaPlayer player) {
+        // ignore a completion from anything but the current player
+        if (player != mMediaPlayer) {
+            return;
+        }
+        mCompletedAtNs = System.nanoTime();
+
+        // the chained next player has already taken over, just make it current
+        if (switchToNextTrack(true)) {
+            startGapProbe(true);
+            return;
+        }
+
         // keep cycling through tracks until user pauses and exits now playing screen
-		if (mTopTrackNowPlaying >= (mTopTrackItems.size()) - 1) {
-			mTopTrackNowPlaying = 0;
-		} else {
-		    ++mTopTrackNowPlaying;
-		}
+		mQueue.moveToNext();
         playNewTrack();
     }
 
     @Override
     public boolean onError (MediaPlayer player, int what, int extra) {
         Log.d(LOG_TAG, "onError");
+
+        // losing the pre-buffered track is not an error, it is prepared again on demand
+        if (player == mNextMediaPlayer) {
+            releaseNextTrack();
+            return true;
+        }
+
+        // a cached clip that cannot be played is dropped so it is streamed again next time,
+        // errors while streaming leave the cache alone
+        final TopTrackItem topTrackItem = getTrackItem();
+        if ( mPlayingCachedClip && (topTrackItem != null) ) {
+            final PreviewAudioCache cache = PreviewAudioCache.getInstance(this);
+            TaskScheduler.getInstance().submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+                @Override
+                public void run () {
+                    cache.remove(topTrackItem.topTrackAudioURL);
+                }
+            }, null);
+        }
+        mPlayingCachedClip = false;
+
         // handle error and reset before trying again
 		if ( (mWifiLock != null) && (mWifiLock.isHeld()) ) {
             mWifiLock.release();
         }
+        endPrepareTrace();
 		player.reset ();
-        changeInternalState(InternalState.STATE_ERROR);
+        changeInternalState(PlaybackState.STATE_ERROR);
         return true;
     }
 }
@@ -0,0 +1,499 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * PreviewAudioCache - disk cache of 30 second preview clips keyed by URL, bounded by the total
+ *     number of bytes kept, so replaying a track does not stream it again
+ *
+ *     each clip is stored as-is next to a small ".meta" file holding its length and CRC32. A
+ *     clip is only added when the whole download arrived and matched the server's length. A hit
+ *     is only served while the file still has the recorded length, and the checksum of each
+ *     clip is checked in the background the first time it is served. Clips that fail to play
+ *     are dropped with remove. The least recently played clips go first once the cache is over
+ *     MAX_BYTES.
+ *
+ *     this class is used by PlayTracksService and PreviewStreamProxy
+ *
+ */
+public class PreviewAudioCache {
+    private static final String LOG_TAG = PreviewAudioCache.class.getSimpleName();
+
+    private static final String CACHE_DIR_NAME   = "preview-audio";
+    private static final String CLIP_SUFFIX      = ".clip";
+    private static final String META_SUFFIX      = ".meta";
+    private static final String PART_SUFFIX      = ".part";
+    private static final String PART_INFO_SUFFIX = ".partinfo";
+    private static final long   PART_MAX_AGE     = 24 * 60 * 60 * 1000; // 1 day
+    private static final int    FORMAT_VERSION   = 1;
+    private static final long   MAX_BYTES        = 25 * 1024 * 1024; // 25MB, roughly 80 previews
+    private static final int    BUFFER_SIZE      = 16 * 1024;
+
+    private static PreviewAudioCache sInstance;
+
+    private final Context         mContext;
+    private final File            mCacheDir;
+    private final TaskScheduler   mScheduler;
+
+    // held while trimming, so the directory scan does not block lookups on the cache lock
+    private final Object          mTrimLock = new Object();
+
+    // URLs currently being downloaded, so a clip is only fetched once
+    private final Set<String> mFilling = new HashSet<String>();
+
+    // URLs whose clip passed the checksum check since the process started
+    private final Set<String> mVerified = new HashSet<String>();
+
+    // statistics
+    private long mHitCount;
+    private long mMissCount;
+    private long mCorruptCount;
+    private long mEvictionCount;
+    private long mEvictedBytes;
+    private long mFillCount;
+    private long mFillFailedCount;
+    private long mBytesFilled;
+
+    // getInstance -- returns the cache shared by all players
+    public static synchronized PreviewAudioCache getInstance (Context context) {
+        if (sInstance == null) {
+            sInstance = new PreviewAudioCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private PreviewAudioCache (Context context) {
+        mContext  = context;
+        mCacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+
+        // downloads and checks run on the background lane, playback streams come first
+        mScheduler = TaskScheduler.getInstance();
+    }
+
+    // keyFor -- file name used for a URL
+    private static String keyFor (String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            return String.format("%032x", new BigInteger(1, hash));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        } catch (IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private File clipFile (String key) {
+        return new File(mCacheDir, key + CLIP_SUFFIX);
+    }
+
+    private File metaFile (String key) {
+        return new File(mCacheDir, key + META_SUFFIX);
+    }
+
+    // partFile -- file a clip is downloaded into before commit, kept to resume a download
+    File partFile (String url) {
+        mCacheDir.mkdirs();
+        return new File(mCacheDir, keyFor(url) + PART_SUFFIX);
+    }
+
+    // readPartValidator -- ETag or Last-Modified of the copy the partial file holds, null when
+    //     it is not known and the partial file cannot be resumed safely
+    String readPartValidator (String url) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(new File(mCacheDir, keyFor(url) + PART_INFO_SUFFIX))));
+            return (in.readInt() == FORMAT_VERSION) ? in.readUTF() : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // writePartValidator -- remember the validator of a new partial file, null forgets it
+    void writePartValidator (String url, String validator) {
+        File info = new File(mCacheDir, keyFor(url) + PART_INFO_SUFFIX);
+        if (validator == null) {
+            info.delete();
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(info)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(validator);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            info.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * get - returns the cached clip for this URL, or null on a miss. Only the meta file and
+     *     the file size are checked, the full checksum is checked later in the background.
+     *     Reads the disk, so must not be called on the main thread.
+     */
+    public File get (String url) {
+        String key  = keyFor(url);
+        File   clip = clipFile(key);
+        File   meta = metaFile(key);
+        boolean verify;
+        synchronized (this) {
+            if (!clip.exists() || !meta.exists()) {
+                mMissCount++;
+                return null;
+            }
+
+            long[] header = readMeta(meta);
+            if ((header == null) || (header[0] != clip.length())) {
+                Log.v(LOG_TAG, "dropping corrupt clip " + clip.getName());
+                clip.delete();
+                meta.delete();
+                mCorruptCount++;
+                mMissCount++;
+                return null;
+            }
+            mHitCount++;
+            verify = mVerified.add(url);
+        }
+
+        // mark as recently used for eviction
+        clip.setLastModified(System.currentTimeMillis());
+
+        // check the whole clip once, it is dropped if bad and fetched again on the next play
+        if (verify) {
+            final String verifyUrl = url;
+            mScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+                @Override
+                public void run () {
+                    if (!verify(verifyUrl)) {
+                        Log.v(LOG_TAG, "clip failed checksum " + verifyUrl);
+                        remove(verifyUrl);
+                    }
+                }
+            }, null);
+        }
+        return clip;
+    }
+
+    // contains -- true when the clip is cached, does not count as a hit or miss
+    public boolean contains (String url) {
+        String key = keyFor(url);
+        synchronized (this) {
+            return clipFile(key).exists() && metaFile(key).exists();
+        }
+    }
+
+    // fill -- download the clip in the background unless it is cached or already downloading
+    public void fill (final String url) {
+        if (contains(url)) {
+            return;
+        }
+        synchronized (this) {
+            if (!mFilling.add(url)) {
+                return;
+            }
+        }
+
+        mScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+            @Override
+            public void run () {
+                try {
+                    download(url);
+                } finally {
+                    synchronized (PreviewAudioCache.this) {
+                        mFilling.remove(url);
+                    }
+                }
+            }
+        }, null);
+    }
+
+    // remove -- drop a clip, used when a cached clip fails to play or fails its checksum
+    public void remove (String url) {
+        String key = keyFor(url);
+        synchronized (this) {
+            mVerified.remove(url);
+            metaFile(key).delete();
+            if (clipFile(key).delete()) {
+                mCorruptCount++;
+            }
+        }
+    }
+
+    // download -- runs on a background lane thread, writes the clip and its meta file
+    private void download (String url) {
+        if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            Log.v(LOG_TAG, "unable to create " + mCacheDir.toString());
+            return;
+        }
+
+        File tmpFile = new File(mCacheDir, keyFor(url) + ".tmp");
+        InputStream  in  = null;
+        OutputStream out = null;
+        try {
+            // no-store keeps the clip out of the HTTP cache, we keep our own copy
+            Request  request  = new Request.Builder()
+                    .url(url)
+                    .header("Cache-Control", "no-store")
+                    .build();
+            Response response = SpotifyClient.getInstance(mContext).getHttpClient()
+                    .newCall(request).execute();
+            if (!response.isSuccessful()) {
+                // the body is never read, close it to free the connection
+                closeQuietly(response.body());
+                throw new IOException("HTTP " + response.code());
+            }
+            long expected = response.body().contentLength();
+
+            // copy to a temporary file, computing the checksum on the way
+            CRC32  crc    = new CRC32();
+            long   length = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int    count;
+            in  = response.body().byteStream();
+            out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+                crc.update(buffer, 0, count);
+                length += count;
+            }
+            out.close();
+            out = null;
+
+            // only whole clips go in the cache
+            if ((expected >= 0) && (expected != length)) {
+                throw new IOException("truncated, got " + length + " of " + expected);
+            }
+            commit(url, tmpFile, length, crc.getValue());
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "unable to cache clip" + e.toString());
+            tmpFile.delete();
+            synchronized (this) {
+                mFillFailedCount++;
+            }
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+        Log.d(LOG_TAG, "preview cache ==> " + toString());
+    }
+
+    /**
+     * commit - move a complete clip into the cache and record its length and checksum, then
+     *     evict older clips if needed. Used by the download above and by anything else that
+     *     fetched the whole clip.
+     */
+    void commit (String url, File completeFile, long length, long crc) throws IOException {
+        String key  = keyFor(url);
+        File   clip = clipFile(key);
+        File   meta = metaFile(key);
+
+        synchronized (this) {
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(meta)));
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(length);
+                out.writeLong(crc);
+                out.close();
+                out = null;
+            } finally {
+                closeQuietly(out);
+            }
+
+            if (!completeFile.renameTo(clip)) {
+                meta.delete();
+                throw new IOException("rename failed");
+            }
+            new File(mCacheDir, key + PART_INFO_SUFFIX).delete();
+            mVerified.add(url);
+            mFillCount++;
+            mBytesFilled += length;
+        }
+
+        trimToSize();
+    }
+
+    // verify -- full checksum check of a cached clip, too slow for the main thread
+    private boolean verify (String url) {
+        String key  = keyFor(url);
+        File   clip = clipFile(key);
+        long[] header;
+        synchronized (this) {
+            header = readMeta(metaFile(key));
+        }
+        if (header == null) {
+            return false;
+        }
+
+        InputStream in = null;
+        try {
+            CRC32  crc    = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int    count;
+            in = new FileInputStream(clip);
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+            }
+            return (crc.getValue() == header[1]);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // readMeta -- returns {length, crc} or null when the meta file is unreadable
+    private static long[] readMeta (File meta) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            return new long[] { in.readLong(), in.readLong() };
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * trimToSize - remove least recently played clips until under MAX_BYTES. The directory is
+     *     scanned without the cache lock, which is only taken to delete each clip, so lookups
+     *     from the player never wait for the scan.
+     */
+    private void trimToSize () {
+        synchronized (mTrimLock) {
+            trimToSizeLocked();
+        }
+    }
+
+    private void trimToSizeLocked () {
+        File[] files = mCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        int  clips = 0;
+        long now   = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(CLIP_SUFFIX)) {
+                total += file.length();
+                files[clips++] = file;
+            } else if ( (file.getName().endsWith(PART_SUFFIX) || file.getName().endsWith(PART_INFO_SUFFIX)) &&
+                        ((now - file.lastModified()) > PART_MAX_AGE) ) {
+                // abandoned partial downloads are not worth resuming any more
+                file.delete();
+            }
+        }
+        if (total <= MAX_BYTES) {
+            return;
+        }
+
+        File[] clipFiles = Arrays.copyOf(files, clips);
+        Arrays.sort(clipFiles, new Comparator<File>() {
+            @Override
+            public int compare (File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified) ? -1 : ((lhsModified == rhsModified) ? 0 : 1);
+            }
+        });
+
+        for (File clip : clipFiles) {
+            if (total <= MAX_BYTES) {
+                break;
+            }
+            long length = clip.length();
+            String name = clip.getName();
+            synchronized (this) {
+                if (clip.delete()) {
+                    new File(mCacheDir, name.substring(0, name.length() - CLIP_SUFFIX.length()) + META_SUFFIX).delete();
+                    total -= length;
+                    mEvictionCount++;
+                    mEvictedBytes += length;
+                }
+            }
+        }
+    }
+
+    // clear -- drop every clip
+    public synchronized void clear () {
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    // getSizeBytes -- bytes currently held in cached clips
+    public synchronized long getSizeBytes () {
+        long   total = 0;
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(CLIP_SUFFIX)) {
+                    total += file.length();
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void closeQuietly (Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return ("hits=" + mHitCount +
+                "|misses=" + mMissCount +
+                "|corrupt=" + mCorruptCount +
+                "|fills=" + mFillCount +
+                "|fillFailed=" + mFillFailedCount +
+                "|bytesFilled=" + mBytesFilled +
+                "|evictions=" + mEvictionCount +
+                "|evictedBytes=" + mEvictedBytes);
+    }
+}
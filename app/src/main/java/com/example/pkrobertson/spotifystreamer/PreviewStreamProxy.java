@@ -0,0 +1,688 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * PreviewStreamProxy - small HTTP server on the loopback interface that MediaPlayer streams
+ *     preview clips from, so each clip is written to disk while it plays
+ *
+ *     a request for a clip starts (or joins) one download of that clip into a partial file
+ *     and the player is fed from that file as bytes arrive, so playback starts with the first
+ *     chunk. Range requests for seeks are answered from the partial file, waiting only if the
+ *     download has not got that far yet. A partial file left by an earlier download is
+ *     resumed with a Range request, guarded by If-Range with the ETag or Last-Modified of the
+ *     copy it came from, so a clip that changed on the server is fetched again from the start.
+ *     Finished clips are handed to PreviewAudioCache and never fetched again.
+ *
+ *     any app can connect to the loopback port, so the proxy only fetches what getProxyUrl
+ *     handed out: each URL carries a random token that maps to the clip URL, only Spotify
+ *     preview hosts (and the host of a local stand-in endpoint) are accepted, clips are capped
+ *     at MAX_CLIP_BYTES and connections and downloads run on small bounded pools.
+ *
+ *     this class is used by PlayTracksService, clips it finishes go to PreviewAudioCache
+ *
+ */
+public class PreviewStreamProxy {
+    private static final String LOG_TAG = PreviewStreamProxy.class.getSimpleName();
+
+    private static final String  CLIP_PATH      = "/clip?token=";
+    private static final String  DEFAULT_TYPE   = "audio/mpeg";
+    private static final String  PREVIEW_HOST   = "p.scdn.co";
+    private static final int     BUFFER_SIZE    = 16 * 1024;
+    private static final int     SO_TIMEOUT_MS  = 30 * 1000;
+    private static final long    MAX_CLIP_BYTES = 5 * 1024 * 1024; // a 30 second preview is ~500KB
+    private static final int     MAX_CLIENTS    = 4;  // player connections served at once
+    private static final int     MAX_DOWNLOADS  = 2;  // clips fetched at once
+    private static final int     MAX_TOKENS     = 32; // proxy URLs still accepted
+    private static final Pattern RANGE_HEADER   = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern CONTENT_RANGE  = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private static PreviewStreamProxy sInstance;
+
+    private final Context            mContext;
+    private final PreviewAudioCache  mCache;
+    private final ThreadPoolExecutor mClientExecutor;
+    private final ThreadPoolExecutor mDownloadExecutor;
+    private final SecureRandom       mRandom = new SecureRandom();
+    private final String             mEndpointHost;
+    private ServerSocket             mServerSocket;
+
+    // downloads in progress, keyed by clip URL
+    private final Map<String, Download> mDownloads = new HashMap<String, Download>();
+
+    // clip URLs by the token in the proxy URL handed to the player, oldest dropped first
+    private final Map<String, String> mTokens = new LinkedHashMap<String, String>(MAX_TOKENS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<String, String> eldest) {
+            return size() > MAX_TOKENS;
+        }
+    };
+
+    // statistics
+    private long mRequestCount;
+    private long mCachedCount;
+    private long mResumedCount;
+    private long mDownloadedBytes;
+    private long mFailedCount;
+    private long mRejectedCount;
+
+    // getInstance -- returns the running proxy, or null if it could not be started
+    public static synchronized PreviewStreamProxy getInstance (Context context) {
+        if (sInstance == null) {
+            PreviewStreamProxy proxy = new PreviewStreamProxy(context.getApplicationContext());
+            if (!proxy.start()) {
+                return null;
+            }
+            sInstance = proxy;
+        }
+        return sInstance;
+    }
+
+    private PreviewStreamProxy (Context context) {
+        mContext = context;
+        mCache   = PreviewAudioCache.getInstance(context);
+
+        // a stand-in server set with -PspotifyEndpoint serves the previews too
+        URI endpoint  = UrlValidator.parseWebUrl(BuildConfig.SPOTIFY_ENDPOINT);
+        mEndpointHost = (endpoint != null) ? endpoint.getHost() : PREVIEW_HOST;
+
+        // connections beyond the pool and its queue are turned away, downloads are limited by
+        // the number of tokens handed out
+        mClientExecutor = new ThreadPoolExecutor(MAX_CLIENTS, MAX_CLIENTS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_CLIENTS), new ProxyThreadFactory());
+        mClientExecutor.allowCoreThreadTimeOut(true);
+        mDownloadExecutor = new ThreadPoolExecutor(MAX_DOWNLOADS, MAX_DOWNLOADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ProxyThreadFactory());
+        mDownloadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    // ProxyThreadFactory -- daemon threads at audio priority
+    private static class ProxyThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread (final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run () {
+                    // feeding the player matters more than list work, less than the UI
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+                    runnable.run();
+                }
+            }, LOG_TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    // start -- bind to an ephemeral loopback port and accept connections in the background
+    private boolean start () {
+        try {
+            mServerSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "unable to start proxy" + e.toString());
+            return false;
+        }
+
+        new ProxyThreadFactory().newThread(new Runnable() {
+            @Override
+            public void run () {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+                        try {
+                            mClientExecutor.execute(new Runnable() {
+                                @Override
+                                public void run () {
+                                    handleClient(socket);
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            synchronized (PreviewStreamProxy.this) {
+                                mRejectedCount++;
+                            }
+                            closeQuietly(socket);
+                        }
+                    } catch (IOException e) {
+                        Log.v(LOG_TAG, "accept failed" + e.toString());
+                    }
+                }
+            }
+        }).start();
+        Log.d(LOG_TAG, "proxy listening on port " + mServerSocket.getLocalPort());
+        return true;
+    }
+
+    // isAllowedUrl -- only preview clips from Spotify, or from the stand-in endpoint, are fetched
+    private boolean isAllowedUrl (String url) {
+        URI uri = UrlValidator.parseWebUrl(url);
+        return (uri != null) &&
+                (PREVIEW_HOST.equalsIgnoreCase(uri.getHost()) || mEndpointHost.equalsIgnoreCase(uri.getHost()));
+    }
+
+    /**
+     * getProxyUrl - URL to hand to MediaPlayer.setDataSource instead of the clip URL, or null
+     *     when the clip is not one the proxy fetches. The URL holds a new random token, only
+     *     the last MAX_TOKENS tokens are accepted.
+     */
+    public String getProxyUrl (String url) {
+        if (!isAllowedUrl(url)) {
+            return null;
+        }
+        String token = new BigInteger(128, mRandom).toString(16);
+        synchronized (this) {
+            mTokens.put(token, url);
+        }
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + CLIP_PATH + token;
+    }
+
+    // handleClient -- answer one request from the player
+    private void handleClient (Socket socket) {
+        InputStream in = null;
+        try {
+            socket.setSoTimeout(SO_TIMEOUT_MS);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            OutputStream   out    = socket.getOutputStream();
+
+            // request line, "GET /clip?token=... HTTP/1.1", the token must be one we handed out
+            String requestLine = reader.readLine();
+            String[] parts = (requestLine != null) ? requestLine.split(" ") : new String[0];
+            if ((parts.length < 2) || !parts[1].startsWith(CLIP_PATH)) {
+                writeStatus(out, "400 Bad Request");
+                return;
+            }
+            String url;
+            synchronized (this) {
+                url = mTokens.get(parts[1].substring(CLIP_PATH.length()));
+                if (url == null) {
+                    mRejectedCount++;
+                }
+            }
+            if (url == null) {
+                writeStatus(out, "403 Forbidden");
+                return;
+            }
+
+            // only the Range header matters to us
+            long   rangeStart = 0;
+            long   rangeEnd   = -1;
+            String header;
+            while (((header = reader.readLine()) != null) && (header.length() > 0)) {
+                int colon = header.indexOf(':');
+                if ((colon > 0) && header.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    Matcher range = RANGE_HEADER.matcher(header.substring(colon + 1).trim());
+                    if (range.matches()) {
+                        rangeStart = Long.parseLong(range.group(1));
+                        rangeEnd   = (range.group(2).length() > 0) ? Long.parseLong(range.group(2)) : -1;
+                    }
+                }
+            }
+            synchronized (this) {
+                mRequestCount++;
+            }
+
+            // complete clips come straight from the cache...
+            Download download = getDownload(url);
+            if (download == null) {
+                serveCached(out, url, rangeStart, rangeEnd);
+                return;
+            }
+
+            // ...anything else is fed from the download as it arrives
+            if (!download.waitForHeaders()) {
+                writeStatus(out, "502 Bad Gateway");
+                return;
+            }
+            try {
+                in = new FileInputStream(download.partFile);
+            } catch (FileNotFoundException e) {
+                // download finished and moved into the cache while we waited
+                serveCached(out, url, rangeStart, rangeEnd);
+                return;
+            }
+            serve(out, download.newSource(in), download.contentType, rangeStart, rangeEnd);
+        } catch (IOException e) {
+            // the player closes connections when it seeks or is reset, that is fine
+            Log.v(LOG_TAG, "client closed" + e.toString());
+        } finally {
+            closeQuietly(in);
+            closeQuietly(socket);
+        }
+    }
+
+    // serveCached -- answer from a clip in PreviewAudioCache
+    private void serveCached (OutputStream out, String url, long rangeStart, long rangeEnd) throws IOException {
+        File clip = mCache.get(url);
+        if (clip == null) {
+            writeStatus(out, "404 Not Found");
+            return;
+        }
+        synchronized (this) {
+            mCachedCount++;
+        }
+
+        InputStream in = new FileInputStream(clip);
+        try {
+            serve(out, new CompleteSource(in, clip.length()), DEFAULT_TYPE, rangeStart, rangeEnd);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // serve -- write the response headers and the requested range of the clip
+    private static void serve (OutputStream out, Source source, String contentType,
+                               long rangeStart, long rangeEnd) throws IOException {
+        long total = source.length();
+        if ((rangeEnd < 0) || (rangeEnd >= total)) {
+            rangeEnd = total - 1;
+        }
+        if (rangeStart > rangeEnd) {
+            writeStatus(out, "416 Requested Range Not Satisfiable");
+            return;
+        }
+
+        boolean partial = (rangeStart > 0) || (rangeEnd < total - 1);
+        StringBuilder headers = new StringBuilder();
+        headers.append(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        headers.append("Content-Type: ").append(contentType).append("\r\n");
+        headers.append("Content-Length: ").append(rangeEnd - rangeStart + 1).append("\r\n");
+        if (partial) {
+            headers.append("Content-Range: bytes ").append(rangeStart).append('-')
+                    .append(rangeEnd).append('/').append(total).append("\r\n");
+        }
+        headers.append("Accept-Ranges: bytes\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes("US-ASCII"));
+
+        byte[] buffer   = new byte[BUFFER_SIZE];
+        long   position = rangeStart;
+        while (position <= rangeEnd) {
+            int count = source.read(buffer, position, (int) Math.min(buffer.length, rangeEnd - position + 1));
+            if (count < 0) {
+                throw new IOException("clip ended early");
+            }
+            out.write(buffer, 0, count);
+            position += count;
+        }
+        out.flush();
+    }
+
+    private static void writeStatus (OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+        out.flush();
+    }
+
+    // getDownload -- join the download of this clip, starting it if needed, or null when the
+    //     clip is already cached. Holds our lock so it never races with commitDownload.
+    private synchronized Download getDownload (String url) {
+        Download download = mDownloads.get(url);
+        if ((download == null) && mCache.contains(url)) {
+            return null;
+        }
+        if (download == null) {
+            download = new Download(url, mCache.partFile(url));
+            mDownloads.put(url, download);
+            mDownloadExecutor.execute(download);
+        }
+        return download;
+    }
+
+    // commitDownload -- move a finished clip into the cache
+    private synchronized void commitDownload (Download download, long length, long crc) throws IOException {
+        mCache.commit(download.url, download.partFile, length, crc);
+    }
+
+    private synchronized void downloadFinished (Download download, long bytes, boolean resumed, boolean failed) {
+        mDownloads.remove(download.url);
+        mDownloadedBytes += bytes;
+        if (resumed) {
+            mResumedCount++;
+        }
+        if (failed) {
+            mFailedCount++;
+        }
+        Log.d(LOG_TAG, "proxy ==> " + toString() + " cache ==> " + mCache.toString());
+    }
+
+    // Source -- bytes of a clip by position, blocking until they are available
+    private interface Source {
+        long length ();
+        int  read (byte[] buffer, long position, int count) throws IOException;
+    }
+
+    // CompleteSource -- a clip that is fully on disk
+    private static class CompleteSource implements Source {
+        private final InputStream mIn;
+        private final long        mLength;
+        private long              mPosition;
+
+        CompleteSource (InputStream in, long length) {
+            mIn     = in;
+            mLength = length;
+        }
+
+        @Override
+        public long length () {
+            return mLength;
+        }
+
+        @Override
+        public int read (byte[] buffer, long position, int count) throws IOException {
+            if (position != mPosition) {
+                skipFully(mIn, position - mPosition);
+                mPosition = position;
+            }
+            int result = mIn.read(buffer, 0, count);
+            if (result > 0) {
+                mPosition += result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Download - fetches one clip into its partial file, resuming from what an earlier download
+     *     left behind. Readers wait on this object for headers and for bytes.
+     */
+    private class Download implements Runnable {
+        final String url;
+        final File   partFile;
+
+        // guarded by "this"
+        private long    mAvailable;
+        private long    mTotalLength = -1;
+        private boolean mDone;
+        private boolean mFailed;
+        String          contentType  = DEFAULT_TYPE;
+
+        Download (String url, File partFile) {
+            this.url      = url;
+            this.partFile = partFile;
+        }
+
+        @Override
+        public void run () {
+            // a partial file is only resumed when we know which copy of the clip it came from
+            String  validator  = mCache.readPartValidator(url);
+            long    offset     = (partFile.exists() && (validator != null)) ? partFile.length() : 0;
+            long    downloaded = 0;
+            boolean resumed    = false;
+            boolean failed     = false;
+
+            Response         response = null;
+            InputStream      in       = null;
+            FileOutputStream out      = null;
+            try {
+                // no-store keeps the clip out of the HTTP cache, the partial file is our copy,
+                // If-Range makes the server send the whole clip if it changed since
+                Request.Builder request = new Request.Builder()
+                        .url(url)
+                        .header("Cache-Control", "no-store");
+                if (offset > 0) {
+                    request.header("Range", "bytes=" + offset + "-");
+                    request.header("If-Range", validator);
+                }
+                response = SpotifyClient.getInstance(mContext).getHttpClient()
+                        .newCall(request.build()).execute();
+
+                // work out where the body starts and how long the whole clip is
+                long    bodyLength = response.body().contentLength();
+                long    total;
+                Matcher range = CONTENT_RANGE.matcher(
+                        (response.header("Content-Range") != null) ? response.header("Content-Range") : "");
+                if ((response.code() == 206) && range.matches() && (Long.parseLong(range.group(1)) == offset)) {
+                    total   = Long.parseLong(range.group(3));
+                    resumed = true;
+                } else if (response.code() == 200) {
+                    // server ignored the range, start over
+                    offset = 0;
+                    total  = bodyLength;
+                } else if ((response.code() == 416) && (offset > 0)) {
+                    // partial file already holds everything
+                    total = offset;
+                } else {
+                    throw new IOException("HTTP " + response.code());
+                }
+                if (total < 0) {
+                    throw new IOException("unknown clip length");
+                }
+                if (total > MAX_CLIP_BYTES) {
+                    throw new IOException("clip too large, " + total + " bytes");
+                }
+
+                // checksum what we already have before appending, or start a new partial file
+                // and remember which copy of the clip it holds
+                CRC32 crc = new CRC32();
+                if (offset > 0) {
+                    checksum(crc, partFile, offset);
+                } else {
+                    new FileOutputStream(partFile).close();
+                    mCache.writePartValidator(url, getValidator(response));
+                }
+
+                String type = response.header("Content-Type");
+                synchronized (this) {
+                    if (type != null) {
+                        contentType = type;
+                    }
+                    mTotalLength = total;
+                    mAvailable   = offset;
+                    notifyAll();
+                }
+
+                // append as bytes arrive, waking readers after each chunk
+                in  = response.body().byteStream();
+                out = new FileOutputStream(partFile, true);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int    count;
+                long   position = offset;
+                while ((position < total) && ((count = in.read(buffer)) != -1)) {
+                    out.write(buffer, 0, count);
+                    crc.update(buffer, 0, count);
+                    position   += count;
+                    downloaded += count;
+                    synchronized (this) {
+                        mAvailable = position;
+                        notifyAll();
+                    }
+                }
+                out.close();
+                out = null;
+
+                if (position != total) {
+                    throw new IOException("truncated, got " + position + " of " + total);
+                }
+
+                // finished clip moves into the cache, readers keep their open file handles
+                commitDownload(this, total, crc.getValue());
+            } catch (IOException e) {
+                // keep the partial file, the next request resumes from it
+                Log.v(LOG_TAG, "download stopped" + e.toString());
+                failed = true;
+            } finally {
+                // a response given up on before its body was read still holds the connection
+                if ((in == null) && (response != null)) {
+                    closeQuietly(response.body());
+                }
+                closeQuietly(in);
+                closeQuietly(out);
+                synchronized (this) {
+                    mDone   = true;
+                    mFailed = failed;
+                    notifyAll();
+                }
+                downloadFinished(this, downloaded, resumed, failed);
+            }
+        }
+
+        // waitForHeaders -- true once the clip length is known, false if the download failed
+        //     or sent nothing for SO_TIMEOUT_MS
+        synchronized boolean waitForHeaders () {
+            long deadline = System.currentTimeMillis() + SO_TIMEOUT_MS;
+            while ((mTotalLength < 0) && !mDone) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            return (mTotalLength >= 0);
+        }
+
+        // waitForBytes -- wait until bytes beyond position arrived, -1 if they never will or
+        //     none arrived for SO_TIMEOUT_MS
+        synchronized long waitForBytes (long position) {
+            long deadline = System.currentTimeMillis() + SO_TIMEOUT_MS;
+            while ((mAvailable <= position) && !mDone) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    return -1;
+                }
+            }
+            return (mAvailable > position) ? mAvailable : -1;
+        }
+
+        Source newSource (final InputStream in) {
+            return new Source() {
+                private long mPosition;
+
+                @Override
+                public long length () {
+                    return mTotalLength;
+                }
+
+                @Override
+                public int read (byte[] buffer, long position, int count) throws IOException {
+                    long available = waitForBytes(position);
+                    if (available < 0) {
+                        return -1;
+                    }
+                    if (position != mPosition) {
+                        skipFully(in, position - mPosition);
+                        mPosition = position;
+                    }
+                    int result = in.read(buffer, 0, (int) Math.min(count, available - position));
+                    if (result > 0) {
+                        mPosition += result;
+                    }
+                    return result;
+                }
+            };
+        }
+    }
+
+    // getValidator -- the strong ETag of a response, else its Last-Modified, null when neither
+    //     can tell us the clip is unchanged
+    private static String getValidator (Response response) {
+        String etag = response.header("ETag");
+        if ((etag != null) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    // skipFully -- skip exactly "count" bytes, InputStream.skip may skip fewer
+    private static void skipFully (InputStream in, long count) throws IOException {
+        if (count < 0) {
+            throw new IOException("cannot skip backwards");
+        }
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                // skip made no progress, a read tells us whether the stream ended
+                if (in.read() < 0) {
+                    throw new IOException("clip ended early");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    // checksum -- add the first "length" bytes of a file to the checksum
+    private static void checksum (CRC32 crc, File file, long length) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] buffer    = new byte[BUFFER_SIZE];
+            long   remaining = length;
+            while (remaining > 0) {
+                int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new IOException("partial file shrank");
+                }
+                crc.update(buffer, 0, count);
+                remaining -= count;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void closeQuietly (Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    // closeQuietly -- Socket is not Closeable before API 19
+    private static void closeQuietly (Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing more we can do
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return (String.format(Locale.US, "requests=%d|fromCache=%d|resumed=%d|failed=%d|rejected=%d|downloadedBytes=%d",
+                mRequestCount, mCachedCount, mResumedCount, mFailedCount, mRejectedCount, mDownloadedBytes));
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.util.Log;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SearchResultHolder - a retained fragment without a view that owns the artist and top tracks
+ *     searches in flight for an activity, so they outlive configuration changes
+ *
+ *     search tasks report to the holder rather than to a view. The holder passes results on to
+ *     whatever adapter and status view are attached at the time. While no views are attached,
+ *     results are kept until a recreated fragment takes them. On a configuration change the
+ *     fragments also leave their lists here instead of writing them to the saved state bundle.
+ *
+ *     artist searches run on the interactive lane of TaskScheduler, top tracks on the selected
+ *     artist lane. Tasks are cancelled when their fragment is really destroyed, or at the latest
+ *     when the activity finishes and this fragment goes with it
+ *
+ *     this class is used by ArtistSearchFragment, TopTracksFragment, ArtistListAdapter
+ *     and the search tasks
+ *
+ */
+public class SearchResultHolder extends Fragment {
+    private static final String LOG_TAG = SearchResultHolder.class.getSimpleName();
+
+    private static final String HOLDER_TAG = "SearchResultHolder";
+
+    // application context handed to the search tasks
+    private Context mAppContext;
+
+    // artist searches in flight, views currently showing them and results waiting for views
+    private ArtistSearchTask      mArtistSearchTask;
+    private ArtistSearchTask      mArtistPageTask;
+    private ArtistListAdapter     mArtistAdapter;
+    private TextView              mArtistStatus;
+    private ArrayList<ArtistItem> mArtistItems;
+    private CharSequence          mArtistStatusText;
+
+    // top tracks search in flight, views currently showing it and results waiting for views
+    private TopTracksSearchTask      mTopTracksTask;
+    private TopTracksListAdapter     mTopTracksAdapter;
+    private TextView                 mTopTracksStatus;
+    private ArrayList<TopTrackItem>  mTopTrackItems;
+    private CharSequence             mTopTracksStatusText;
+
+    // getInstance -- returns the holder for this activity, adding it the first time
+    public static SearchResultHolder getInstance (FragmentManager fragmentManager) {
+        SearchResultHolder holder =
+                (SearchResultHolder) fragmentManager.findFragmentByTag(HOLDER_TAG);
+        if (holder == null) {
+            holder = new SearchResultHolder();
+            fragmentManager.beginTransaction().add(holder, HOLDER_TAG).commit();
+
+            // make it visible to the next fragment that looks for it
+            fragmentManager.executePendingTransactions();
+        }
+        return holder;
+    }
+
+    @Override
+    public void onCreate (Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // keep this instance, and the tasks it owns, across configuration changes
+        setRetainInstance(true);
+        mAppContext = getActivity().getApplicationContext();
+    }
+
+    @Override
+    public void onDestroy () {
+        // the activity is finishing, nobody can come back for the results
+        cancelArtistSearch();
+        cancelTopTracksSearch();
+        super.onDestroy();
+    }
+
+    /*
+     * artist search
+     */
+
+    // attachArtistViews -- results from now on go to this adapter and status view
+    public void attachArtistViews (ArtistListAdapter artistAdapter, TextView artistStatus) {
+        mArtistAdapter = artistAdapter;
+        mArtistStatus  = artistStatus;
+    }
+
+    // detachArtistViews -- the views are going away, keep results until new views attach
+    public void detachArtistViews () {
+        mArtistAdapter = null;
+        mArtistStatus  = null;
+    }
+
+    // keepArtistItems -- hold on to the list shown across a configuration change
+    public void keepArtistItems (ArrayList<ArtistItem> artistItems, CharSequence statusText) {
+        mArtistItems      = artistItems;
+        mArtistStatusText = statusText;
+    }
+
+    // takeArtistItems -- list kept for a recreated fragment, null if there is none
+    public ArrayList<ArtistItem> takeArtistItems () {
+        ArrayList<ArtistItem> artistItems = mArtistItems;
+        mArtistItems = null;
+        return artistItems;
+    }
+
+    // takeArtistStatus -- status kept for a recreated fragment, null if there is none
+    public CharSequence takeArtistStatus () {
+        CharSequence statusText = mArtistStatusText;
+        mArtistStatusText = null;
+        return statusText;
+    }
+
+    // startArtistSearch -- search for the first page of artists, replacing any search in flight
+    public void startArtistSearch (String searchQuery) {
+        cancelArtistSearch();
+        mArtistSearchTask = new ArtistSearchTask(this, mAppContext);
+        mArtistSearchTask.executeOnExecutor(TaskScheduler.getInstance().getExecutor(
+                TaskScheduler.LANE_INTERACTIVE, mArtistSearchTask.getCancellationToken()), searchQuery);
+    }
+
+    // loadArtistPage -- load a later page unless one is already loading, true if started
+    public boolean loadArtistPage (String searchQuery, int offset, int limit) {
+        if ( (mArtistPageTask != null) || (mArtistSearchTask != null) ) {
+            return false;
+        }
+        mArtistPageTask = new ArtistSearchTask(this, mAppContext, offset, limit);
+        mArtistPageTask.executeOnExecutor(TaskScheduler.getInstance().getExecutor(
+                TaskScheduler.LANE_INTERACTIVE, mArtistPageTask.getCancellationToken()), searchQuery);
+        return true;
+    }
+
+    // cancelArtistPage -- stop the page request in flight, if any
+    public void cancelArtistPage () {
+        if (mArtistPageTask != null) {
+            mArtistPageTask.cancelSearch();
+            mArtistPageTask = null;
+        }
+    }
+
+    // cancelArtistSearch -- stop the search and page request in flight, if any
+    public void cancelArtistSearch () {
+        cancelArtistPage();
+        if (mArtistSearchTask != null) {
+            mArtistSearchTask.cancelSearch();
+            mArtistSearchTask = null;
+        }
+    }
+
+    // onArtistProvisionalResults -- cached results for a shorter query, shown until the search ends
+    void onArtistProvisionalResults (ArtistSearchTask task, List<ArtistItem> artistItems) {
+        if (task != mArtistSearchTask) {
+            return;
+        }
+
+        if (mArtistAdapter != null) {
+            mArtistStatus.setText("");
+            mArtistAdapter.replaceArtistItems(artistItems);
+        } else {
+            keepArtistItems(new ArrayList<ArtistItem>(artistItems), "");
+        }
+    }
+
+    /**
+     * onArtistResults - a search or page request finished. artistItems is null when nothing was
+     *     found or the request failed, statusText is null for later pages.
+     */
+    void onArtistResults (ArtistSearchTask task, String searchQuery, List<ArtistItem> artistItems,
+                          int offset, int limit, int total, String statusText) {
+        boolean firstPage = (task == mArtistSearchTask);
+        if (firstPage) {
+            mArtistSearchTask = null;
+        } else if (task == mArtistPageTask) {
+            mArtistPageTask = null;
+        } else {
+            return;
+        }
+
+        if (mArtistAdapter != null) {
+            if (firstPage) {
+                mArtistStatus.setText(statusText);
+                mArtistAdapter.showFirstPage(searchQuery, this, artistItems, limit, total);
+            } else {
+                mArtistAdapter.addPage(artistItems, offset, limit, total);
+            }
+        } else if (firstPage) {
+            Log.d(LOG_TAG, "keeping artist results until views attach");
+            keepArtistItems((artistItems == null) ?
+                    new ArrayList<ArtistItem>() : new ArrayList<ArtistItem>(artistItems), statusText);
+        } else if ( (mArtistItems != null) && (artistItems != null) ) {
+            mArtistItems.addAll(artistItems);
+        }
+    }
+
+    /*
+     * top tracks search
+     */
+
+    // attachTopTracksViews -- results from now on go to this adapter and status view
+    public void attachTopTracksViews (TopTracksListAdapter topTracksAdapter, TextView topTracksStatus) {
+        mTopTracksAdapter = topTracksAdapter;
+        mTopTracksStatus  = topTracksStatus;
+    }
+
+    // detachTopTracksViews -- the views are going away, keep results until new views attach
+    public void detachTopTracksViews () {
+        mTopTracksAdapter = null;
+        mTopTracksStatus  = null;
+    }
+
+    // keepTopTrackItems -- hold on to the list shown across a configuration change
+    public void keepTopTrackItems (ArrayList<TopTrackItem> topTrackItems, CharSequence statusText) {
+        mTopTrackItems       = topTrackItems;
+        mTopTracksStatusText = statusText;
+    }
+
+    // takeTopTrackItems -- list kept for a recreated fragment, null if there is none
+    public ArrayList<TopTrackItem> takeTopTrackItems () {
+        ArrayList<TopTrackItem> topTrackItems = mTopTrackItems;
+        mTopTrackItems = null;
+        return topTrackItems;
+    }
+
+    // takeTopTracksStatus -- status kept for a recreated fragment, null if there is none
+    public CharSequence takeTopTracksStatus () {
+        CharSequence statusText = mTopTracksStatusText;
+        mTopTracksStatusText = null;
+        return statusText;
+    }
+
+    // startTopTracksSearch -- search for an artist's top tracks, replacing any search in flight
+    public void startTopTracksSearch (String artistSpotifyId, String countryCode) {
+        cancelTopTracksSearch();
+        mTopTracksTask = new TopTracksSearchTask(this, mAppContext, countryCode);
+        mTopTracksTask.executeOnExecutor(TaskScheduler.getInstance().getExecutor(
+                TaskScheduler.LANE_SELECTED, mTopTracksTask.getCancellationToken()), artistSpotifyId);
+    }
+
+    // cancelTopTracksSearch -- stop the search in flight, if any
+    public void cancelTopTracksSearch () {
+        if (mTopTracksTask != null) {
+            mTopTracksTask.cancelSearch();
+            mTopTracksTask = null;
+        }
+    }
+
+    // onTopTracksResults -- the search finished, topTrackItems is null when nothing was found
+    void onTopTracksResults (TopTracksSearchTask task, List<TopTrackItem> topTrackItems,
+                             String statusText) {
+        if (task != mTopTracksTask) {
+            return;
+        }
+        mTopTracksTask = null;
+
+        if (mTopTracksAdapter != null) {
+            mTopTracksStatus.setText(statusText);
+            if (topTrackItems != null) {
+                mTopTracksAdapter.replaceTopTrackItems(topTrackItems);
+            }
+        } else {
+            Log.d(LOG_TAG, "keeping top tracks until views attach");
+            keepTopTrackItems((topTrackItems == null) ?
+                    new ArrayList<TopTrackItem>() : new ArrayList<TopTrackItem>(topTrackItems), statusText);
+        }
+    }
+}
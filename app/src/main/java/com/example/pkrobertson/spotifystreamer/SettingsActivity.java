@@ -78,6 +78,20 @@ public class SettingsActivity extends PreferenceActivity
                 if (preference instanceof EditTextPreference) {
                     preference.setSummary(stringValue);
                 }
+
+                // cached top tracks belong to the old country, drop them
+                String oldValue = PreferenceManager
+                        .getDefaultSharedPreferences(preference.getContext())
+                        .getString(preference.getKey(), "");
+                if ( stringValue.compareTo(oldValue) != 0 ) {
+                    final TopTracksCache cache = TopTracksCache.getInstance(this);
+                    TaskScheduler.getInstance().submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+                        @Override
+                        public void run () {
+                            cache.clear();
+                        }
+                    }, null);
+                }
                 return true;
             }
         }
@@ -0,0 +1,315 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+import kaaes.spotify.webapi.android.SpotifyService;
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+/**
+ * SpotifyCallPolicy - retries and circuit breaker around calls to the Spotify web service
+ *
+ *     network errors, 5xx responses and 429 (rate limited) are transient: the call is repeated
+ *     after a jittered exponential backoff, or after the delay in the Retry-After header for a
+ *     429. Other errors are returned to the caller straight away. Every call made through here
+ *     is a GET, so repeating it is safe.
+ *
+ *     after FAILURE_THRESHOLD transient failures in a row, or a 429 asking for a longer pause
+ *     than we are willing to wait, the breaker opens: calls fail fast with
+ *     ServiceUnavailableException and callers show cached results instead. Once the open time
+ *     has passed a single trial call is let through, its outcome closes or reopens the breaker.
+ *
+ *     this class is used by SpotifyClient
+ *
+ */
+public class SpotifyCallPolicy {
+    private static final String LOG_TAG = SpotifyCallPolicy.class.getSimpleName();
+
+    // retry settings
+    private static final int  MAX_ATTEMPTS       = 3;
+    private static final long BASE_DELAY_MS      = 500;
+    private static final long MAX_DELAY_MS       = 4000;
+    private static final long MAX_RETRY_AFTER_MS = 10 * 1000;  // longer pauses open the breaker
+
+    // circuit breaker settings
+    private static final int  FAILURE_THRESHOLD  = 5;
+    private static final long OPEN_MS            = 30 * 1000;  // 30 seconds
+
+    // circuit breaker states
+    public static final int STATE_CLOSED    = 0;
+    public static final int STATE_OPEN      = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    private static final String[] STATE_NAMES = { "closed", "open", "halfOpen" };
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR      = 500;
+
+    private final Random mRandom = new Random();
+
+    // breaker state
+    private int     mState = STATE_CLOSED;
+    private int     mConsecutiveFailures;
+    private long    mOpenUntilMs;
+    private boolean mTrialInFlight;
+
+    // owners whose calls were cancelled, so their failures are neither retried nor counted
+    private final Map<Object, Boolean> mCancelledOwners = new WeakHashMap<Object, Boolean>();
+
+    // statistics
+    private long mCallCount;
+    private long mRetryCount;
+    private long mTransientErrorCount;
+    private long mFailedCount;
+    private long mRateLimitedCount;
+    private long mShortCircuitCount;
+    private long mOpenCount;
+
+    /**
+     * ServiceCall - one call to the Spotify web service, may be run more than once
+     */
+    public interface ServiceCall<T> {
+        public T call (SpotifyService spotify);
+    }
+
+    /**
+     * ServiceUnavailableException - Spotify could not be reached, kept failing or the breaker
+     *     is open. Tells callers to report "service unavailable" rather than "not found".
+     */
+    public static class ServiceUnavailableException extends Exception {
+        public ServiceUnavailableException (String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * execute - run the call, retrying transient failures when retry is true. Errors that are
+     *     not transient, and failures of calls cancelled by their owner, are rethrown as is.
+     */
+    public <T> T execute (SpotifyService spotify, ServiceCall<T> serviceCall, boolean retry,
+                          Object owner) throws ServiceUnavailableException {
+        synchronized (this) {
+            mCallCount++;
+        }
+
+        int attempts = retry ? MAX_ATTEMPTS : 1;
+        for (int attempt = 1; ; attempt++) {
+            if (!allowRequest()) {
+                throw unavailable("circuit breaker open", null);
+            }
+
+            RetrofitError error;
+            try {
+                T result = serviceCall.call(spotify);
+                recordSuccess();
+                return result;
+            } catch (RetrofitError e) {
+                error = e;
+            } catch (RuntimeException e) {
+                releaseTrial();
+                throw e;
+            }
+
+            if (isCancelled(owner)) {
+                releaseTrial();
+                throw error;
+            }
+
+            long delayMs = getRetryAfterMs(error);
+            if (delayMs > MAX_RETRY_AFTER_MS) {
+                // asked to stay away longer than a user will wait, fail fast until then
+                recordRateLimited(delayMs);
+                throw unavailable("rate limited for " + delayMs + "ms", error);
+            } else if (delayMs >= 0) {
+                recordRateLimited(delayMs);
+            } else if (isTransient(error)) {
+                if (recordTransientError()) {
+                    // that was one failure too many, stop here rather than after the backoff
+                    throw unavailable("circuit breaker opened", error);
+                }
+                delayMs = getBackoffMs(attempt);
+            } else {
+                // the service answered, the request itself is wrong
+                recordSuccess();
+                throw error;
+            }
+
+            if (attempt >= attempts) {
+                throw unavailable("failed after " + attempt + " attempts", error);
+            }
+
+            Log.d(LOG_TAG, "retrying in " + delayMs + "ms after " + error.toString());
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                // cancelled while waiting, keep the interrupt for the caller
+                Thread.currentThread().interrupt();
+                throw error;
+            }
+            synchronized (this) {
+                mRetryCount++;
+            }
+        }
+    }
+
+    // unavailable -- count a call given up on
+    private synchronized ServiceUnavailableException unavailable (String message, Throwable cause) {
+        mFailedCount++;
+        return new ServiceUnavailableException(message, cause);
+    }
+
+    // cancel -- calls made for this owner from now on fail without retries
+    public synchronized void cancel (Object owner) {
+        if (owner != null) {
+            mCancelledOwners.put(owner, Boolean.TRUE);
+        }
+    }
+
+    private synchronized boolean isCancelled (Object owner) {
+        return Thread.currentThread().isInterrupted() ||
+                ( (owner != null) && mCancelledOwners.containsKey(owner) );
+    }
+
+    // isAvailable -- false while the breaker is open, used to skip optional calls
+    public synchronized boolean isAvailable () {
+        return (mState == STATE_CLOSED) ||
+                ( (mState == STATE_OPEN) && (System.currentTimeMillis() >= mOpenUntilMs) );
+    }
+
+    // allowRequest -- breaker check before each attempt
+    private synchronized boolean allowRequest () {
+        if (mState == STATE_OPEN) {
+            if (System.currentTimeMillis() < mOpenUntilMs) {
+                mShortCircuitCount++;
+                return false;
+            }
+            mState = STATE_HALF_OPEN;
+            Metrics.getInstance().setGauge(Metrics.GAUGE_BREAKER_STATE, STATE_HALF_OPEN);
+        }
+
+        if (mState == STATE_HALF_OPEN) {
+            // one trial call at a time, everyone else keeps failing fast
+            if (mTrialInFlight) {
+                mShortCircuitCount++;
+                return false;
+            }
+            mTrialInFlight = true;
+        }
+        return true;
+    }
+
+    private synchronized void recordSuccess () {
+        if (mState != STATE_CLOSED) {
+            Log.d(LOG_TAG, "circuit breaker closed");
+            Metrics.getInstance().setGauge(Metrics.GAUGE_BREAKER_STATE, STATE_CLOSED);
+        }
+        mState               = STATE_CLOSED;
+        mConsecutiveFailures = 0;
+        mTrialInFlight       = false;
+    }
+
+    // recordTransientError -- true when this failure opened the breaker
+    private synchronized boolean recordTransientError () {
+        mTransientErrorCount++;
+        mConsecutiveFailures++;
+        if ( (mState == STATE_HALF_OPEN) || (mConsecutiveFailures >= FAILURE_THRESHOLD) ) {
+            open(OPEN_MS);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void recordRateLimited (long retryAfterMs) {
+        // nobody calls again before Retry-After has passed
+        mRateLimitedCount++;
+        open(retryAfterMs);
+    }
+
+    private synchronized void releaseTrial () {
+        if (mState == STATE_HALF_OPEN) {
+            mTrialInFlight = false;
+        }
+    }
+
+    // open -- fail fast for this long, never shortening an earlier pause
+    private void open (long durationMs) {
+        if (mState != STATE_OPEN) {
+            mOpenCount++;
+            Log.d(LOG_TAG, "circuit breaker open for " + durationMs + "ms");
+            Metrics.getInstance().setGauge(Metrics.GAUGE_BREAKER_STATE, STATE_OPEN);
+        }
+        mState         = STATE_OPEN;
+        mTrialInFlight = false;
+        mOpenUntilMs   = Math.max(mOpenUntilMs, System.currentTimeMillis() + durationMs);
+    }
+
+    // getBackoffMs -- random delay up to the exponential backoff for this attempt
+    private long getBackoffMs (int attempt) {
+        long ceilingMs = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << (attempt - 1));
+        return ceilingMs / 2 + (long) (mRandom.nextDouble() * ceilingMs / 2);
+    }
+
+    // isTransient -- errors that may go away when the call is repeated
+    private static boolean isTransient (RetrofitError error) {
+        if (error.getKind() == RetrofitError.Kind.NETWORK) {
+            return true;
+        }
+        Response response = error.getResponse();
+        return (error.getKind() == RetrofitError.Kind.HTTP) && (response != null) &&
+                (response.getStatus() >= HTTP_SERVER_ERROR);
+    }
+
+    // getRetryAfterMs -- delay asked for by a 429 response, -1 for any other error
+    private static long getRetryAfterMs (RetrofitError error) {
+        Response response = error.getResponse();
+        if ( (response == null) || (response.getStatus() != HTTP_TOO_MANY_REQUESTS) ) {
+            return -1;
+        }
+
+        for (Header header : response.getHeaders()) {
+            if ("Retry-After".equalsIgnoreCase(header.getName()) && (header.getValue() != null)) {
+                try {
+                    return Math.max(0, Long.parseLong(header.getValue().trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    break;
+                }
+            }
+        }
+
+        // no usable header, wait as long as the last retry would
+        return MAX_DELAY_MS;
+    }
+
+    public synchronized int getState () {
+        return mState;
+    }
+
+    public synchronized long getRetryCount () {
+        return mRetryCount;
+    }
+
+    public synchronized long getFailedCount () {
+        return mFailedCount;
+    }
+
+    public synchronized long getShortCircuitCount () {
+        return mShortCircuitCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return ("calls=" + mCallCount +
+                "|retries=" + mRetryCount +
+                "|transientErrors=" + mTransientErrorCount +
+                "|failed=" + mFailedCount +
+                "|rateLimited=" + mRateLimitedCount +
+                "|shortCircuited=" + mShortCircuitCount +
+                "|opened=" + mOpenCount +
+                "|breaker=" + STATE_NAMES[mState]);
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kaaes.spotify.webapi.android.SpotifyService;
+import retrofit.RestAdapter;
+import retrofit.client.OkClient;
+
+/**
+ * SpotifyClient - process wide owner of the Spotify web service proxy and the OkHttpClient
+ *     used to reach it
+ *
+ *     the client keeps connections alive in a pool and caches responses on disk, so repeat
+ *     searches skip the TCP/TLS setup (and sometimes the network) altogether. Counters for
+ *     connection reuse and connect/handshake time are kept to show the effect of the pool.
+ *
+ *     callers go through execute, which applies the retry and circuit breaker rules of
+ *     SpotifyCallPolicy to each call
+ *
+ *     the endpoint comes from BuildConfig.SPOTIFY_ENDPOINT, so a build can talk to the local
+ *     stand-in server instead of Spotify
+ *
+ */
+public class SpotifyClient {
+    private static final String LOG_TAG = SpotifyClient.class.getSimpleName();
+
+    // connection pool and HTTP cache settings
+    private static final int    POOL_MAX_IDLE      = 5;
+    private static final long   POOL_KEEP_ALIVE_MS = 5 * 60 * 1000;  // 5 minutes
+    private static final int    CONNECT_TIMEOUT_S  = 15;
+    private static final int    READ_TIMEOUT_S     = 20;
+    private static final String CACHE_DIR_NAME     = "spotify-http";
+    private static final long   CACHE_SIZE_BYTES   = 4 * 1024 * 1024; // 4MB
+
+    // single instance shared by all callers
+    private static SpotifyClient sInstance;
+
+    private final OkHttpClient      mHttpClient;
+    private final SpotifyService    mSpotifyService;
+    private final SpotifyCallPolicy mCallPolicy = new SpotifyCallPolicy();
+
+    // connection statistics, updated by the interceptors below
+    private final AtomicLong mRequestCount       = new AtomicLong();
+    private final AtomicLong mNewConnections     = new AtomicLong();
+    private final AtomicLong mReusedConnections  = new AtomicLong();
+    private final AtomicLong mHandshakeTotalMs   = new AtomicLong();
+    private final AtomicLong mLastHandshakeMs    = new AtomicLong();
+
+    // connections seen so far, weak so the pool is free to evict them
+    private final Map<Connection, Boolean> mKnownConnections = new WeakHashMap<Connection, Boolean>();
+
+    // start time of the request currently moving through the interceptor chain
+    private final ThreadLocal<Long> mRequestStart = new ThreadLocal<Long>();
+
+    // tag applied to calls made from the current thread, used to cancel superseded searches
+    private final ThreadLocal<Object> mCallTag = new ThreadLocal<Object>();
+
+    // getInstance -- returns the shared client, created on first use
+    public static synchronized SpotifyClient getInstance (Context context) {
+        if (sInstance == null) {
+            sInstance = new SpotifyClient(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    // getService -- the service itself, calls made on it directly skip retries and the breaker
+    public static SpotifyService getService (Context context) {
+        return getInstance(context).mSpotifyService;
+    }
+
+    /**
+     * execute - make a Spotify call on this thread with retries (when retry is true) and the
+     *     circuit breaker. Throws ServiceUnavailableException when Spotify cannot be reached,
+     *     other errors are passed on unchanged.
+     */
+    public <T> T execute (SpotifyCallPolicy.ServiceCall<T> serviceCall, boolean retry)
+            throws SpotifyCallPolicy.ServiceUnavailableException {
+        return mCallPolicy.execute(mSpotifyService, serviceCall, retry, mCallTag.get());
+    }
+
+    // isAvailable -- false while the circuit breaker fails calls fast
+    public boolean isAvailable () {
+        return mCallPolicy.isAvailable();
+    }
+
+    private SpotifyClient (Context context) {
+        // Retrofit makes synchronous calls on the caller's thread, so tag each call with the
+        // owner registered on that thread to allow cancelling it later
+        mHttpClient = new OkHttpClient() {
+            @Override
+            public Call newCall (Request request) {
+                Object tag = mCallTag.get();
+                if (tag != null) {
+                    request = request.newBuilder().tag(tag).build();
+                }
+                return super.newCall(request);
+            }
+        };
+        mHttpClient.setConnectionPool(new ConnectionPool(POOL_MAX_IDLE, POOL_KEEP_ALIVE_MS));
+        mHttpClient.setConnectTimeout(CONNECT_TIMEOUT_S, TimeUnit.SECONDS);
+        mHttpClient.setReadTimeout(READ_TIMEOUT_S, TimeUnit.SECONDS);
+
+        // on-disk response cache, Spotify sends cache headers for search and top tracks
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        try {
+            mHttpClient.setCache(new Cache(cacheDir, CACHE_SIZE_BYTES));
+        } catch (Exception e) {
+            Log.v(LOG_TAG, "HTTP cache not available" + e.toString());
+        }
+
+        // application interceptor marks the start of each request and traces it...
+        mHttpClient.interceptors().add(new Interceptor() {
+            @Override
+            public Response intercept (Chain chain) throws IOException {
+                mRequestCount.incrementAndGet();
+                mRequestStart.set(System.nanoTime());
+                int traceCookie = Tracing.beginAsync("SpotifyClient.http");
+                try {
+                    return chain.proceed(chain.request());
+                } finally {
+                    Tracing.endAsync("SpotifyClient.http", traceCookie);
+                    mRequestStart.remove();
+                }
+            }
+        });
+
+        // ...and the network interceptor sees the connection once it is ready to use
+        mHttpClient.networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept (Chain chain) throws IOException {
+                recordConnection(chain.connection());
+                return chain.proceed(chain.request());
+            }
+        });
+
+        // build the Spotify service on top of our client instead of a fresh one per call, the
+        // endpoint is the real web API unless the build points it elsewhere (-PspotifyEndpoint)
+        RestAdapter restAdapter = new RestAdapter.Builder()
+                .setEndpoint(BuildConfig.SPOTIFY_ENDPOINT)
+                .setClient(new OkClient(mHttpClient))
+                .build();
+        mSpotifyService = restAdapter.create(SpotifyService.class);
+    }
+
+    // recordConnection -- count new vs reused connections and time spent connecting
+    private void recordConnection (Connection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        boolean isNew;
+        synchronized (mKnownConnections) {
+            isNew = (mKnownConnections.put(connection, Boolean.TRUE) == null);
+        }
+
+        if (isNew) {
+            mNewConnections.incrementAndGet();
+
+            // time from request start until the connection is usable covers DNS, TCP and TLS
+            Long start = mRequestStart.get();
+            if (start != null) {
+                long elapsedMs = (System.nanoTime() - start) / 1000000;
+                mLastHandshakeMs.set(elapsedMs);
+                mHandshakeTotalMs.addAndGet(elapsedMs);
+            }
+        } else {
+            mReusedConnections.incrementAndGet();
+        }
+    }
+
+    // beginTaggedCalls -- calls made on this thread until endTaggedCalls belong to "owner"
+    public void beginTaggedCalls (Object owner) {
+        mCallTag.set(owner);
+    }
+
+    // endTaggedCalls -- stop tagging calls made on this thread
+    public void endTaggedCalls () {
+        mCallTag.remove();
+    }
+
+    // cancelCalls -- cancel in-flight calls made on behalf of "owner", without retrying them
+    public void cancelCalls (Object owner) {
+        mCallPolicy.cancel(owner);
+        mHttpClient.cancel(owner);
+    }
+
+    // getHttpClient -- shared client for future callers that need raw HTTP
+    public OkHttpClient getHttpClient () {
+        return mHttpClient;
+    }
+
+    public long getRequestCount () {
+        return mRequestCount.get();
+    }
+
+    public long getNewConnectionCount () {
+        return mNewConnections.get();
+    }
+
+    public long getReusedConnectionCount () {
+        return mReusedConnections.get();
+    }
+
+    // getAverageHandshakeMs -- average connect/handshake time of new connections
+    public long getAverageHandshakeMs () {
+        long newConnections = mNewConnections.get();
+        return (newConnections == 0) ? 0 : mHandshakeTotalMs.get() / newConnections;
+    }
+
+    public long getLastHandshakeMs () {
+        return mLastHandshakeMs.get();
+    }
+
+    // getCallPolicy -- retry and failure counts
+    public SpotifyCallPolicy getCallPolicy () {
+        return mCallPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return ("requests=" + getRequestCount() +
+                "|new=" + getNewConnectionCount() +
+                "|reused=" + getReusedConnectionCount() +
+                "|handshakeAvgMs=" + getAverageHandshakeMs() +
+                "|handshakeLastMs=" + getLastHandshakeMs() +
+                "|" + mCallPolicy.toString());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import java.util.List;
+
+import kaaes.spotify.webapi.android.models.Artist;
+import kaaes.spotify.webapi.android.models.Image;
+import kaaes.spotify.webapi.android.models.Track;
+
+/**
+ * SpotifyItems - connects the core ItemMapper and ImageSelector to the Spotify web API models
+ *     and to this device, image target sizes come from dimension resources so screen density
+ *     is already applied
+ *
+ *     this class is used by ArtistSearchTask, TopTracksSearchTask, TopTracksPrefetcher and
+ *     PlayTracksService
+ *
+ */
+public class SpotifyItems {
+
+    private static ItemMapper<Artist, Track, Image> sMapper;
+
+    static final ImageSelector.ImageFields<Image> IMAGE_FIELDS = new ImageSelector.ImageFields<Image>() {
+        public String getUrl (Image image) {
+            return image.url;
+        }
+
+        public Integer getWidth (Image image) {
+            return image.width;
+        }
+
+        public Integer getHeight (Image image) {
+            return image.height;
+        }
+    };
+
+    static final ItemMapper.ArtistFields<Artist, Image> ARTIST_FIELDS = new ItemMapper.ArtistFields<Artist, Image>() {
+        public String getName (Artist artist) {
+            return artist.name;
+        }
+
+        public String getId (Artist artist) {
+            return artist.id;
+        }
+
+        public List<Image> getImages (Artist artist) {
+            return artist.images;
+        }
+    };
+
+    static final ItemMapper.TrackFields<Track, Image> TRACK_FIELDS = new ItemMapper.TrackFields<Track, Image>() {
+        public String getArtistName (Track track) {
+            return track.artists.get(0).name;
+        }
+
+        public String getName (Track track) {
+            return track.name;
+        }
+
+        public String getAlbumName (Track track) {
+            return track.album.name;
+        }
+
+        public List<Image> getAlbumImages (Track track) {
+            return track.album.images;
+        }
+
+        public String getPreviewUrl (Track track) {
+            return track.preview_url;
+        }
+    };
+
+    private SpotifyItems () {
+    }
+
+    // getMapper -- returns the mapper for this device's screen density
+    public static synchronized ItemMapper<Artist, Track, Image> getMapper (Context context) {
+        if (sMapper == null) {
+            Resources resources = context.getApplicationContext().getResources();
+            ImageSelector imageSelector = new ImageSelector(
+                    resources.getDimensionPixelSize(R.dimen.list_item_image_size),
+                    resources.getDimensionPixelSize(R.dimen.play_tracks_image_size),
+                    Math.max(
+                            resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width),
+                            resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)));
+            sMapper = new ItemMapper<Artist, Track, Image>(
+                    imageSelector, IMAGE_FIELDS, ARTIST_FIELDS, TRACK_FIELDS);
+        }
+        return sMapper;
+    }
+
+    // getImageSelector -- returns the image selector for this device's screen density
+    public static ImageSelector getImageSelector (Context context) {
+        return getMapper(context).getImageSelector();
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TaskScheduler - runs the app's background work in priority lanes, so a slow top tracks
+ *     request never holds up the next artist search and prefetching never queues in front of
+ *     anything the user asked for
+ *
+ *     each lane has its own threads, concurrency limit and thread priority: the short disk
+ *     lookups that start playback first, then interactive searches, then the artist the user
+ *     selected, then prefetch and other background refresh. The playback lane never runs
+ *     network calls, so a track never waits behind a Spotify request that is backing off. The
+ *     interactive lane has a single thread, a new search supersedes the last one so there is
+ *     nothing to gain from running two. Background jobs also yield to the other lanes: one
+ *     that is about to start waits, up to MAX_YIELD_MS, while playback, interactive or
+ *     selected jobs are queued or running, so prefetching does not compete with them for the
+ *     network and the CPU. Jobs can be cancelled through a CancellationToken shared by
+ *     related jobs, cancelled jobs are taken off the queue. Queue depth and wait time are
+ *     tracked per lane and shown by toString.
+ *
+ *     AsyncTasks run on a lane by passing getExecutor(lane, token) to executeOnExecutor, and
+ *     call applyLanePriority first thing in doInBackground. AsyncTask drops the thread to
+ *     background priority just before doInBackground, after the lane has set its own.
+ *     Cancelling the AsyncTask alone leaves its job queued, so a task also cancels its token
+ *     to take the job off the lane.
+ *
+ *     this class is used by SearchResultHolder, TopTracksPrefetcher, PreviewAudioCache and
+ *     PlayTracksService
+ *
+ */
+public class TaskScheduler {
+    private static final String LOG_TAG = TaskScheduler.class.getSimpleName();
+
+    // lanes, in priority order
+    public static final int LANE_PLAYBACK    = 0;
+    public static final int LANE_INTERACTIVE = 1;
+    public static final int LANE_SELECTED    = 2;
+    public static final int LANE_BACKGROUND  = 3;
+
+    private static final String[] LANE_NAMES      = { "playback", "interactive", "selected", "background" };
+    private static final int[]    LANE_THREADS    = { 1, 1, 2, 2 };
+    private static final int[]    LANE_PRIORITIES = {
+            Process.THREAD_PRIORITY_DEFAULT,
+            Process.THREAD_PRIORITY_DEFAULT,
+            Process.THREAD_PRIORITY_DEFAULT,
+            Process.THREAD_PRIORITY_BACKGROUND };
+
+    // longest a background job waits for the other lanes, so it is never starved
+    private static final long MAX_YIELD_MS = 2000;
+
+    private static final long NS_PER_MS = 1000 * 1000;
+
+    private static TaskScheduler sInstance;
+
+    private final Lane[]         mLanes          = new Lane[LANE_NAMES.length];
+    private final ForegroundGate mForegroundGate = new ForegroundGate();
+
+    /**
+     * CancellationToken - cancels every job submitted with it, queued or running. Once cancelled
+     *     jobs submitted with it are dropped. Running jobs can check isCancelled between steps.
+     */
+    public static class CancellationToken {
+        private volatile boolean        myCancelled;
+        private final List<Future<?>>   myFutures = new ArrayList<Future<?>>();
+
+        public boolean isCancelled () {
+            return myCancelled;
+        }
+
+        // cancel -- cancel all jobs, returns how many had not finished yet
+        public int cancel () {
+            List<Future<?>> futures;
+            synchronized (this) {
+                myCancelled = true;
+                futures = new ArrayList<Future<?>>(myFutures);
+                myFutures.clear();
+            }
+
+            int cancelled = 0;
+            for (Future<?> future : futures) {
+                if (future.cancel(true)) {
+                    cancelled++;
+                }
+            }
+            return cancelled;
+        }
+
+        // add -- remember a job, false if the token was already cancelled
+        private synchronized boolean add (Future<?> future) {
+            if (myCancelled) {
+                return false;
+            }
+
+            // forget jobs that already finished
+            for (int i = myFutures.size() - 1; i >= 0; i--) {
+                if (myFutures.get(i).isDone()) {
+                    myFutures.remove(i);
+                }
+            }
+            myFutures.add(future);
+            return true;
+        }
+    }
+
+    // ForegroundGate -- counts playback, interactive and selected jobs not finished yet,
+    //     background jobs wait on it before they start
+    private static class ForegroundGate {
+        private int myPending;
+
+        synchronized void enter () {
+            myPending++;
+        }
+
+        synchronized void exit () {
+            myPending--;
+            if (myPending == 0) {
+                notifyAll();
+            }
+        }
+
+        // wake -- recheck waiting jobs, one of them was cancelled
+        synchronized void wake () {
+            notifyAll();
+        }
+
+        // awaitIdle -- wait until no foreground job is pending, the waiting job is cancelled or
+        //     maxMs has passed, returns how long it waited in ns
+        synchronized long awaitIdle (Future<?> waiting, long maxMs) throws InterruptedException {
+            long startNs    = System.nanoTime();
+            long deadlineNs = startNs + maxMs * NS_PER_MS;
+            long remainingNs;
+            while ((myPending > 0) && !waiting.isDone() &&
+                    ((remainingNs = deadlineNs - System.nanoTime()) > 0)) {
+                wait(Math.max(remainingNs / NS_PER_MS, 1));
+            }
+            return System.nanoTime() - startNs;
+        }
+    }
+
+    // Lane -- threads, queue and statistics for one priority
+    private static class Lane {
+        private final String             myName;
+        private final int                myPriority;
+        private final ForegroundGate     myGate;
+        private final boolean            myYields;
+        private final ThreadPoolExecutor myExecutor;
+
+        // statistics
+        private long mySubmittedCount;
+        private long myStartedCount;
+        private long myCompletedCount;
+        private long myCancelledCount;
+        private int  myMaxQueued;
+        private long myWaitNs;
+        private long myMaxWaitNs;
+        private long myRunNs;
+        private long myYieldCount;
+        private long myYieldNs;
+
+        // a lane that yields waits for the gate before each job, the others hold it while
+        //     their jobs are pending
+        Lane (String name, int threads, int priority, ForegroundGate gate, boolean yields) {
+            myName     = name;
+            myPriority = priority;
+            myGate     = gate;
+            myYields   = yields;
+            myExecutor = new ThreadPoolExecutor(threads, threads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread (Runnable runnable) {
+                            return new LaneThread(runnable, LOG_TAG + "-" + myName, myPriority);
+                        }
+                    });
+            myExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        LaneTask submit (Runnable runnable) {
+            LaneTask task = new LaneTask(this, runnable);
+            if (!myYields) {
+                myGate.enter();
+            }
+            synchronized (this) {
+                mySubmittedCount++;
+            }
+            myExecutor.execute(task);
+            synchronized (this) {
+                myMaxQueued = Math.max(myMaxQueued, myExecutor.getQueue().size());
+            }
+            return task;
+        }
+
+        synchronized void recordStart (long waitNs) {
+            myStartedCount++;
+            myWaitNs   += waitNs;
+            myMaxWaitNs = Math.max(myMaxWaitNs, waitNs);
+        }
+
+        // yield -- let pending foreground jobs go first, called on the lane thread
+        void yield (LaneTask task) throws InterruptedException {
+            long waitedNs = myGate.awaitIdle(task, MAX_YIELD_MS);
+            if (waitedNs >= NS_PER_MS) {
+                synchronized (this) {
+                    myYieldCount++;
+                    myYieldNs += waitedNs;
+                }
+            }
+        }
+
+        synchronized void recordEnd (long runNs) {
+            myCompletedCount++;
+            myRunNs += runNs;
+        }
+
+        void recordCancelled (LaneTask task) {
+            // free the queue slot now rather than when a thread gets to it
+            myExecutor.remove(task);
+            if (myYields) {
+                myGate.wake();
+            }
+            synchronized (this) {
+                myCancelledCount++;
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            long started   = Math.max(myStartedCount, 1);
+            long completed = Math.max(myCompletedCount, 1);
+            return (myName + "[queued=" + myExecutor.getQueue().size() +
+                    "|maxQueued=" + myMaxQueued +
+                    "|active=" + myExecutor.getActiveCount() +
+                    "|submitted=" + mySubmittedCount +
+                    "|completed=" + myCompletedCount +
+                    "|cancelled=" + myCancelledCount +
+                    "|avgWaitMs=" + (myWaitNs / started / NS_PER_MS) +
+                    "|maxWaitMs=" + (myMaxWaitNs / NS_PER_MS) +
+                    "|avgRunMs=" + (myRunNs / completed / NS_PER_MS) +
+                    "|yields=" + myYieldCount +
+                    "|yieldMs=" + (myYieldNs / NS_PER_MS) + "]");
+        }
+    }
+
+    // LaneThread -- a lane's thread, knows the priority of its lane
+    private static class LaneThread extends Thread {
+        private final int myPriority;
+
+        LaneThread (Runnable runnable, String name, int priority) {
+            super(runnable, name);
+            myPriority = priority;
+        }
+    }
+
+    // LaneTask -- a queued job, measures its wait and run time
+    private static class LaneTask extends FutureTask<Void> {
+        private final Lane myLane;
+        private final long myQueuedNs = System.nanoTime();
+
+        LaneTask (Lane lane, Runnable runnable) {
+            super(runnable, null);
+            myLane = lane;
+        }
+
+        @Override
+        public void run () {
+            if (isDone()) {
+                return;
+            }
+
+            if (myLane.myYields) {
+                try {
+                    myLane.yield(this);
+                } catch (InterruptedException e) {
+                    // cancelled while waiting, super.run does nothing for a cancelled job
+                }
+            }
+
+            long startNs = System.nanoTime();
+            myLane.recordStart(startNs - myQueuedNs);
+
+            // set on every job, an AsyncTask that ran before may have left the thread at
+            // background priority. An AsyncTask lowers it again inside super.run, so it calls
+            // applyLanePriority from doInBackground.
+            Process.setThreadPriority(myLane.myPriority);
+            try {
+                super.run();
+            } finally {
+                myLane.recordEnd(System.nanoTime() - startNs);
+            }
+        }
+
+        // done -- called once the job completes, fails or is cancelled
+        @Override
+        protected void done () {
+            if (!myLane.myYields) {
+                myLane.myGate.exit();
+            }
+        }
+
+        @Override
+        public boolean cancel (boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                myLane.recordCancelled(this);
+            }
+            return cancelled;
+        }
+    }
+
+    // getInstance -- returns the scheduler shared by the whole app
+    public static synchronized TaskScheduler getInstance () {
+        if (sInstance == null) {
+            sInstance = new TaskScheduler();
+        }
+        return sInstance;
+    }
+
+    private TaskScheduler () {
+        for (int lane = 0; lane < mLanes.length; lane++) {
+            mLanes[lane] = new Lane(LANE_NAMES[lane], LANE_THREADS[lane], LANE_PRIORITIES[lane],
+                    mForegroundGate, lane == LANE_BACKGROUND);
+        }
+    }
+
+    // applyLanePriority -- set the calling thread back to its lane's priority, AsyncTasks on a
+    //     lane call it at the start of doInBackground. Does nothing on other threads.
+    public static void applyLanePriority () {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof LaneThread) {
+            Process.setThreadPriority(((LaneThread) thread).myPriority);
+        }
+    }
+
+    // getExecutor -- executor for a lane, used to run AsyncTasks with executeOnExecutor. Jobs
+    //     are submitted with the token, which may be null, so cancelling it takes them off the
+    //     lane like any other job.
+    public Executor getExecutor (final int lane, final CancellationToken token) {
+        return new Executor() {
+            @Override
+            public void execute (Runnable runnable) {
+                submit(lane, runnable, token);
+            }
+        };
+    }
+
+    /**
+     * submit - run a job on a lane. The token, which may be null, cancels the job along with
+     *     everything else submitted with it. Nothing runs if the token is already cancelled.
+     */
+    public Future<?> submit (int lane, Runnable job, CancellationToken token) {
+        LaneTask task = mLanes[lane].submit(job);
+        if ( (token != null) && !token.add(task) ) {
+            task.cancel(false);
+        }
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Lane lane : mLanes) {
+            if (result.length() > 0) {
+                result.append('|');
+            }
+            result.append(lane.toString());
+        }
+        return result.toString();
+    }
+}
@@ -109,9 +109,13 @@ public class TopTracksActivity
             ActionBar actionBar = ((AppCompatActivity) this).getSupportActionBar();
             actionBar.setSubtitle(artist.artistName);
 
-            TopTracksFragment topTracksFragment =
-                    (TopTracksFragment)getSupportFragmentManager().findFragmentById(R.id.fragment_top_tracks);
-            topTracksFragment.showArtistTopTracks(artist);
+            // only search the first time, a recreated fragment gets its tracks back from the
+            // saved state or from a search still in flight
+            if (savedInstanceState == null) {
+                TopTracksFragment topTracksFragment =
+                        (TopTracksFragment)getSupportFragmentManager().findFragmentById(R.id.fragment_top_tracks);
+                topTracksFragment.showArtistTopTracks(artist);
+            }
         }
     }
 
@@ -174,12 +178,13 @@ public class TopTracksActivity
      */
     @Override
     public void onTrackSelected (ArrayList<TopTrackItem> topTrackItems, int topTrackSelection) {
-        Log.d(LOG_TAG, "onTrackSelected ==>" + topTrackItems.toString());
+        Log.d(LOG_TAG, "onTrackSelected ==> " + topTrackItems.size() + " tracks");
 
-        // launch PlayTracksService intent and pass in the tracks and selected track
+        // launch PlayTracksService intent and pass in the track session and selected track
         Intent startIntent = new Intent(this, PlayTracksService.class);
         startIntent.setAction(PlayTracksService.ACTION_START);
-        startIntent.putExtra(PlayTracksService.ARRAY_KEY, topTrackItems);
+        startIntent.putExtra(PlayTracksService.SESSION_KEY,
+                TrackRepository.getInstance().putTracks(topTrackItems));
         startIntent.putExtra(PlayTracksService.POSITION_KEY, topTrackSelection);
         startService(startIntent);
 
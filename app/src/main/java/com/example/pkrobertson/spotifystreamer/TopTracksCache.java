@@ -0,0 +1,277 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TopTracksCache - disk backed cache of TopTrackItem lists keyed by artist Spotify ID and country
+ *     code, so reopening an artist is instant and survives process death
+ *
+ *     each entry is a small file under the app cache directory. Entries expire after the time
+ *     to live chosen in settings, the least recently used entries are removed once there are
+ *     more than MAX_ENTRIES, and everything is dropped when the country preference changes.
+ *     Expired entries are kept on disk so getStale can show them while Spotify is unavailable.
+ *
+ *     this class is used by TopTracksSearchTask, TopTracksPrefetcher and SettingsActivity
+ *
+ */
+public class TopTracksCache {
+    private static final String LOG_TAG = TopTracksCache.class.getSimpleName();
+
+    private static final String CACHE_DIR_NAME = "top-tracks";
+    private static final String ENTRY_SUFFIX   = ".tracks";
+    private static final int    FORMAT_VERSION = 1;
+    private static final int    MAX_ENTRIES    = 100;
+    private static final long   MS_PER_HOUR    = 60 * 60 * 1000;
+
+    private static TopTracksCache sInstance;
+
+    private final Context mContext;
+    private final File    mCacheDir;
+
+    // statistics
+    private long mHitCount;
+    private long mMissCount;
+    private long mExpiredCount;
+    private long mEvictionCount;
+
+    // getInstance -- returns the cache shared by all top tracks searches
+    public static synchronized TopTracksCache getInstance (Context context) {
+        if (sInstance == null) {
+            sInstance = new TopTracksCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TopTracksCache (Context context) {
+        mContext  = context;
+        mCacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+    }
+
+    // getTimeToLive -- time to live in ms as set in preferences
+    private long getTimeToLive () {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String hours = prefs.getString(
+                mContext.getString(R.string.pref_track_cache_ttl_key),
+                mContext.getString(R.string.pref_track_cache_ttl_default));
+        try {
+            return Long.parseLong(hours) * MS_PER_HOUR;
+        } catch (NumberFormatException e) {
+            return Long.parseLong(mContext.getString(R.string.pref_track_cache_ttl_default)) * MS_PER_HOUR;
+        }
+    }
+
+    // entryFile -- file holding the entry for this artist and country
+    private File entryFile (String artistSpotifyId, String countryCode) {
+        String name = (artistSpotifyId + "_" + countryCode).replaceAll("[^A-Za-z0-9_]", "_");
+        return new File(mCacheDir, name + ENTRY_SUFFIX);
+    }
+
+    /**
+     * get - returns the cached top tracks for the artist and country, or null when there is no
+     *     entry or it has expired. Must not be called on the main thread.
+     */
+    public synchronized ArrayList<TopTrackItem> get (String artistSpotifyId, String countryCode) {
+        return read(artistSpotifyId, countryCode, false);
+    }
+
+    /**
+     * getStale - like get but also returns expired entries, used while Spotify is unavailable.
+     *     Must not be called on the main thread.
+     */
+    public synchronized ArrayList<TopTrackItem> getStale (String artistSpotifyId, String countryCode) {
+        return read(artistSpotifyId, countryCode, true);
+    }
+
+    // read -- load an entry, expired entries stay on disk until replaced or evicted
+    private ArrayList<TopTrackItem> read (String artistSpotifyId, String countryCode, boolean allowExpired) {
+        File file = entryFile(artistSpotifyId, countryCode);
+        if (!file.exists()) {
+            mMissCount++;
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("unknown format");
+            }
+
+            // check if the entry is still fresh
+            long createdMs = in.readLong();
+            if (!allowExpired && ((System.currentTimeMillis() - createdMs) > getTimeToLive())) {
+                mExpiredCount++;
+                mMissCount++;
+                return null;
+            }
+
+            int count = in.readInt();
+            ArrayList<TopTrackItem> result = new ArrayList<TopTrackItem>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(new TopTrackItem(
+                        readString(in), readString(in), readString(in),
+                        readString(in), readString(in), readString(in)));
+            }
+
+            // mark as recently used for eviction
+            file.setLastModified(System.currentTimeMillis());
+            mHitCount++;
+            return result;
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "dropping bad cache entry" + e.toString());
+            file.delete();
+            mMissCount++;
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // contains -- true when a fresh entry exists, reads only the entry header
+    public synchronized boolean contains (String artistSpotifyId, String countryCode) {
+        File file = entryFile(artistSpotifyId, countryCode);
+        if (!file.exists()) {
+            return false;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return (in.readInt() == FORMAT_VERSION) &&
+                    ((System.currentTimeMillis() - in.readLong()) <= getTimeToLive());
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // put -- save top tracks for the artist and country. Must not be called on the main thread.
+    public synchronized void put (String artistSpotifyId, String countryCode, List<TopTrackItem> topTrackItems) {
+        if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            Log.v(LOG_TAG, "unable to create " + mCacheDir.toString());
+            return;
+        }
+
+        // write to a temporary file first so readers never see a partial entry
+        File file    = entryFile(artistSpotifyId, countryCode);
+        File tmpFile = new File(mCacheDir, file.getName() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(topTrackItems.size());
+            for (TopTrackItem topTrackItem : topTrackItems) {
+                writeString(out, topTrackItem.topTrackArtistName);
+                writeString(out, topTrackItem.topTrackName);
+                writeString(out, topTrackItem.topTrackAlbumName);
+                writeString(out, topTrackItem.topTrackListImageURL);
+                writeString(out, topTrackItem.topTrackPlayImageURL);
+                writeString(out, topTrackItem.topTrackAudioURL);
+            }
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "unable to write cache entry" + e.toString());
+            tmpFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+
+        trimToSize();
+    }
+
+    // clear -- drop every entry, used when the country preference changes. Must not be called
+    //     on the main thread.
+    public synchronized void clear () {
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Log.d(LOG_TAG, "cache cleared");
+    }
+
+    // trimToSize -- remove least recently used entries beyond MAX_ENTRIES, only committed
+    //     entries count, not temporary files still being written
+    private void trimToSize () {
+        File[] files = mCacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept (File dir, String name) {
+                return name.endsWith(ENTRY_SUFFIX);
+            }
+        });
+        if ((files == null) || (files.length <= MAX_ENTRIES)) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare (File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified) ? -1 : ((lhsModified == rhsModified) ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < files.length - MAX_ENTRIES; i++) {
+            if (files[i].delete()) {
+                mEvictionCount++;
+            }
+        }
+    }
+
+    private static void writeString (DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString (DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly (Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return ("hits=" + mHitCount +
+                "|misses=" + mMissCount +
+                "|expired=" + mExpiredCount +
+                "|evictions=" + mEvictionCount);
+    }
+}
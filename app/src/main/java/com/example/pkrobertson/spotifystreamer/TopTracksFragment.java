@@ -4,13 +4,13 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
@@ -19,7 +19,8 @@ import java.util.ArrayList;
  * TopTracksFragment - a fragment that holds the "fragment_top_tracks" view and
  *     handles retrieving the top tracks for a given artist
  *
- *     the lifetime of this fragment is managed by TopTracksActivity
+ *     the lifetime of this fragment is managed by TopTracksActivity, the search in flight is
+ *     owned by SearchResultHolder so it carries on across configuration changes
  *
  */
 
@@ -33,13 +34,17 @@ public class TopTracksFragment extends Fragment {
     private  ArrayList<TopTrackItem> topTrackArray;
 
     // store references to the top tracks list and status text views
-    private ListView topTracksListView;
-    private TextView topTracksListStatus;
+    private RecyclerView        topTracksListView;
+    private LinearLayoutManager topTracksLayoutManager;
+    private TextView            topTracksListStatus;
 
 
     // topTracksAdapter is used to populate and manage topTracksListView
-    private TopTracksListViewAdapter topTracksAdapter;
-    private int topTracksListViewPosition = ListView.INVALID_POSITION;
+    private TopTracksListAdapter topTracksAdapter;
+    private int topTracksListViewPosition = RecyclerView.NO_POSITION;
+
+    // holder of the top tracks search in flight
+    private SearchResultHolder searchResults;
 
     public interface SelectTrackInterface {
         /*
@@ -54,13 +59,16 @@ public class TopTracksFragment extends Fragment {
 
         // assume we do not have a saved state
         topTrackArray             = null;
-        topTracksListViewPosition = ListView.INVALID_POSITION;
+        topTracksListViewPosition = RecyclerView.NO_POSITION;
+
+        // find the holder that may still have our search in flight
+        searchResults = SearchResultHolder.getInstance(getFragmentManager());
 
         // restore array of TopTrackList items from savedInstanceState
         // the array is then used to initialize the list view adapter during OnCreateView
         if (savedInstanceState != null) {
             if (savedInstanceState.containsKey(TRACK_ARRAY_KEY)) {
-                topTrackArray = savedInstanceState.getParcelableArrayList(TRACK_ARRAY_KEY);
+                topTrackArray = ItemListCodec.decodeTracks(savedInstanceState.getByteArray(TRACK_ARRAY_KEY));
             }
             if (savedInstanceState.containsKey(TRACK_POSITION_KEY)) {
                 topTracksListViewPosition = savedInstanceState.getInt(TRACK_POSITION_KEY);
@@ -75,8 +83,13 @@ public class TopTracksFragment extends Fragment {
             // create array from contents of the adapter
             topTrackArray = topTracksAdapter.getTopTrackItems();
 
-            // save array to the bundle
-            outInstanceState.putParcelableArrayList(TRACK_ARRAY_KEY, topTrackArray);
+            if (getActivity().isChangingConfigurations()) {
+                // the holder outlives the change, hand the array over as is
+                searchResults.keepTopTrackItems(topTrackArray, topTracksListStatus.getText());
+            } else {
+                // save array to the bundle in compact form
+                outInstanceState.putByteArray(TRACK_ARRAY_KEY, ItemListCodec.encodeTracks(topTrackArray));
+            }
 
             // save selected position to the bundle
             outInstanceState.putInt(TRACK_POSITION_KEY, topTracksListViewPosition);
@@ -89,45 +102,75 @@ public class TopTracksFragment extends Fragment {
                              Bundle savedInstanceState) {
         View rootView = inflater.inflate(R.layout.fragment_top_tracks, container, false);
 
-        // Get a reference to the ListView, and attach this adapter to it.
-        topTracksListView = (ListView) rootView.findViewById(R.id.top_tracks_list_view);
+        // Get a reference to the list view, and attach this adapter to it.
+        topTracksListView      = (RecyclerView) rootView.findViewById(R.id.top_tracks_list_view);
+        topTracksLayoutManager = new LinearLayoutManager(getActivity());
+        topTracksListView.setLayoutManager(topTracksLayoutManager);
 
         // Get and save reference to TextView and use to show progress updates and results
         topTracksListStatus = (TextView) rootView.findViewById(R.id.top_tracks_status);
 
+        // after a configuration change the list, and any results that arrived meanwhile, are
+        // waiting in the holder
+        ArrayList<TopTrackItem> retainedArray = searchResults.takeTopTrackItems();
+        if (retainedArray != null) {
+            topTrackArray = retainedArray;
+        }
+        CharSequence retainedStatus = searchResults.takeTopTracksStatus();
+        if (retainedStatus != null) {
+            topTracksListStatus.setText(retainedStatus);
+        }
+
         if (topTrackArray == null) {
             topTrackArray = new ArrayList<TopTrackItem>();
         }
 
         // create adapter and populate with empty or saved TopTrackItem information
-        topTracksAdapter = new TopTracksListViewAdapter(getActivity(),
-                R.layout.top_tracks_list_item,
-                topTrackArray);
+        topTracksAdapter = new TopTracksListAdapter(getActivity(), topTrackArray);
 
         // assign the adapter to the list view
         topTracksListView.setAdapter(topTracksAdapter);
-        if (topTracksListViewPosition != ListView.INVALID_POSITION) {
+        if (topTracksListViewPosition != RecyclerView.NO_POSITION) {
             Log.d(LOG_TAG, "onCreatView list view position ==> " + topTracksListViewPosition);
-            // topTracksListView.smoothScrollToPosition(artistListViewPosition);
-            topTracksListView.setSelectionFromTop(topTracksListViewPosition, 0);
+            topTracksLayoutManager.scrollToPositionWithOffset(topTracksListViewPosition, 0);
         }
 
         // Set up a click listener for the artist list
-        topTracksListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        topTracksAdapter.setOnItemClickListener(new DiffingListAdapter.OnItemClickListener() {
 
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // get copy of top tracks and pass along to the track selected handler
+            public void onItemClick(int position) {
+                // get copy of top tracks as shown and pass along to the track selected handler
                 // the track array is needed to allow moving to pervious and next track
-                topTrackArray = topTracksAdapter.getTopTrackItems();
+                topTrackArray = new ArrayList<TopTrackItem>(topTracksAdapter.getItems());
 
                 ((SelectTrackInterface)getActivity()).onTrackSelected(topTrackArray, position);
                 topTracksListViewPosition = position;
             }
         });
+
+        // results of a search still in flight now come to these views
+        searchResults.attachTopTracksViews(topTracksAdapter, topTracksListStatus);
+
         return rootView;
     }
 
+    @Override
+    public void onDestroyView () {
+        searchResults.detachTopTracksViews();
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onDestroy () {
+        // nobody is left to show the results, stop the search in flight, unless the fragment
+        // is only being recreated for a configuration change
+        if (!getActivity().isChangingConfigurations()) {
+            searchResults.cancelTopTracksSearch();
+        }
+        super.onDestroy();
+    }
+
     /*
      * showArtistTopTracks -- used by ArtistSearchActivity when running in 2-pane mode to bring
      *     up tracks based on a new artist selection
@@ -147,10 +190,9 @@ public class TopTracksFragment extends Fragment {
         // show loading status that appears until the list view is populated
         topTracksListStatus.setText(String.format(getString(R.string.track_searching), artist.artistName));
 
-        // kick off top tracks search task that populates the adaptor when finished
-        TopTracksSearchTask searchTask = new TopTracksSearchTask(
-                topTracksAdapter, topTracksListStatus, countryCode);
-        searchTask.execute(artist.artistSpotifyId);
+        // kick off top tracks search task that populates the adaptor when finished, this
+        // replaces the search for a previously selected artist if it is still running
+        searchResults.startTopTracksSearch(artist.artistSpotifyId, countryCode);
     }
 
     /**
@@ -158,7 +200,10 @@ public class TopTracksFragment extends Fragment {
      *     know if clear actually happened. This is used to support management of the backstack.
      */
     public boolean clearArtistTopTracks () {
-        if ( topTracksListView.getChildCount() > 0 ) {
+        if ( topTracksAdapter.getItemCount() > 0 ) {
+            // stop a search still running for the previous artist
+            searchResults.cancelTopTracksSearch();
+
             // clear adaptor...
             topTracksAdapter.clear();
 
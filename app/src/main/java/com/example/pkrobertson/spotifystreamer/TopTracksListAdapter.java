@@ -0,0 +1,112 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TopTracksListAdapter - RecyclerView adapter to store and render the track image, track name
+ *     and album name from TopTrackItem
+ *
+ *     top tracks have no Spotify ID of their own here, rows are keyed by artist, track and
+ *     album name which only repeat when Spotify lists the same track twice
+ *
+ *     this class is used by TopTracksFragment and SearchResultHolder
+ *
+ */
+public class TopTracksListAdapter extends DiffingListAdapter<TopTrackItem, TopTracksListAdapter.ViewHolder> {
+    private final String LOG_TAG = TopTracksListAdapter.class.getSimpleName();
+
+    private Context myContext;
+    private LayoutInflater myLayoutInflater;
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        ImageView trackImageView;
+        TextView  trackTextView;
+
+        ViewHolder (View itemView) {
+            super (itemView);
+
+            // get and save references to the top_tracks_list_item view elements
+            trackImageView = (ImageView) itemView.findViewById(R.id.top_track_icon);
+            trackTextView  = (TextView)  itemView.findViewById(R.id.top_track_description);
+        }
+    }
+
+    // constructor used to populate adapter with list of top track items
+    public TopTracksListAdapter (Context context, List<TopTrackItem> items) {
+        super (items, Metrics.GAUGE_TOP_TRACK_ROWS);
+
+        // save reference to context
+        this.myContext = context;
+
+        // get layout inflater reference from context
+        this.myLayoutInflater = (LayoutInflater) this.myContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+    }
+
+    // get list of top track items from adapter, used to save state
+    public ArrayList<TopTrackItem> getTopTrackItems () {
+        return new ArrayList<TopTrackItem>(getLatestItems());
+    }
+
+    @Override
+    public String getItemKey (TopTrackItem topTrackItem) {
+        return (topTrackItem.topTrackArtistName + '\u0000' +
+                topTrackItem.topTrackName + '\u0000' +
+                topTrackItem.topTrackAlbumName);
+    }
+
+    @Override
+    public boolean areContentsTheSame (TopTrackItem oldItem, TopTrackItem newItem) {
+        // names are part of the key, only the image shown in the row can differ
+        return (oldItem.topTrackListImageURL == null) ?
+                (newItem.topTrackListImageURL == null) :
+                oldItem.topTrackListImageURL.equals(newItem.topTrackListImageURL);
+    }
+
+    // replaceTopTrackItems -- replace the list contents, only changed rows are updated
+    public void replaceTopTrackItems (List<TopTrackItem> topTrackItems) {
+        submitItems(topTrackItems);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder (ViewGroup parent, int viewType) {
+        // inflate each "top_tracks_list_item" and pass clicks on to the fragment
+        ViewHolder itemHolder = new ViewHolder(
+                myLayoutInflater.inflate(R.layout.top_tracks_list_item, parent, false));
+        listenForClicks(itemHolder);
+        return itemHolder;
+    }
+
+    @Override
+    protected void bindItem (ViewHolder itemHolder, TopTrackItem topTrackItem) {
+        // set top track name and album name in the text view
+        itemHolder.trackTextView.setText(topTrackItem.topTrackName + "\n" + topTrackItem.topTrackAlbumName);
+
+        // load top track image using "Picasso" or with a default image if the URL is not valid
+        if (topTrackItem.topTrackListImageValid) {
+            try {
+                // decode at row size, the URL may be larger when Spotify has no closer variant
+                Picasso.with(myContext).load(topTrackItem.topTrackListImageURL)
+                        .resizeDimen(R.dimen.list_item_image_size, R.dimen.list_item_image_size)
+                        .centerInside()
+                        .into(itemHolder.trackImageView);
+            } catch (Exception e) {
+                Log.v(LOG_TAG, "Picasso call failed" + e.toString());
+                itemHolder.trackImageView.setImageResource(R.drawable.ic_artist_image);
+            }
+        } else {
+            itemHolder.trackImageView.setImageResource(R.drawable.ic_artist_image);
+        }
+    }
+}
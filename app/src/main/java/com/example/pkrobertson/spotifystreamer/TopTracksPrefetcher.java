@@ -0,0 +1,184 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kaaes.spotify.webapi.android.SpotifyService;
+import kaaes.spotify.webapi.android.models.Tracks;
+
+/**
+ * TopTracksPrefetcher - fetches top tracks for artists visible in the artist list before the
+ *     user taps one, so TopTracksFragment.showArtistTopTracks finds them in TopTracksCache
+ *
+ *     prefetches run on the background lane of TaskScheduler, behind anything the user asked
+ *     for. A new search cancels everything queued or in flight for the previous search. How
+ *     many rows are prefetched and whether metered networks are allowed are set in
+ *     preferences. Nothing is prefetched while the Spotify circuit breaker is open.
+ *
+ *     this class is used by ArtistSearchFragment
+ *
+ */
+public class TopTracksPrefetcher {
+    private static final String LOG_TAG = TopTracksPrefetcher.class.getSimpleName();
+
+    private static TopTracksPrefetcher sInstance;
+
+    private final Context       mContext;
+    private final TaskScheduler mScheduler;
+
+    // each search gets a new generation, used to cancel its prefetches and tag its HTTP calls
+    private TaskScheduler.CancellationToken mGeneration = new TaskScheduler.CancellationToken();
+
+    // artists already requested for this generation
+    private final Set<String> mRequested = new HashSet<String>();
+
+    // statistics
+    private final AtomicLong mFetchedCount   = new AtomicLong();
+    private final AtomicLong mCachedCount    = new AtomicLong();
+    private final AtomicLong mFailedCount    = new AtomicLong();
+    private final AtomicLong mCancelledCount = new AtomicLong();
+
+    // getInstance -- returns the prefetcher shared by all artist lists
+    public static synchronized TopTracksPrefetcher getInstance (Context context) {
+        if (sInstance == null) {
+            sInstance = new TopTracksPrefetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TopTracksPrefetcher (Context context) {
+        mContext   = context;
+        mScheduler = TaskScheduler.getInstance();
+    }
+
+    // getPrefetchCount -- number of visible rows to prefetch, 0 turns prefetch off
+    public int getPrefetchCount () {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String count = prefs.getString(
+                mContext.getString(R.string.pref_prefetch_count_key),
+                mContext.getString(R.string.pref_prefetch_count_default));
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            return Integer.parseInt(mContext.getString(R.string.pref_prefetch_count_default));
+        }
+    }
+
+    // networkAllowed -- check we are connected and, if required, not on a metered network
+    private boolean networkAllowed () {
+        ConnectivityManager connectivity =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo network = connectivity.getActiveNetworkInfo();
+        if ((network == null) || !network.isConnected()) {
+            return false;
+        }
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        boolean unmeteredOnly = prefs.getBoolean(
+                mContext.getString(R.string.pref_prefetch_unmetered_key), true);
+        return !(unmeteredOnly && connectivity.isActiveNetworkMetered());
+    }
+
+    // getCountryCode -- country used for top tracks, same as TopTracksFragment
+    private String getCountryCode () {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        return prefs.getString(mContext.getString(R.string.pref_country_key),
+                mContext.getString(R.string.pref_country_default));
+    }
+
+    /**
+     * prefetch - queue top tracks requests for these artists unless already requested for the
+     *     current search. Called on the main thread as rows become visible.
+     */
+    public synchronized void prefetch (List<ArtistItem> artistItems) {
+        if (artistItems.isEmpty() || !networkAllowed()) {
+            return;
+        }
+
+        // no extra load while Spotify is failing, rows seen meanwhile are not remembered
+        if (!SpotifyClient.getInstance(mContext).isAvailable()) {
+            return;
+        }
+
+        final TaskScheduler.CancellationToken generation  = mGeneration;
+        final String                          countryCode = getCountryCode();
+
+        for (ArtistItem artistItem : artistItems) {
+            final String artistSpotifyId = artistItem.artistSpotifyId;
+            if ((artistSpotifyId == null) || !mRequested.add(artistSpotifyId)) {
+                continue;
+            }
+
+            mScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+                @Override
+                public void run () {
+                    fetchTopTracks(generation, artistSpotifyId, countryCode);
+                }
+            }, generation);
+        }
+    }
+
+    // cancelAll -- the search changed, drop everything queued or in flight
+    public synchronized void cancelAll () {
+        mCancelledCount.addAndGet(mGeneration.cancel());
+        mRequested.clear();
+
+        SpotifyClient.getInstance(mContext).cancelCalls(mGeneration);
+        mGeneration = new TaskScheduler.CancellationToken();
+    }
+
+    // fetchTopTracks -- runs on a background lane thread, fills TopTracksCache for one artist
+    private void fetchTopTracks (TaskScheduler.CancellationToken generation,
+                                 final String artistSpotifyId, final String countryCode) {
+        if (generation.isCancelled()) {
+            return;
+        }
+
+        TopTracksCache cache = TopTracksCache.getInstance(mContext);
+        if (cache.contains(artistSpotifyId, countryCode)) {
+            mCachedCount.incrementAndGet();
+            return;
+        }
+
+        SpotifyClient client = SpotifyClient.getInstance(mContext);
+
+        client.beginTaggedCalls(generation);
+        try {
+            // a single attempt, the user's own search retries if the artist is opened
+            Tracks searchResult = client.execute(new SpotifyCallPolicy.ServiceCall<Tracks>() {
+                @Override
+                public Tracks call (SpotifyService spotify) {
+                    return spotify.getArtistTopTrack(artistSpotifyId,
+                            TopTracksSearchTask.buildSearchOptions(countryCode));
+                }
+            }, false);
+
+            // keep the result even if the search changed meanwhile, the request is paid for
+            cache.put(artistSpotifyId, countryCode,
+                    SpotifyItems.getMapper(mContext).buildTopTrackItems(searchResult.tracks));
+            mFetchedCount.incrementAndGet();
+        } catch (Exception e) {
+            mFailedCount.incrementAndGet();
+            Log.v(LOG_TAG, "prefetch failed" + e.toString());
+        } finally {
+            client.endTaggedCalls();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ("fetched=" + mFetchedCount.get() +
+                "|alreadyCached=" + mCachedCount.get() +
+                "|failed=" + mFailedCount.get() +
+                "|cancelled=" + mCancelledCount.get());
+    }
+}
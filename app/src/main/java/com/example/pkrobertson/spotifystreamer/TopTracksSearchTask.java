@@ -1,54 +1,72 @@
 package com.example.pkrobertson.spotifystreamer;
 
+import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
-import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
-import kaaes.spotify.webapi.android.SpotifyApi;
 import kaaes.spotify.webapi.android.SpotifyService;
-import kaaes.spotify.webapi.android.models.Image;
-import kaaes.spotify.webapi.android.models.Track;
 import kaaes.spotify.webapi.android.models.Tracks;
 
 /**
  * TopTracksSearchTask - an async task responsible for searching for top tracks using the
  *     Spotify web service fragment
  *
- *     this task takes care of populating the top tracks list view with data returned from Spotify
+ *     this task hands the data returned from Spotify to SearchResultHolder, which passes it on
+ *     to the top tracks list view, even if that view was recreated meanwhile
+ *
+ *     mapped results are kept in TopTracksCache so reopening an artist skips the network, and
+ *     expired ones are shown (with a notice) when Spotify cannot be reached
+ *
+ *     results are mapped to TopTrackItem in the background, the main thread only hands the
+ *     finished list to the adapter in one bulk update
  *
  */
 public class TopTracksSearchTask extends AsyncTask<String, Void, String> {
 
     private final String LOG_TAG = TopTracksSearchTask.class.getSimpleName();
 
-    // hold references to the top tracks list view adapter and the search status text view
-    private TopTracksListViewAdapter mTopTracksAdapter;
-    private TextView                 mSearchStatus;
+    // holder that owns this search and passes the results on to the top tracks list view
+    private SearchResultHolder       mSearchResults;
     private String                   mSearchCountryCode;
 
+    // application context used to reach the shared Spotify client
+    private Context                  mAppContext;
+
     // holds artist ID that we are searching for
     private String                   mTrackSearchString;
 
-    // holds Spotify search result
-    private Tracks                   mSearchResult;
+    // holds top track items, from the cache or mapped from the search result
+    private List<TopTrackItem>       mTopTrackItems;
+
+    // true when Spotify could not be reached
+    private boolean                  mServiceUnavailable;
 
-    public TopTracksSearchTask(TopTracksListViewAdapter topTracksAdapter,
-                               TextView searchStatus,
+    // cancels this task's job on its TaskScheduler lane, even while it is still queued
+    private final TaskScheduler.CancellationToken mCancellation = new TaskScheduler.CancellationToken();
+
+    public TopTracksSearchTask(SearchResultHolder searchResults,
+                               Context  context,
                                String   searchCountryCode) {
         super ();
 
         // save references for later use
-        this.mTopTracksAdapter  = topTracksAdapter;
-        this.mSearchStatus      = searchStatus;
+        this.mSearchResults     = searchResults;
         this.mSearchCountryCode = searchCountryCode;
+        this.mAppContext        = context.getApplicationContext();
     }
 
     @Override
     protected String doInBackground (String... params) {
 
+        // AsyncTask just lowered this thread to background priority, undo that for the lane
+        TaskScheduler.applyLanePriority();
+
         String result = null;
 
         // See if artist ID was passed as parameter, if no artist, no search is needed.
@@ -60,75 +78,132 @@ public class TopTracksSearchTask extends AsyncTask<String, Void, String> {
         mTrackSearchString = params[0];
         Log.d(LOG_TAG, "artist spotify ID = " + params[0]);
 
-        // get reference to Spotify API handler and service
-        SpotifyApi     api     = new SpotifyApi();
-        SpotifyService spotify = api.getService();
-
-        // for now hardcode "country" to US
-        Map<String, Object> options = new Hashtable<String, Object>();
-        options.put("country", mSearchCountryCode);
+        // reopening an artist is answered from the cache
+        Tracing.beginSection("TopTracksSearchTask.cache");
+        TopTracksCache cache = TopTracksCache.getInstance(mAppContext);
+        ArrayList<TopTrackItem> cachedResult = cache.get(mTrackSearchString, mSearchCountryCode);
+        Tracing.endSection();
+        if (cachedResult != null) {
+            mTopTrackItems = Collections.unmodifiableList(cachedResult);
+            return (mTopTrackItems.isEmpty() ? null : "found at least one cached track");
+        }
 
+        // get reference to the shared Spotify client
+        SpotifyClient client = SpotifyClient.getInstance(mAppContext);
 
+        // tag our calls so cancelSearch can abort the HTTP request
+        Metrics metrics = Metrics.getInstance();
+        metrics.count(Metrics.COUNT_TOP_TRACKS_SEARCHES);
+        client.beginTaggedCalls(this);
         try {
-            // search for tracks based on artist ID and country option
-            mSearchResult = spotify.getArtistTopTrack(params[0], options);
+            // search for tracks based on artist ID and country option, retrying if Spotify is
+            // briefly unavailable
+            final String artistSpotifyId = params[0];
+            long searchStart = System.nanoTime();
+            Tracks searchResult;
+            Tracing.beginSection("TopTracksSearchTask.network");
+            try {
+                searchResult = client.execute(new SpotifyCallPolicy.ServiceCall<Tracks>() {
+                    @Override
+                    public Tracks call (SpotifyService spotify) {
+                        return spotify.getArtistTopTrack(artistSpotifyId, buildSearchOptions(mSearchCountryCode));
+                    }
+                }, true);
+            } finally {
+                Tracing.endSection();
+            }
+            metrics.recordSince(Metrics.TIMER_TOP_TRACKS_SEARCH, searchStart);
+
+            // map and save the result here, off the main thread
+            long mapStart = System.nanoTime();
+            Tracing.beginSection("TopTracksSearchTask.map");
+            mTopTrackItems = Collections.unmodifiableList(
+                    SpotifyItems.getMapper(mAppContext).buildTopTrackItems(searchResult.tracks));
+            Tracing.endSection();
+            metrics.recordSince(Metrics.TIMER_MAP_TOP_TRACKS, mapStart);
+            Tracing.beginSection("TopTracksSearchTask.cachePut");
+            cache.put(mTrackSearchString, mSearchCountryCode, mTopTrackItems);
+            Tracing.endSection();
 
             // did we find any tracks?
-            if (mSearchResult.tracks.isEmpty() == false) {
+            if (mTopTrackItems.isEmpty() == false) {
                 result = "found at least one track";
             }
+        } catch (SpotifyCallPolicy.ServiceUnavailableException e) {
+            Log.v (LOG_TAG, "Spotify unavailable" + e.toString());
+            metrics.count(Metrics.COUNT_SERVICE_UNAVAILABLE);
+            mServiceUnavailable = true;
+
+            // fall back to expired cached tracks, if any
+            ArrayList<TopTrackItem> staleResult = cache.getStale(mTrackSearchString, mSearchCountryCode);
+            if ( (staleResult != null) && (staleResult.isEmpty() == false) ) {
+                mTopTrackItems = Collections.unmodifiableList(staleResult);
+                result = "found at least one saved track";
+            }
         } catch (Exception e) {
             Log.v (LOG_TAG, "Spotify call failed" + e.toString());
+        } finally {
+            client.endTaggedCalls();
         }
 
         // Return null only if no artist results found
         return result;
     }
 
+    /**
+     * cancelSearch - used when another artist is selected or the top tracks view really goes
+     *     away. Stops the task and aborts the HTTP call so onPostExecute never runs.
+     */
+    public void cancelSearch () {
+        cancel(true);
+        mCancellation.cancel();
+        SpotifyClient.getInstance(mAppContext).cancelCalls(this);
+    }
+
+    // getCancellationToken -- run this task with it so cancelSearch also takes it off the lane
+    public TaskScheduler.CancellationToken getCancellationToken () {
+        return mCancellation;
+    }
+
+    @Override
+    protected void onCancelled () {
+        Log.d(LOG_TAG, "search cancelled ==> " + mTrackSearchString);
+    }
+
     @Override
     protected void onPostExecute(String result) {
+        long postStart = System.nanoTime();
+        Tracing.beginSection("TopTracksSearchTask.post");
 
         // did we find any tracks?
-        if (result == null) {
+        if ( (result == null) && mServiceUnavailable ) {
+            // tell user Spotify could not be reached, which is not the same as no tracks
+            mSearchResults.onTopTracksResults(this, null,
+                    mAppContext.getString(R.string.track_service_unavailable));
+        } else if (result == null) {
             // tell user no tracks found
-            // no need to clear adapter as we always create a new one for each search...
-            mSearchStatus.setText (String.format(mSearchStatus.getResources().getString(R.string.track_not_found), mTrackSearchString, mSearchCountryCode));
+            // no need to clear adapter as it is cleared when each search starts...
+            mSearchResults.onTopTracksResults(this, null,
+                    String.format(mAppContext.getString(R.string.track_not_found), mTrackSearchString, mSearchCountryCode));
+        } else if (mServiceUnavailable) {
+            // show saved tracks and say they may be out of date
+            mSearchResults.onTopTracksResults(this, mTopTrackItems,
+                    mAppContext.getString(R.string.track_showing_saved));
         } else {
-            mSearchStatus.setText ("");
-
-            // fill in new data...
-            ;
-            for (Track track : mSearchResult.tracks) {
-                // get track and album name directly from the search results
-                String topTrackArtistName   = track.artists.get(0).name;
-                String topTrackName         = track.name;
-                String topTrackAlbumName    = track.album.name;
-                String topTrackListImageURL = null;
-                String topTrackPlayImageURL = null;
-                String topTrackAudioURL     = track.preview_url;
-
-                // find smallest artist image for track view and the next size up for play view
-                int imageSize = 0;
-                for (Image image : track.album.images) {
-                    if ( (imageSize == 0) || (imageSize > image.height) ) {
-                        imageSize = image.height;
-                        topTrackPlayImageURL = topTrackListImageURL;
-                        topTrackListImageURL = image.url;
-                    }
-                }
-
-                // create new top tracks item based on search results
-                TopTrackItem topTrackItem = new TopTrackItem (
-                        topTrackArtistName, topTrackName, topTrackAlbumName,
-                        topTrackListImageURL, topTrackPlayImageURL, topTrackAudioURL);
-                Log.d(LOG_TAG, "track = " + topTrackItem.toString());
-
-                // add the top tracks information to the top tracks adapter
-                mTopTracksAdapter.add(topTrackItem);
-            }
+            // fill in new data with a single change notification
+            mSearchResults.onTopTracksResults(this, mTopTrackItems, "");
+        }
 
-        // This does nothing as far as I can tell...remove?
-        mTopTracksAdapter.notifyDataSetChanged();
+        Tracing.endSection();
+        if (BuildConfig.DEBUG) {
+            Log.d(LOG_TAG, "onPostExecute main thread " + ((System.nanoTime() - postStart) / 1000) + "us");
         }
     }
+
+    // buildSearchOptions -- options passed along with the top tracks request
+    static Map<String, Object> buildSearchOptions (String countryCode) {
+        Map<String, Object> options = new Hashtable<String, Object>();
+        options.put("country", countryCode);
+        return options;
+    }
 }
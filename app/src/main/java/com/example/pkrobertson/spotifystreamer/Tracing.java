@@ -0,0 +1,114 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracing - named sections and async spans for systrace, so one trace shows which stage of a
+ *     search, a list update or a track start is slow
+ *
+ *     everything here is behind BuildConfig.TRACE_ENABLED, a constant that is true for debug
+ *     builds and false for release builds unless built with -PenableTrace, so in release builds
+ *     the method bodies compile to nothing. Sections need API 18.
+ *
+ *     sections nest and must end on the thread that began them. Async spans (network calls,
+ *     MediaPlayer prepare) may end on any thread and are matched by name and the cookie
+ *     returned by beginAsync. The framework only offers them as hidden methods before API 29,
+ *     so they are found by reflection and silently skipped when missing.
+ *
+ *     section names are string constants, so sections do not allocate in the traced code.
+ *     Async spans go through reflection and allocate a little, they are only used around
+ *     calls that take milliseconds.
+ *
+ *     this class is used by the search tasks, DiffingListAdapter, SpotifyClient and
+ *     PlayTracksService
+ *
+ */
+public class Tracing {
+    private static final String LOG_TAG = Tracing.class.getSimpleName();
+
+    // Trace.TRACE_TAG_APP, hidden before API 29
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    private static final AtomicInteger sNextCookie = new AtomicInteger(1);
+
+    // async span methods, looked up on first use
+    private static boolean sAsyncLookedUp;
+    private static Method  sAsyncBegin;
+    private static Method  sAsyncEnd;
+
+    private Tracing () {
+    }
+
+    // beginSection -- start a section on this thread
+    public static void beginSection (String name) {
+        if (BuildConfig.TRACE_ENABLED && (Build.VERSION.SDK_INT >= 18)) {
+            Trace.beginSection(name);
+        }
+    }
+
+    // endSection -- end the section most recently begun on this thread
+    public static void endSection () {
+        if (BuildConfig.TRACE_ENABLED && (Build.VERSION.SDK_INT >= 18)) {
+            Trace.endSection();
+        }
+    }
+
+    // beginAsync -- start a span that may end on another thread, returns its cookie
+    public static int beginAsync (String name) {
+        if (BuildConfig.TRACE_ENABLED) {
+            int cookie = sNextCookie.getAndIncrement();
+            invokeAsync(true, name, cookie);
+            return cookie;
+        }
+        return 0;
+    }
+
+    // endAsync -- end the span begun with this name and cookie
+    public static void endAsync (String name, int cookie) {
+        if (BuildConfig.TRACE_ENABLED && (cookie != 0)) {
+            invokeAsync(false, name, cookie);
+        }
+    }
+
+    private static void invokeAsync (boolean begin, String name, int cookie) {
+        Method method = getAsyncMethod(begin);
+        if (method == null) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= 29) {
+                method.invoke(null, name, cookie);
+            } else {
+                method.invoke(null, TRACE_TAG_APP, name, cookie);
+            }
+        } catch (Exception e) {
+            Log.v(LOG_TAG, "async trace failed" + e.toString());
+        }
+    }
+
+    // getAsyncMethod -- Trace.begin/endAsyncSection on API 29+, asyncTraceBegin/End before
+    private static synchronized Method getAsyncMethod (boolean begin) {
+        if (!sAsyncLookedUp) {
+            sAsyncLookedUp = true;
+            try {
+                if (Build.VERSION.SDK_INT >= 29) {
+                    sAsyncBegin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                    sAsyncEnd   = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+                } else if (Build.VERSION.SDK_INT >= 18) {
+                    sAsyncBegin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                    sAsyncEnd   = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+                }
+            } catch (Exception e) {
+                Log.v(LOG_TAG, "async trace not available" + e.toString());
+                sAsyncBegin = null;
+                sAsyncEnd   = null;
+            }
+        }
+        return begin ? sAsyncBegin : sAsyncEnd;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TrackRepository - in-process store of track lists handed to PlayTracksService, so intents
+ *     carry a session ID and a position instead of a parceled copy of every track
+ *
+ *     lists are copied once and kept unmodifiable, so the activity and the service can share
+ *     them safely. Only the most recent MAX_SESSIONS lists are kept.
+ *
+ *     this class is used by ArtistSearchActivity, TopTracksActivity and PlayTracksService
+ *
+ */
+public class TrackRepository {
+    private static final String LOG_TAG = TrackRepository.class.getSimpleName();
+
+    // a session is only needed until the service picks it up, keep a few for safety
+    private static final int MAX_SESSIONS = 4;
+
+    private static TrackRepository sInstance;
+
+    // insertion ordered, the eldest session is dropped first
+    private final LinkedHashMap<String, List<TopTrackItem>> mSessions =
+            new LinkedHashMap<String, List<TopTrackItem>>() {
+                @Override
+                protected boolean removeEldestEntry (Map.Entry<String, List<TopTrackItem>> eldest) {
+                    return size() > MAX_SESSIONS;
+                }
+            };
+
+    private long mNextSessionId = 1;
+
+    // getInstance -- returns the repository shared by the activities and the service
+    public static synchronized TrackRepository getInstance () {
+        if (sInstance == null) {
+            sInstance = new TrackRepository();
+        }
+        return sInstance;
+    }
+
+    // putTracks -- store an unmodifiable copy of the tracks, returns the session ID to pass on
+    public synchronized String putTracks (List<TopTrackItem> topTrackItems) {
+        String sessionId = String.valueOf(mNextSessionId++);
+        mSessions.put(sessionId, Collections.unmodifiableList(new ArrayList<TopTrackItem>(topTrackItems)));
+        Log.d(LOG_TAG, "session " + sessionId + " ==> " + topTrackItems.size() + " tracks");
+        return sessionId;
+    }
+
+    // getTracks -- tracks stored under the session ID, or null when unknown
+    public synchronized List<TopTrackItem> getTracks (String sessionId) {
+        return mSessions.get(sessionId);
+    }
+}
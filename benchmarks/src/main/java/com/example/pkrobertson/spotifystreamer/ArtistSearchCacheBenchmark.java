@@ -0,0 +1,71 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArtistSearchCacheBenchmark - lookups in a full artist search cache: an exact hit, a query
+ *     answered from a shorter cached one, a miss and replacing an entry
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArtistSearchCacheBenchmark {
+
+    // same limits as the cache shared by the app
+    private static final int  MAX_ENTRIES = 50;
+    private static final long TTL_MS      = 10 * 60 * 1000;
+
+    private ArtistSearchCache myCache;
+    private List<ArtistItem>  myArtistItems;
+
+    @Setup
+    public void setup () {
+        myArtistItems = Fixtures.newMapper().buildArtistItems(Fixtures.parseArtists(new Gson(),
+                Fixtures.load(Fixtures.SEARCH_ARTISTS)).artists.items);
+
+        // fill the cache with unrelated queries, then the one looked up
+        myCache = new ArtistSearchCache(MAX_ENTRIES, TTL_MS);
+        for (int i = 0; i < MAX_ENTRIES - 1; i++) {
+            myCache.put("artist " + i, myArtistItems.subList(0, i % myArtistItems.size()));
+        }
+        myCache.put("Coldplay", myArtistItems);
+    }
+
+    @Benchmark
+    public List<ArtistItem> hit () {
+        return myCache.get("  ColdPlay ");
+    }
+
+    @Benchmark
+    public List<ArtistItem> prefixMatch () {
+        return myCache.getPrefixMatch("coldplay acou");
+    }
+
+    @Benchmark
+    public List<ArtistItem> miss () {
+        return myCache.get("radiohead");
+    }
+
+    @Benchmark
+    public void put () {
+        myCache.put("coldplay", myArtistItems);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BindPathBenchmark - the URL check made for each row bind, before and after the URLs were
+ *     validated once when the items are built. The "regex" benchmarks match every image URL
+ *     against WEB_URL as the list adapters did, the "field" benchmarks only read the
+ *     validation flag as ArtistListAdapter and TopTracksListAdapter do now.
+ *
+ *     the "parse" benchmarks are the check that moved out of the bind: UrlValidator.parseWebUrl
+ *     on each image URL, made once per item when ItemMapper builds it. It parses with
+ *     java.net.URI, not WEB_URL.
+ *
+ *     each call binds a whole fixture list, 20 artists or 10 tracks, divide for one row
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BindPathBenchmark {
+
+    private List<ArtistItem>   myArtistItems;
+    private List<TopTrackItem> myTopTrackItems;
+
+    @Setup
+    public void setup () {
+        Gson gson = new Gson();
+        ItemMapper<Fixtures.Artist, Fixtures.Track, Fixtures.Image> mapper = Fixtures.newMapper();
+        myArtistItems   = mapper.buildArtistItems(
+                Fixtures.parseArtists(gson, Fixtures.load(Fixtures.SEARCH_ARTISTS)).artists.items);
+        myTopTrackItems = mapper.buildTopTrackItems(
+                Fixtures.parseTracks(gson, Fixtures.load(Fixtures.TOP_TRACKS)).tracks);
+    }
+
+    @Benchmark
+    public int artistRowsRegex () {
+        int withImage = 0;
+        for (int i = 0; i < myArtistItems.size(); i++) {
+            if (WebUrlPattern.isWebUrl(myArtistItems.get(i).artistImageURL)) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+
+    @Benchmark
+    public int artistRowsField () {
+        int withImage = 0;
+        for (int i = 0; i < myArtistItems.size(); i++) {
+            if (myArtistItems.get(i).artistImageValid) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+
+    @Benchmark
+    public int artistRowsParse () {
+        int withImage = 0;
+        for (int i = 0; i < myArtistItems.size(); i++) {
+            if (UrlValidator.parseWebUrl(myArtistItems.get(i).artistImageURL) != null) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+
+    @Benchmark
+    public int trackRowsRegex () {
+        int withImage = 0;
+        for (int i = 0; i < myTopTrackItems.size(); i++) {
+            if (WebUrlPattern.isWebUrl(myTopTrackItems.get(i).topTrackListImageURL)) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+
+    @Benchmark
+    public int trackRowsField () {
+        int withImage = 0;
+        for (int i = 0; i < myTopTrackItems.size(); i++) {
+            if (myTopTrackItems.get(i).topTrackListImageValid) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+
+    @Benchmark
+    public int trackRowsParse () {
+        int withImage = 0;
+        for (int i = 0; i < myTopTrackItems.size(); i++) {
+            if (UrlValidator.parseWebUrl(myTopTrackItems.get(i).topTrackListImageURL) != null) {
+                withImage++;
+            }
+        }
+        return withImage;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Fixtures - recorded Spotify web API responses and the models Gson reads them into, the same
+ *     fields the app gets from the web API library
+ *
+ *     fixtures/search-artists.json is the first page of an artist search (20 artists, images
+ *     in several sizes, some without any) and fixtures/top-tracks.json the top tracks of one
+ *     artist (10 tracks, one without a preview)
+ *
+ *     this class is used by the benchmarks
+ *
+ */
+public class Fixtures {
+
+    public static final String SEARCH_ARTISTS = "fixtures/search-artists.json";
+    public static final String TOP_TRACKS     = "fixtures/top-tracks.json";
+
+    // image target sizes of a 2x density phone, in pixels
+    public static final int LIST_IMAGE_PX         = 128;
+    public static final int PLAY_IMAGE_PX         = 560;
+    public static final int NOTIFICATION_IMAGE_PX = 128;
+
+    public static class Image {
+        public String  url;
+        public Integer width;
+        public Integer height;
+    }
+
+    public static class Artist {
+        public String      id;
+        public String      name;
+        public List<Image> images;
+    }
+
+    public static class ArtistsPage {
+        public List<Artist> items;
+        public int          total;
+    }
+
+    public static class ArtistsPager {
+        public ArtistsPage artists;
+    }
+
+    public static class Album {
+        public String      name;
+        public List<Image> images;
+    }
+
+    public static class Track {
+        public String       name;
+        public String       preview_url;
+        public Album        album;
+        public List<Artist> artists;
+    }
+
+    public static class Tracks {
+        public List<Track> tracks;
+    }
+
+    public static final ImageSelector.ImageFields<Image> IMAGE_FIELDS = new ImageSelector.ImageFields<Image>() {
+        public String getUrl (Image image) {
+            return image.url;
+        }
+
+        public Integer getWidth (Image image) {
+            return image.width;
+        }
+
+        public Integer getHeight (Image image) {
+            return image.height;
+        }
+    };
+
+    public static final ItemMapper.ArtistFields<Artist, Image> ARTIST_FIELDS = new ItemMapper.ArtistFields<Artist, Image>() {
+        public String getName (Artist artist) {
+            return artist.name;
+        }
+
+        public String getId (Artist artist) {
+            return artist.id;
+        }
+
+        public List<Image> getImages (Artist artist) {
+            return artist.images;
+        }
+    };
+
+    public static final ItemMapper.TrackFields<Track, Image> TRACK_FIELDS = new ItemMapper.TrackFields<Track, Image>() {
+        public String getArtistName (Track track) {
+            return track.artists.get(0).name;
+        }
+
+        public String getName (Track track) {
+            return track.name;
+        }
+
+        public String getAlbumName (Track track) {
+            return track.album.name;
+        }
+
+        public List<Image> getAlbumImages (Track track) {
+            return track.album.images;
+        }
+
+        public String getPreviewUrl (Track track) {
+            return track.preview_url;
+        }
+    };
+
+    private Fixtures () {
+    }
+
+    // newMapper -- mapper set up like the app's on a 2x density phone
+    public static ItemMapper<Artist, Track, Image> newMapper () {
+        return new ItemMapper<Artist, Track, Image>(
+                new ImageSelector(LIST_IMAGE_PX, PLAY_IMAGE_PX, NOTIFICATION_IMAGE_PX),
+                IMAGE_FIELDS, ARTIST_FIELDS, TRACK_FIELDS);
+    }
+
+    // load -- fixture file as a string
+    public static String load (String name) {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalStateException("missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[8192];
+            int                   count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toString("UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to read fixture " + name, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    public static ArtistsPager parseArtists (Gson gson, String json) {
+        return gson.fromJson(json, ArtistsPager.class);
+    }
+
+    public static Tracks parseTracks (Gson gson, String json) {
+        return gson.fromJson(json, Tracks.class);
+    }
+}
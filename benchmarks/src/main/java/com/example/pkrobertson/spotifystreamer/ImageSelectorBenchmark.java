@@ -0,0 +1,62 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageSelectorBenchmark - picking image variants for every artist and track in the fixtures,
+ *     once per target size
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageSelectorBenchmark {
+
+    private ImageSelector          mySelector;
+    private List<Fixtures.Artist>  myArtists;
+    private List<Fixtures.Track>   myTracks;
+
+    @Setup
+    public void setup () {
+        Gson gson  = new Gson();
+        mySelector = new ImageSelector(Fixtures.LIST_IMAGE_PX, Fixtures.PLAY_IMAGE_PX,
+                Fixtures.NOTIFICATION_IMAGE_PX);
+        myArtists  = Fixtures.parseArtists(gson, Fixtures.load(Fixtures.SEARCH_ARTISTS)).artists.items;
+        myTracks   = Fixtures.parseTracks(gson, Fixtures.load(Fixtures.TOP_TRACKS)).tracks;
+    }
+
+    @Benchmark
+    public void artistListImages (Blackhole blackhole) {
+        for (int i = 0; i < myArtists.size(); i++) {
+            blackhole.consume(mySelector.selectArtistListImage(myArtists.get(i).images,
+                    Fixtures.IMAGE_FIELDS));
+        }
+    }
+
+    @Benchmark
+    public void trackImages (Blackhole blackhole) {
+        for (int i = 0; i < myTracks.size(); i++) {
+            List<Fixtures.Image> images = myTracks.get(i).album.images;
+            blackhole.consume(mySelector.selectTrackListImage(images, Fixtures.IMAGE_FIELDS));
+            blackhole.consume(mySelector.selectTrackPlayImage(images, Fixtures.IMAGE_FIELDS));
+        }
+    }
+}
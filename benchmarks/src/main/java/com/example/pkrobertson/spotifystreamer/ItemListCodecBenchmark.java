@@ -0,0 +1,100 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ItemListCodecBenchmark - saving and restoring the artist and top tracks lists, what the
+ *     fragments do on every configuration change
+ *
+ *     the "synthetic" benchmarks use ItemListSizes lists of 10, 100 and 1000 tracks, the
+ *     lengths its size table covers
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ItemListCodecBenchmark {
+
+    /**
+     * Synthetic - a synthetic track list of each length and its encoded form
+     */
+    @State(Scope.Thread)
+    public static class Synthetic {
+        @Param({ "10", "100", "1000" })
+        public int items;
+
+        private List<TopTrackItem> myTopTrackItems;
+        private byte[]             myEncodedTracks;
+
+        @Setup
+        public void setup () {
+            myTopTrackItems = ItemListSizes.buildTracks(items);
+            myEncodedTracks = ItemListCodec.encodeTracks(myTopTrackItems);
+        }
+    }
+
+    private List<ArtistItem>   myArtistItems;
+    private List<TopTrackItem> myTopTrackItems;
+    private byte[]             myEncodedArtists;
+    private byte[]             myEncodedTracks;
+
+    @Setup
+    public void setup () {
+        Gson gson = new Gson();
+        ItemMapper<Fixtures.Artist, Fixtures.Track, Fixtures.Image> mapper = Fixtures.newMapper();
+        myArtistItems    = mapper.buildArtistItems(
+                Fixtures.parseArtists(gson, Fixtures.load(Fixtures.SEARCH_ARTISTS)).artists.items);
+        myTopTrackItems  = mapper.buildTopTrackItems(
+                Fixtures.parseTracks(gson, Fixtures.load(Fixtures.TOP_TRACKS)).tracks);
+        myEncodedArtists = ItemListCodec.encodeArtists(myArtistItems);
+        myEncodedTracks  = ItemListCodec.encodeTracks(myTopTrackItems);
+    }
+
+    @Benchmark
+    public byte[] encodeArtists () {
+        return ItemListCodec.encodeArtists(myArtistItems);
+    }
+
+    @Benchmark
+    public List<ArtistItem> decodeArtists () {
+        return ItemListCodec.decodeArtists(myEncodedArtists);
+    }
+
+    @Benchmark
+    public byte[] encodeTracks () {
+        return ItemListCodec.encodeTracks(myTopTrackItems);
+    }
+
+    @Benchmark
+    public List<TopTrackItem> decodeTracks () {
+        return ItemListCodec.decodeTracks(myEncodedTracks);
+    }
+
+    @Benchmark
+    public byte[] encodeSyntheticTracks (Synthetic synthetic) {
+        return ItemListCodec.encodeTracks(synthetic.myTopTrackItems);
+    }
+
+    @Benchmark
+    public List<TopTrackItem> decodeSyntheticTracks (Synthetic synthetic) {
+        return ItemListCodec.decodeTracks(synthetic.myEncodedTracks);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ItemListSizes - synthetic top track lists of any length and the size they take saved with
+ *     putParcelableArrayList and with ItemListCodec
+ *
+ *     the lists look like a long run of Spotify results: 10 tracks per artist name, 4 tracks
+ *     per album sharing the album images, and i.scdn.co / p.scdn.co URLs with 40 character
+ *     ids. The Parcel size is worked out from Parcel's wire format, as Parcel itself only runs
+ *     on a device: writeParcelableArrayList writes the list length, then for each item its
+ *     class name and the fields written by the old TopTrackItem.writeToParcel.
+ *
+ *     run it with "gradle :benchmarks:itemListSizes", the encode and decode times for the
+ *     same lists come from ItemListCodecBenchmark
+ *
+ *     this class is used by ItemListCodecBenchmark
+ *
+ */
+public class ItemListSizes {
+
+    private static final String IMAGE_PREFIX   = "https://i.scdn.co/image/";
+    private static final String PREVIEW_PREFIX = "https://p.scdn.co/mp3-preview/";
+    private static final String ITEM_CLASS     = TopTrackItem.class.getName();
+
+    private static final int TRACKS_PER_ARTIST = 10;
+    private static final int TRACKS_PER_ALBUM  = 4;
+    private static final int ID_LENGTH         = 40;
+
+    private static final int[] SIZES = { 10, 100, 1000 };
+
+    private ItemListSizes () {
+    }
+
+    // buildTracks -- synthetic list of count tracks, the same for every call
+    public static List<TopTrackItem> buildTracks (int count) {
+        Random                  random = new Random(count);
+        ArrayList<TopTrackItem> result = new ArrayList<TopTrackItem>(count);
+
+        String listImageURL = null;
+        String playImageURL = null;
+        for (int i = 0; i < count; i++) {
+            if ((i % TRACKS_PER_ALBUM) == 0) {
+                listImageURL = IMAGE_PREFIX + randomId(random);
+                playImageURL = IMAGE_PREFIX + randomId(random);
+            }
+            result.add(new TopTrackItem(
+                    "Artist Name " + (i / TRACKS_PER_ARTIST),
+                    "Track Name " + i,
+                    "Album Name " + (i / TRACKS_PER_ALBUM),
+                    listImageURL,
+                    playImageURL,
+                    PREVIEW_PREFIX + randomId(random)));
+        }
+        return result;
+    }
+
+    // parcelSize -- bytes writeParcelableArrayList would use for the list
+    public static int parcelSize (List<TopTrackItem> topTrackItems) {
+        int size = 4;
+        for (TopTrackItem topTrackItem : topTrackItems) {
+            size += parcelStringSize(ITEM_CLASS);
+            size += parcelStringSize(topTrackItem.topTrackArtistName);
+            size += parcelStringSize(topTrackItem.topTrackName);
+            size += parcelStringSize(topTrackItem.topTrackAlbumName);
+            size += parcelStringSize(topTrackItem.topTrackListImageURL);
+            size += parcelStringSize(topTrackItem.topTrackPlayImageURL);
+            size += parcelStringSize(topTrackItem.topTrackAudioURL);
+            size += 4;  // writeByte takes a whole int in a Parcel
+        }
+        return size;
+    }
+
+    // parcelStringSize -- length int, UTF-16 chars and a 0 char, padded to 4 bytes
+    private static int parcelStringSize (String value) {
+        if (value == null) {
+            return 4;
+        }
+        return 4 + (((value.length() + 1) * 2 + 3) & ~3);
+    }
+
+    private static String randomId (Random random) {
+        StringBuilder id = new StringBuilder(ID_LENGTH);
+        for (int i = 0; i < ID_LENGTH; i++) {
+            id.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return id.toString();
+    }
+
+    public static void main (String[] args) {
+        System.out.println(String.format("%6s %10s %10s %6s", "items", "parcel", "codec", "ratio"));
+        for (int count : SIZES) {
+            List<TopTrackItem> topTrackItems = buildTracks(count);
+            int parcel = parcelSize(topTrackItems);
+            int codec  = ItemListCodec.encodeTracks(topTrackItems).length;
+            System.out.println(String.format("%6d %9dB %9dB %5d%%",
+                    count, parcel, codec, Math.round(codec * 100.0 / parcel)));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ListDiffBinds - rows bound by a full refresh against rows bound by a ListDiff update, for
+ *     the list updates DiffingListAdapter sees most
+ *
+ *     a full refresh rebinds every row on screen. A diffed update binds only the inserted and
+ *     changed rows that are on screen once it is applied, moved and removed rows are not bound
+ *     again. VISIBLE_ROWS rows are on screen, scrolled to the top. The keys and content checks
+ *     are those of ArtistListAdapter and TopTracksListAdapter. Artists are synthetic, tracks
+ *     come from fixtures/top-tracks.json.
+ *
+ *     it also times ListDiff.compute on SHUFFLE_ROWS shuffled rows, which DiffingListAdapter
+ *     runs off the main thread
+ *
+ *     run it with "gradle :benchmarks:listDiffBinds"
+ *
+ */
+public class ListDiffBinds {
+
+    private static final String IMAGE_PREFIX = "https://i.scdn.co/image/";
+
+    private static final int VISIBLE_ROWS = 8;
+
+    private static final int SHUFFLE_ROWS  = 200;
+    private static final int WARMUP_RUNS   = 5000;
+    private static final int MEASURED_RUNS = 1000;
+
+    // keys and content checks as in ArtistListAdapter
+    private static final ListDiff.Keys<ArtistItem> ARTIST_KEYS = new ListDiff.Keys<ArtistItem>() {
+        @Override
+        public String getItemKey (ArtistItem artistItem) {
+            return artistItem.artistSpotifyId;
+        }
+
+        @Override
+        public boolean areContentsTheSame (ArtistItem oldItem, ArtistItem newItem) {
+            return equalStrings(oldItem.artistName, newItem.artistName) &&
+                    equalStrings(oldItem.artistImageURL, newItem.artistImageURL);
+        }
+    };
+
+    // keys and content checks as in TopTracksListAdapter
+    private static final ListDiff.Keys<TopTrackItem> TRACK_KEYS = new ListDiff.Keys<TopTrackItem>() {
+        @Override
+        public String getItemKey (TopTrackItem topTrackItem) {
+            return (topTrackItem.topTrackArtistName + '\u0000' +
+                    topTrackItem.topTrackName + '\u0000' +
+                    topTrackItem.topTrackAlbumName);
+        }
+
+        @Override
+        public boolean areContentsTheSame (TopTrackItem oldItem, TopTrackItem newItem) {
+            return equalStrings(oldItem.topTrackListImageURL, newItem.topTrackListImageURL);
+        }
+    };
+
+    /**
+     * Rows - the rows of a list view, changed the way the adapter notifications change them.
+     *     Each row is true when it must be bound again.
+     */
+    private static class Rows implements ListDiff.Receiver {
+        final List<Boolean> rows;
+
+        Rows (int count) {
+            rows = new ArrayList<Boolean>(Collections.nCopies(count, Boolean.FALSE));
+        }
+
+        @Override
+        public void onInserted (int position) {
+            rows.add(position, Boolean.TRUE);
+        }
+
+        @Override
+        public void onRemoved (int position) {
+            rows.remove(position);
+        }
+
+        @Override
+        public void onMoved (int fromPosition, int toPosition) {
+            rows.add(toPosition, rows.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged (int position) {
+            rows.set(position, Boolean.TRUE);
+        }
+
+        // visibleBinds -- rows on screen that are bound again
+        int visibleBinds () {
+            int binds = 0;
+            for (int i = 0; i < Math.min(VISIBLE_ROWS, rows.size()); i++) {
+                if (rows.get(i)) {
+                    binds++;
+                }
+            }
+            return binds;
+        }
+    }
+
+    private ListDiffBinds () {
+    }
+
+    // buildArtists -- synthetic artists first to first + count - 1, as an artist search returns them
+    private static List<ArtistItem> buildArtists (int first, int count) {
+        ArrayList<ArtistItem> result = new ArrayList<ArtistItem>(count);
+        for (int i = first; i < first + count; i++) {
+            result.add(new ArtistItem("Artist Name " + i, "artist" + i, IMAGE_PREFIX + "artist" + i));
+        }
+        return result;
+    }
+
+    // withListImage -- the same track with another list image
+    private static TopTrackItem withListImage (TopTrackItem topTrackItem, String listImageURL) {
+        return new TopTrackItem(
+                topTrackItem.topTrackArtistName,
+                topTrackItem.topTrackName,
+                topTrackItem.topTrackAlbumName,
+                listImageURL,
+                topTrackItem.topTrackPlayImageURL,
+                topTrackItem.topTrackAudioURL);
+    }
+
+    // renamed -- a track that is not in the fixture, as another country's top tracks have
+    private static TopTrackItem renamed (TopTrackItem topTrackItem, int number) {
+        return new TopTrackItem(
+                topTrackItem.topTrackArtistName,
+                "Other Track " + number,
+                topTrackItem.topTrackAlbumName,
+                topTrackItem.topTrackListImageURL,
+                topTrackItem.topTrackPlayImageURL,
+                topTrackItem.topTrackAudioURL);
+    }
+
+    // printBinds -- diff the lists and print the binds of a full refresh and of the diff
+    private static <T> void printBinds (String name, List<T> oldItems, List<T> newItems, ListDiff.Keys<T> keys) {
+        ListDiff diff = ListDiff.compute(oldItems, newItems, keys);
+        Rows     rows = new Rows(oldItems.size());
+        diff.dispatch(rows);
+
+        System.out.println(String.format("%-44s %8d %8d   inserted=%d|removed=%d|moved=%d|changed=%d",
+                name, Math.min(VISIBLE_ROWS, newItems.size()), rows.visibleBinds(),
+                diff.getInsertCount(), diff.getRemoveCount(), diff.getMoveCount(), diff.getChangeCount()));
+    }
+
+    // computeUs -- median ListDiff.compute time for SHUFFLE_ROWS artists in a new random order
+    private static double computeUs () {
+        List<ArtistItem> oldItems = buildArtists(0, SHUFFLE_ROWS);
+        List<ArtistItem> newItems = new ArrayList<ArtistItem>(oldItems);
+        Random           random   = new Random(SHUFFLE_ROWS);
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            Collections.shuffle(newItems, random);
+            ListDiff.compute(oldItems, newItems, ARTIST_KEYS);
+        }
+
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            Collections.shuffle(newItems, random);
+            times[i] = ListDiff.compute(oldItems, newItems, ARTIST_KEYS).getComputeNs();
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2] / 1000.0;
+    }
+
+    private static boolean equalStrings (String lhs, String rhs) {
+        return (lhs == null) ? (rhs == null) : lhs.equals(rhs);
+    }
+
+    public static void main (String[] args) {
+        List<TopTrackItem> tracks = Fixtures.newMapper().buildTopTrackItems(
+                Fixtures.parseTracks(new Gson(), Fixtures.load(Fixtures.TOP_TRACKS)).tracks);
+
+        System.out.println(String.format("%-44s %8s %8s", "update, " + VISIBLE_ROWS + " rows on screen", "refresh", "diff"));
+
+        // the next page of 20 is appended below the first 10
+        printBinds("next page (10 -> 30 artists)",
+                buildArtists(0, 10), buildArtists(0, 30), ARTIST_KEYS);
+
+        // a shorter query's cached results are shown first, the network result keeps 7 of them
+        // and adds 3 it ranks between them
+        List<ArtistItem> cached  = buildArtists(0, 10);
+        List<ArtistItem> network = new ArrayList<ArtistItem>(cached.subList(0, 7));
+        network.add(2, buildArtists(10, 1).get(0));
+        network.add(5, buildArtists(11, 1).get(0));
+        network.add(9, buildArtists(12, 1).get(0));
+        printBinds("prefix cache -> network, 7 of 10 kept", cached, network, ARTIST_KEYS);
+
+        // revalidated top tracks where two albums got new images, one row is below the screen
+        List<TopTrackItem> revalidated = new ArrayList<TopTrackItem>(tracks);
+        revalidated.set(3, withListImage(tracks.get(3), IMAGE_PREFIX + "revalidated3"));
+        revalidated.set(9, withListImage(tracks.get(9), IMAGE_PREFIX + "revalidated9"));
+        printBinds("revalidated tracks, 2 images changed", tracks, revalidated, TRACK_KEYS);
+
+        // another country keeps 6 of the tracks in a new order, and has 4 others
+        List<TopTrackItem> country = new ArrayList<TopTrackItem>();
+        country.add(tracks.get(1));
+        country.add(tracks.get(0));
+        country.add(tracks.get(2));
+        country.add(renamed(tracks.get(6), 1));
+        country.add(tracks.get(4));
+        country.add(tracks.get(3));
+        country.add(tracks.get(5));
+        country.add(renamed(tracks.get(7), 2));
+        country.add(renamed(tracks.get(8), 3));
+        country.add(renamed(tracks.get(9), 4));
+        printBinds("country change, 6 of 10 tracks kept", tracks, country, TRACK_KEYS);
+
+        System.out.println(String.format("ListDiff.compute, %d shuffled rows: %.1f us (median of %d)",
+                SHUFFLE_ROWS, computeUs(), MEASURED_RUNS));
+    }
+}
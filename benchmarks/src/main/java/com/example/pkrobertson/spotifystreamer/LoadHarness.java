@@ -0,0 +1,362 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoadHarness - drives the search, top tracks and preview pipeline against a Spotify web API
+ *     endpoint from many threads and reports throughput and latency percentiles per stage
+ *
+ *     each session does what a user does in the app: search for an artist, map the result
+ *     with ItemMapper, fetch and map the first artist's top tracks, then download the first
+ *     track's list image and preview clip. Search and top tracks times include parsing and
+ *     mapping, as in the search tasks. Calls are made once, without the app's retries, so
+ *     errors and 429 responses from the endpoint show up in the counts.
+ *
+ *     with no --endpoint a StandInServer is started in process, any StandInServer options
+ *     given (--latency-ms, --error-rate, ...) configure it
+ *
+ *     run it with "gradle :benchmarks:loadTest -PloadArgs='--concurrency 16 --duration-s 60'"
+ *
+ */
+public class LoadHarness {
+
+    // pipeline stages, a session is all of them in turn
+    private static final int STAGE_SEARCH     = 0;
+    private static final int STAGE_TOP_TRACKS = 1;
+    private static final int STAGE_IMAGE      = 2;
+    private static final int STAGE_PREVIEW    = 3;
+    private static final int STAGE_SESSION    = 4;
+
+    private static final String[] STAGE_NAMES = { "search", "topTracks", "image", "preview", "session" };
+
+    private static final int  HTTP_TOO_MANY_REQUESTS = 429;
+    private static final long NS_PER_MS              = 1000 * 1000;
+
+    /**
+     * Options - what to run, parsed from "--name value" arguments
+     */
+    public static class Options {
+        public String   endpoint    = null;     // null starts a stand-in server
+        public int      concurrency = 8;
+        public int      durationS   = 30;
+        public int      warmupS     = 5;
+        public String[] queries     = { "coldplay", "adele", "radiohead", "beatles", "daft punk" };
+        public String   country     = "US";
+        public boolean  images      = true;
+        public boolean  previews    = true;
+        public String   jsonFile    = null;
+
+        // parse -- read options, returns the arguments it did not know
+        public List<String> parse (String[] args) {
+            List<String> unknown = new ArrayList<String>();
+            for (int i = 0; i < args.length; i++) {
+                String name  = args[i];
+                String value = (i + 1 < args.length) ? args[i + 1] : null;
+                if ("--endpoint".equals(name)) {
+                    endpoint = value;
+                } else if ("--concurrency".equals(name)) {
+                    concurrency = Integer.parseInt(value);
+                } else if ("--duration-s".equals(name)) {
+                    durationS = Integer.parseInt(value);
+                } else if ("--warmup-s".equals(name)) {
+                    warmupS = Integer.parseInt(value);
+                } else if ("--queries".equals(name)) {
+                    queries = value.split(",");
+                } else if ("--country".equals(name)) {
+                    country = value;
+                } else if ("--images".equals(name)) {
+                    images = Boolean.parseBoolean(value);
+                } else if ("--previews".equals(name)) {
+                    previews = Boolean.parseBoolean(value);
+                } else if ("--json".equals(name)) {
+                    jsonFile = value;
+                } else {
+                    // may be meant for the stand-in server, keep the value with it
+                    unknown.add(name);
+                    if ( (value != null) && !value.startsWith("--") ) {
+                        unknown.add(value);
+                        i++;
+                    }
+                    continue;
+                }
+                i++;
+            }
+            return unknown;
+        }
+    }
+
+    // StageStats -- latencies and failures of one stage, recorded by all workers
+    private static class StageStats {
+        private long[] myLatenciesNs = new long[1024];
+        private int    myCount;
+        private long   myErrorCount;
+        private long   myRateLimitCount;
+        private long   myBytes;
+
+        synchronized void record (long latencyNs, long bytes) {
+            if (myCount == myLatenciesNs.length) {
+                myLatenciesNs = Arrays.copyOf(myLatenciesNs, myCount * 2);
+            }
+            myLatenciesNs[myCount++] = latencyNs;
+            myBytes += bytes;
+        }
+
+        synchronized void recordError (int status) {
+            if (status == HTTP_TOO_MANY_REQUESTS) {
+                myRateLimitCount++;
+            } else {
+                myErrorCount++;
+            }
+        }
+
+        synchronized void reset () {
+            myCount          = 0;
+            myErrorCount     = 0;
+            myRateLimitCount = 0;
+            myBytes          = 0;
+        }
+
+        // toJson -- counts, throughput and percentiles in ms over "seconds" of load
+        synchronized JsonObject toJson (double seconds) {
+            long[] sorted = Arrays.copyOf(myLatenciesNs, myCount);
+            Arrays.sort(sorted);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("count", myCount);
+            result.addProperty("errors", myErrorCount);
+            result.addProperty("rateLimited", myRateLimitCount);
+            result.addProperty("perSecond", round(myCount / seconds));
+            result.addProperty("kbytesPerSecond", round(myBytes / 1024.0 / seconds));
+            result.addProperty("p50Ms", percentileMs(sorted, 0.50));
+            result.addProperty("p90Ms", percentileMs(sorted, 0.90));
+            result.addProperty("p99Ms", percentileMs(sorted, 0.99));
+            result.addProperty("maxMs", percentileMs(sorted, 1.0));
+            return result;
+        }
+
+        private static double percentileMs (long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return round(sorted[Math.max(0, rank - 1)] / (double) NS_PER_MS);
+        }
+
+        private static double round (double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+
+    // StageException -- a stage failed, with the HTTP status or 0 for an I/O error
+    private static class StageException extends Exception {
+        final int status;
+
+        StageException (int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final Options      myOptions;
+    private final String       myEndpoint;
+    private final OkHttpClient myHttpClient = new OkHttpClient();
+    private final Gson         myGson       = new Gson();
+    private final ItemMapper<Fixtures.Artist, Fixtures.Track, Fixtures.Image> myMapper = Fixtures.newMapper();
+    private final StageStats[] myStats      = new StageStats[STAGE_NAMES.length];
+
+    private volatile boolean myRunning = true;
+
+    public LoadHarness (Options options, String endpoint) {
+        myOptions  = options;
+        myEndpoint = endpoint;
+        for (int i = 0; i < myStats.length; i++) {
+            myStats[i] = new StageStats();
+        }
+
+        // one pooled connection per worker, as SpotifyClient keeps for the app
+        myHttpClient.setConnectionPool(new ConnectionPool(options.concurrency, 5 * 60 * 1000));
+        myHttpClient.setConnectTimeout(15, TimeUnit.SECONDS);
+        myHttpClient.setReadTimeout(20, TimeUnit.SECONDS);
+    }
+
+    // run -- warm up, then load the endpoint for the configured time and return the report
+    public JsonObject run () throws InterruptedException {
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < myOptions.concurrency; i++) {
+            final Random random = new Random(i);
+            Thread worker = new Thread("LoadHarness-" + i) {
+                @Override
+                public void run () {
+                    while (myRunning) {
+                        runSession(random);
+                    }
+                }
+            };
+            workers.add(worker);
+            worker.start();
+        }
+
+        Thread.sleep(myOptions.warmupS * 1000L);
+        for (StageStats stats : myStats) {
+            stats.reset();
+        }
+        long startNs = System.nanoTime();
+        Thread.sleep(myOptions.durationS * 1000L);
+        double seconds = (System.nanoTime() - startNs) / 1e9;
+
+        myRunning = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        JsonObject report = new JsonObject();
+        report.addProperty("endpoint", myEndpoint);
+        report.addProperty("concurrency", myOptions.concurrency);
+        report.addProperty("seconds", StageStats.round(seconds));
+        JsonObject stages = new JsonObject();
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            stages.add(STAGE_NAMES[i], myStats[i].toJson(seconds));
+        }
+        report.add("stages", stages);
+        return report;
+    }
+
+    // runSession -- one pass through the pipeline, stops at the first failed stage
+    private void runSession (Random random) {
+        long sessionStart = System.nanoTime();
+        try {
+            String query = myOptions.queries[random.nextInt(myOptions.queries.length)];
+
+            // search and map, as ArtistSearchTask does
+            long stageStart = System.nanoTime();
+            byte[] body = get(STAGE_SEARCH, myEndpoint + "/search?q=" + URLEncoder.encode(query, "UTF-8") +
+                    "&type=artist&offset=0&limit=20");
+            List<ArtistItem> artistItems = myMapper.buildArtistItems(
+                    myGson.fromJson(new String(body, "UTF-8"), Fixtures.ArtistsPager.class).artists.items);
+            myStats[STAGE_SEARCH].record(System.nanoTime() - stageStart, body.length);
+            if (artistItems.isEmpty()) {
+                return;
+            }
+
+            // top tracks of the first artist, as TopTracksSearchTask does
+            stageStart = System.nanoTime();
+            body = get(STAGE_TOP_TRACKS, myEndpoint + "/artists/" + artistItems.get(0).artistSpotifyId +
+                    "/top-tracks?country=" + myOptions.country);
+            List<TopTrackItem> topTrackItems = myMapper.buildTopTrackItems(
+                    myGson.fromJson(new String(body, "UTF-8"), Fixtures.Tracks.class).tracks);
+            myStats[STAGE_TOP_TRACKS].record(System.nanoTime() - stageStart, body.length);
+
+            TopTrackItem topTrackItem = topTrackItems.isEmpty() ? null : topTrackItems.get(0);
+            if ( myOptions.images && (topTrackItem != null) && (topTrackItem.topTrackListImageValid) ) {
+                stageStart = System.nanoTime();
+                body = get(STAGE_IMAGE, topTrackItem.topTrackListImageURL);
+                myStats[STAGE_IMAGE].record(System.nanoTime() - stageStart, body.length);
+            }
+            if ( myOptions.previews && (topTrackItem != null) && (topTrackItem.topTrackAudioValid) ) {
+                stageStart = System.nanoTime();
+                body = get(STAGE_PREVIEW, topTrackItem.topTrackAudioURL);
+                myStats[STAGE_PREVIEW].record(System.nanoTime() - stageStart, body.length);
+            }
+            myStats[STAGE_SESSION].record(System.nanoTime() - sessionStart, 0);
+        } catch (StageException e) {
+            myStats[STAGE_SESSION].recordError(e.status);
+        } catch (IOException e) {
+            myStats[STAGE_SESSION].recordError(0);
+        }
+    }
+
+    // get -- response body of a successful GET, failures are counted against the stage
+    private byte[] get (int stage, String url) throws StageException {
+        Request request = new Request.Builder().url(url).build();
+        try {
+            Response response = myHttpClient.newCall(request).execute();
+            byte[]   body     = response.body().bytes();
+            if (!response.isSuccessful()) {
+                myStats[stage].recordError(response.code());
+                throw new StageException(response.code(), url);
+            }
+            return body;
+        } catch (IOException e) {
+            myStats[stage].recordError(0);
+            throw new StageException(0, e.toString());
+        }
+    }
+
+    // format -- the report as a table, one row per stage
+    private static String format (JsonObject report) {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%s, %d workers, %.1fs%n", report.get("endpoint").getAsString(),
+                report.get("concurrency").getAsInt(), report.get("seconds").getAsDouble()));
+        result.append(String.format("%-10s %8s %8s %8s %9s %9s %9s %9s %9s %10s%n", "stage", "count",
+                "errors", "429s", "per sec", "p50 ms", "p90 ms", "p99 ms", "max ms", "KB/s"));
+
+        JsonObject stages = report.getAsJsonObject("stages");
+        for (String name : STAGE_NAMES) {
+            JsonObject stage = stages.getAsJsonObject(name);
+            result.append(String.format("%-10s %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %10.1f%n", name,
+                    stage.get("count").getAsLong(), stage.get("errors").getAsLong(),
+                    stage.get("rateLimited").getAsLong(), stage.get("perSecond").getAsDouble(),
+                    stage.get("p50Ms").getAsDouble(), stage.get("p90Ms").getAsDouble(),
+                    stage.get("p99Ms").getAsDouble(), stage.get("maxMs").getAsDouble(),
+                    stage.get("kbytesPerSecond").getAsDouble()));
+        }
+        return result.toString();
+    }
+
+    public static void main (String[] args) throws Exception {
+        Options options = new Options();
+        List<String> serverArgs = options.parse(args);
+
+        StandInServer server   = null;
+        String        endpoint = options.endpoint;
+        if (endpoint == null) {
+            StandInServer.Options serverOptions = new StandInServer.Options();
+            serverOptions.port = 0;
+            List<String> unknown = serverOptions.parse(serverArgs.toArray(new String[serverArgs.size()]));
+            if (!unknown.isEmpty()) {
+                System.err.println("unknown options " + unknown);
+                System.exit(2);
+            }
+            server = new StandInServer(serverOptions);
+            server.start();
+            endpoint = server.getEndpoint();
+            System.out.println("stand-in server [" + serverOptions + "]");
+        } else if (!serverArgs.isEmpty()) {
+            System.err.println("unknown options " + serverArgs);
+            System.exit(2);
+        }
+
+        JsonObject report = new LoadHarness(options, endpoint).run();
+        System.out.print(format(report));
+        if (server != null) {
+            System.out.println("stand-in server " + server.toString());
+            server.stop();
+        }
+
+        if (options.jsonFile != null) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(options.jsonFile), "UTF-8");
+            try {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MappingBenchmark - Spotify JSON to ArtistItem and TopTrackItem, with and without parsing,
+ *     what ArtistSearchTask and TopTracksSearchTask do off the main thread for every result
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+    private Gson                                              myGson;
+    private ItemMapper<Fixtures.Artist, Fixtures.Track, Fixtures.Image> myMapper;
+    private String                                            myArtistsJson;
+    private String                                            myTracksJson;
+    private Fixtures.ArtistsPager                             myArtists;
+    private Fixtures.Tracks                                   myTracks;
+
+    @Setup
+    public void setup () {
+        myGson        = new Gson();
+        myMapper      = Fixtures.newMapper();
+        myArtistsJson = Fixtures.load(Fixtures.SEARCH_ARTISTS);
+        myTracksJson  = Fixtures.load(Fixtures.TOP_TRACKS);
+        myArtists     = Fixtures.parseArtists(myGson, myArtistsJson);
+        myTracks      = Fixtures.parseTracks(myGson, myTracksJson);
+    }
+
+    @Benchmark
+    public List<ArtistItem> artistsFromJson () {
+        return myMapper.buildArtistItems(Fixtures.parseArtists(myGson, myArtistsJson).artists.items);
+    }
+
+    @Benchmark
+    public List<TopTrackItem> topTracksFromJson () {
+        return myMapper.buildTopTrackItems(Fixtures.parseTracks(myGson, myTracksJson).tracks);
+    }
+
+    @Benchmark
+    public List<ArtistItem> artistsFromModels () {
+        return myMapper.buildArtistItems(myArtists.artists.items);
+    }
+
+    @Benchmark
+    public List<TopTrackItem> topTracksFromModels () {
+        return myMapper.buildTopTrackItems(myTracks.tracks);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlaybackQueueBenchmark - stepping through the top tracks queue as the next and previous
+ *     actions do, and the state checks made on every player event
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlaybackQueueBenchmark {
+
+    private PlaybackQueue myQueue;
+    private PlaybackState myState = PlaybackState.STATE_PLAYING;
+
+    @Setup
+    public void setup () {
+        myQueue = new PlaybackQueue();
+        myQueue.setTracks(Fixtures.newMapper().buildTopTrackItems(Fixtures.parseTracks(new Gson(),
+                Fixtures.load(Fixtures.TOP_TRACKS)).tracks), 0);
+    }
+
+    @Benchmark
+    public TopTrackItem next () {
+        myQueue.moveToNext();
+        return myQueue.getCurrent();
+    }
+
+    @Benchmark
+    public TopTrackItem previous () {
+        myQueue.moveToPrevious();
+        return myQueue.getCurrent();
+    }
+
+    @Benchmark
+    public TopTrackItem prepareNext () {
+        return myQueue.get(myQueue.getNextPosition());
+    }
+
+    @Benchmark
+    public PlayTracksState stateChange () {
+        // pause and resume, as the pause/play action does
+        PlaybackState next = (myState == PlaybackState.STATE_PLAYING) ?
+                PlaybackState.STATE_PAUSED : PlaybackState.STATE_PLAYING;
+        if (myState.canMoveTo(next)) {
+            myState = next;
+        }
+        return myState.toPlayTracksState();
+    }
+}
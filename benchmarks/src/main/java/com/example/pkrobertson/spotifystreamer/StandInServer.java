@@ -0,0 +1,517 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+/**
+ * StandInServer - local stand-in for the Spotify web API, so the network path can be measured
+ *     and regression tested without the real service
+ *
+ *     serves the fixture responses for /v1/search and /v1/artists/{id}/top-tracks in the web
+ *     API's format, with image and preview URLs rewritten to point back at this server. Images
+ *     are JPEGs of the size the fixture says, previews are 30 second WAV clips, so both can be
+ *     decoded and played by the app.
+ *
+ *     latency (with jitter), bandwidth, the rate of 5xx errors and the rate of 429 responses
+ *     with Retry-After are set by Options. Errors and 429s only apply to /v1 calls.
+ *
+ *     run it with "gradle :benchmarks:standInServer -PstandInArgs='--port 8080 --latency-ms 150'"
+ *     and build the app with -PspotifyEndpoint=http://10.0.2.2:8080/v1 to use it from an
+ *     emulator. LoadHarness starts one in process when no endpoint is given.
+ *
+ */
+public class StandInServer {
+
+    // placeholder for this server's base URL in the prepared responses
+    private static final String BASE = "{base}";
+
+    private static final String IMAGE_PATH   = "/image/";
+    private static final String PREVIEW_PATH = "/mp3-preview/";
+
+    private static final Pattern TOP_TRACKS = Pattern.compile("/v1/artists/([^/]+)/top-tracks");
+
+    // preview clips, 30 seconds of 8kHz 8 bit mono, about the size of a real preview
+    private static final int PREVIEW_SECONDS     = 30;
+    private static final int PREVIEW_SAMPLE_RATE = 8000;
+
+    private static final int CHUNK_BYTES = 8 * 1024;
+
+    /**
+     * Options - how the stand-in behaves, parsed from "--name value" arguments
+     */
+    public static class Options {
+        public int    port            = 8080;
+        public int    threads         = 32;
+        public long   latencyMs       = 0;
+        public long   jitterMs        = 0;
+        public long   bandwidthKbps   = 0;      // 0 is unlimited
+        public double errorRate       = 0;      // fraction of /v1 calls answered with 503
+        public double rateLimitRate   = 0;      // fraction of /v1 calls answered with 429
+        public int    retryAfterS     = 1;
+
+        // parse -- read options, returns the arguments it did not know
+        public List<String> parse (String[] args) {
+            List<String> unknown = new ArrayList<String>();
+            for (int i = 0; i < args.length; i++) {
+                String name  = args[i];
+                String value = (i + 1 < args.length) ? args[i + 1] : null;
+                if ("--port".equals(name)) {
+                    port = Integer.parseInt(value);
+                } else if ("--threads".equals(name)) {
+                    threads = Integer.parseInt(value);
+                } else if ("--latency-ms".equals(name)) {
+                    latencyMs = Long.parseLong(value);
+                } else if ("--jitter-ms".equals(name)) {
+                    jitterMs = Long.parseLong(value);
+                } else if ("--bandwidth-kbps".equals(name)) {
+                    bandwidthKbps = Long.parseLong(value);
+                } else if ("--error-rate".equals(name)) {
+                    errorRate = Double.parseDouble(value);
+                } else if ("--rate-limit-rate".equals(name)) {
+                    rateLimitRate = Double.parseDouble(value);
+                } else if ("--retry-after-s".equals(name)) {
+                    retryAfterS = Integer.parseInt(value);
+                } else {
+                    unknown.add(name);
+                    continue;
+                }
+                i++;
+            }
+            return unknown;
+        }
+
+        @Override
+        public String toString() {
+            return ("port=" + port +
+                    "|threads=" + threads +
+                    "|latencyMs=" + latencyMs +
+                    "|jitterMs=" + jitterMs +
+                    "|bandwidthKbps=" + bandwidthKbps +
+                    "|errorRate=" + errorRate +
+                    "|rateLimitRate=" + rateLimitRate +
+                    "|retryAfterS=" + retryAfterS);
+        }
+    }
+
+    private final Options         myOptions;
+    private final HttpServer      myServer;
+    private final ExecutorService myExecutor;
+    private final Random          myRandom = new Random();
+
+    // prepared responses, with BASE in place of the image and preview hosts
+    private final List<String> myArtists = new ArrayList<String>();
+    private final int          myArtistTotal;
+    private final String       myTopTracks;
+
+    // image sizes by image ID, and the bytes generated for each
+    private final Map<String, Integer> myImageSizes = new HashMap<String, Integer>();
+    private final Map<String, byte[]>  myImages     = new ConcurrentHashMap<String, byte[]>();
+    private final byte[]               myPreview;
+
+    // statistics
+    private final AtomicLong mySearchCount    = new AtomicLong();
+    private final AtomicLong myTopTracksCount = new AtomicLong();
+    private final AtomicLong myImageCount     = new AtomicLong();
+    private final AtomicLong myPreviewCount   = new AtomicLong();
+    private final AtomicLong myErrorCount     = new AtomicLong();
+    private final AtomicLong myRateLimitCount = new AtomicLong();
+    private final AtomicLong myBytesSent      = new AtomicLong();
+
+    public StandInServer (Options options) throws IOException {
+        myOptions = options;
+
+        JsonParser parser  = new JsonParser();
+        JsonObject artists = parser.parse(Fixtures.load(Fixtures.SEARCH_ARTISTS))
+                .getAsJsonObject().getAsJsonObject("artists");
+        for (JsonElement artist : artists.getAsJsonArray("items")) {
+            collectImageSizes(artist.getAsJsonObject().getAsJsonArray("images"));
+            myArtists.add(rewriteUrls(artist.toString()));
+        }
+        myArtistTotal = artists.get("total").getAsInt();
+
+        JsonObject topTracks = parser.parse(Fixtures.load(Fixtures.TOP_TRACKS)).getAsJsonObject();
+        for (JsonElement track : topTracks.getAsJsonArray("tracks")) {
+            collectImageSizes(track.getAsJsonObject().getAsJsonObject("album").getAsJsonArray("images"));
+        }
+        myTopTracks = rewriteUrls(topTracks.toString());
+        myPreview   = buildPreview();
+
+        // small responses would otherwise wait for the client's delayed ACK, adding ~40ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        myExecutor = Executors.newFixedThreadPool(options.threads);
+        myServer   = HttpServer.create(new InetSocketAddress(options.port), 0);
+        myServer.setExecutor(myExecutor);
+        myServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle (HttpExchange exchange) throws IOException {
+                try {
+                    route(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start () {
+        myServer.start();
+    }
+
+    public void stop () {
+        myServer.stop(0);
+        myExecutor.shutdownNow();
+    }
+
+    // getPort -- port actually bound, useful when started with port 0
+    public int getPort () {
+        return myServer.getAddress().getPort();
+    }
+
+    // getEndpoint -- web API endpoint to give clients, like https://api.spotify.com/v1
+    public String getEndpoint () {
+        return "http://127.0.0.1:" + getPort() + "/v1";
+    }
+
+    // route -- apply latency and injected failures, then answer the request
+    private void route (HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        sleep(myOptions.latencyMs + ((myOptions.jitterMs > 0) ? nextLong(myOptions.jitterMs + 1) : 0));
+
+        if (path.startsWith("/v1/")) {
+            double roll = nextDouble();
+            if (roll < myOptions.rateLimitRate) {
+                myRateLimitCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(myOptions.retryAfterS));
+                sendError(exchange, 429, "API rate limit exceeded");
+                return;
+            } else if (roll < myOptions.rateLimitRate + myOptions.errorRate) {
+                myErrorCount.incrementAndGet();
+                sendError(exchange, 503, "Service unavailable");
+                return;
+            }
+        }
+
+        Matcher topTracks = TOP_TRACKS.matcher(path);
+        if ("/v1/search".equals(path)) {
+            mySearchCount.incrementAndGet();
+            sendJson(exchange, buildSearchPage(exchange));
+        } else if (topTracks.matches()) {
+            myTopTracksCount.incrementAndGet();
+            sendJson(exchange, myTopTracks.replace(BASE, getBaseUrl(exchange)));
+        } else if (path.startsWith(IMAGE_PATH)) {
+            myImageCount.incrementAndGet();
+            byte[] image = getImage(path.substring(IMAGE_PATH.length()));
+            if (image == null) {
+                sendError(exchange, 404, "non existing id");
+            } else {
+                send(exchange, 200, "image/jpeg", image);
+            }
+        } else if (path.startsWith(PREVIEW_PATH)) {
+            myPreviewCount.incrementAndGet();
+            sendPreview(exchange);
+        } else {
+            sendError(exchange, 404, "Service not found");
+        }
+    }
+
+    // buildSearchPage -- a page of artists in the format of an artist search, the fixture
+    //     artists repeat to fill pages beyond the first
+    private String buildSearchPage (HttpExchange exchange) throws IOException {
+        Map<String, String> query  = parseQuery(exchange.getRequestURI().getRawQuery());
+        int                 offset = parseInt(query.get("offset"), 0);
+        int                 limit  = parseInt(query.get("limit"), 20);
+        String              q      = (query.get("q") != null) ? query.get("q") : "";
+        String              href   = getBaseUrl(exchange) + "/v1/search?query=" +
+                URLEncoder.encode(q, "UTF-8") + "&type=artist";
+
+        StringBuilder result = new StringBuilder(myArtists.size() * 1024);
+        result.append("{\"artists\":{\"href\":").append(quote(href + "&offset=" + offset + "&limit=" + limit))
+                .append(",\"items\":[");
+        int count = Math.max(0, Math.min(limit, myArtistTotal - offset));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(myArtists.get((offset + i) % myArtists.size()));
+        }
+        result.append("],\"limit\":").append(limit)
+                .append(",\"next\":").append((offset + limit < myArtistTotal) ?
+                        quote(href + "&offset=" + (offset + limit) + "&limit=" + limit) : "null")
+                .append(",\"offset\":").append(offset)
+                .append(",\"previous\":").append((offset > 0) ?
+                        quote(href + "&offset=" + Math.max(0, offset - limit) + "&limit=" + limit) : "null")
+                .append(",\"total\":").append(myArtistTotal).append("}}");
+        return result.toString().replace(BASE, getBaseUrl(exchange));
+    }
+
+    // sendPreview -- the preview clip, honouring a single "bytes=start-[end]" range
+    private void sendPreview (HttpExchange exchange) throws IOException {
+        String  range   = exchange.getRequestHeaders().getFirst("Range");
+        int     start   = 0;
+        int     end     = myPreview.length - 1;
+        boolean partial = false;
+        if ( (range != null) && range.startsWith("bytes=") && (range.indexOf(',') < 0) ) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = parseInt(bounds[0], 0);
+            end   = ( (bounds.length < 2) || bounds[1].isEmpty() ) ? end : Math.min(end, parseInt(bounds[1], end));
+            if (start > end) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + myPreview.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + end + "/" + myPreview.length);
+            partial = true;
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        byte[] body = myPreview;
+        if (partial) {
+            body = new byte[end - start + 1];
+            System.arraycopy(myPreview, start, body, 0, body.length);
+        }
+        send(exchange, partial ? 206 : 200, "audio/wav", body);
+    }
+
+    private void sendJson (HttpExchange exchange, String json) throws IOException {
+        send(exchange, 200, "application/json; charset=utf-8", json.getBytes("UTF-8"));
+    }
+
+    // sendError -- error body in the web API's format
+    private void sendError (HttpExchange exchange, int status, String message) throws IOException {
+        String json = "{\"error\":{\"status\":" + status + ",\"message\":" + quote(message) + "}}";
+        send(exchange, status, "application/json; charset=utf-8", json.getBytes("UTF-8"));
+    }
+
+    // send -- write the body in chunks, paced to the configured bandwidth
+    private void send (HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+
+        long         bytesPerSecond = myOptions.bandwidthKbps * 1000 / 8;
+        long         startNs        = System.nanoTime();
+        OutputStream out            = exchange.getResponseBody();
+        for (int sent = 0; sent < body.length; ) {
+            int count = Math.min(CHUNK_BYTES, body.length - sent);
+            out.write(body, sent, count);
+            sent += count;
+            myBytesSent.addAndGet(count);
+
+            if (bytesPerSecond > 0) {
+                // sleep until this many bytes are due at the configured rate
+                long dueMs     = sent * 1000L / bytesPerSecond;
+                long elapsedMs = (System.nanoTime() - startNs) / 1000000;
+                out.flush();
+                sleep(dueMs - elapsedMs);
+            }
+        }
+        out.close();
+    }
+
+    // getImage -- JPEG of the fixture size for this image ID, generated on first use
+    private byte[] getImage (String id) throws IOException {
+        byte[] image = myImages.get(id);
+        if (image == null) {
+            Integer size = myImageSizes.get(id);
+            if (size == null) {
+                return null;
+            }
+            image = buildImage(id, size);
+            myImages.put(id, image);
+        }
+        return image;
+    }
+
+    private static byte[] buildImage (String id, int size) throws IOException {
+        Random        random = new Random(id.hashCode());
+        BufferedImage image  = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D    g      = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xffffff)),
+                size, size, new Color(random.nextInt(0xffffff))));
+        g.fillRect(0, 0, size, size);
+        g.dispose();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", bytes);
+        return bytes.toByteArray();
+    }
+
+    // buildPreview -- a WAV clip of a slowly rising tone
+    private static byte[] buildPreview () {
+        int    samples = PREVIEW_SECONDS * PREVIEW_SAMPLE_RATE;
+        byte[] wav     = new byte[44 + samples];
+        writeAscii(wav, 0, "RIFF");
+        writeInt(wav, 4, 36 + samples);
+        writeAscii(wav, 8, "WAVEfmt ");
+        writeInt(wav, 16, 16);                      // format chunk size
+        writeShort(wav, 20, 1);                     // PCM
+        writeShort(wav, 22, 1);                     // mono
+        writeInt(wav, 24, PREVIEW_SAMPLE_RATE);
+        writeInt(wav, 28, PREVIEW_SAMPLE_RATE);     // bytes per second
+        writeShort(wav, 32, 1);                     // bytes per sample
+        writeShort(wav, 34, 8);                     // bits per sample
+        writeAscii(wav, 36, "data");
+        writeInt(wav, 40, samples);
+
+        double phase = 0;
+        for (int i = 0; i < samples; i++) {
+            double hz = 220 + 220.0 * i / samples;
+            phase += 2 * Math.PI * hz / PREVIEW_SAMPLE_RATE;
+            wav[44 + i] = (byte) (128 + 48 * Math.sin(phase));
+        }
+        return wav;
+    }
+
+    private void collectImageSizes (JsonArray images) {
+        for (JsonElement element : images) {
+            JsonObject image = element.getAsJsonObject();
+            String     url   = image.get("url").getAsString();
+            myImageSizes.put(url.substring(url.lastIndexOf('/') + 1),
+                    image.get("width").isJsonNull() ? 300 : image.get("width").getAsInt());
+        }
+    }
+
+    private static String rewriteUrls (String json) {
+        return json.replace("https://i.scdn.co/image/", BASE + IMAGE_PATH)
+                .replace("https://p.scdn.co/mp3-preview/", BASE + PREVIEW_PATH);
+    }
+
+    // getBaseUrl -- this server as the client reached it, so URLs work from an emulator too
+    private static String getBaseUrl (HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null) {
+            host = "127.0.0.1:" + exchange.getLocalAddress().getPort();
+        }
+        return "http://" + host;
+    }
+
+    private static Map<String, String> parseQuery (String rawQuery) {
+        Map<String, String> result = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return result;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int split = pair.indexOf('=');
+            try {
+                if (split > 0) {
+                    result.put(pair.substring(0, split), URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+                }
+            } catch (Exception e) {
+                // ignore malformed parameters, like the real service
+            }
+        }
+        return result;
+    }
+
+    private static int parseInt (String value, int fallback) {
+        try {
+            return (value != null) ? Integer.parseInt(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String quote (String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private synchronized double nextDouble () {
+        return myRandom.nextDouble();
+    }
+
+    private synchronized long nextLong (long bound) {
+        return (long) (myRandom.nextDouble() * bound);
+    }
+
+    private static void sleep (long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeAscii (byte[] buffer, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void writeInt (byte[] buffer, int offset, int value) {
+        writeShort(buffer, offset, value & 0xffff);
+        writeShort(buffer, offset + 2, value >>> 16);
+    }
+
+    private static void writeShort (byte[] buffer, int offset, int value) {
+        buffer[offset]     = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+    }
+
+    @Override
+    public String toString() {
+        return ("searches=" + mySearchCount.get() +
+                "|topTracks=" + myTopTracksCount.get() +
+                "|images=" + myImageCount.get() +
+                "|previews=" + myPreviewCount.get() +
+                "|errors=" + myErrorCount.get() +
+                "|rateLimited=" + myRateLimitCount.get() +
+                "|bytesSent=" + myBytesSent.get());
+    }
+
+    public static void main (String[] args) throws IOException {
+        Options options = new Options();
+        List<String> unknown = options.parse(args);
+        if (!unknown.isEmpty()) {
+            System.err.println("unknown options " + unknown);
+            System.exit(2);
+        }
+
+        final StandInServer server = new StandInServer(options);
+        server.start();
+        System.out.println("Spotify stand-in at " + server.getEndpoint() + " [" + options + "]");
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run () {
+                System.out.println(server.toString());
+                server.stop();
+            }
+        });
+    }
+}
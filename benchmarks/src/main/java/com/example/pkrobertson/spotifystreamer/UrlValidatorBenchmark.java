@@ -0,0 +1,52 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UrlValidatorBenchmark - validating the image and preview URLs Spotify returns, and
+ *     rebuilding one already validated as ItemListCodec does when decoding
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlValidatorBenchmark {
+
+    private String myImageUrl   = "https://i.scdn.co/image/3ae64830597c11f441564ca6b2d0d2c65fb45123";
+    private String myPreviewUrl = "https://p.scdn.co/mp3-preview/3d4bc1e3bb9bd2a2e3e3a14b1b6a4bd4d8f0f5d1?cid=null";
+    private String myBadUrl     = "not a url";
+
+    @Benchmark
+    public URI imageUrl () {
+        return UrlValidator.parseWebUrl(myImageUrl);
+    }
+
+    @Benchmark
+    public URI previewUrl () {
+        return UrlValidator.parseWebUrl(myPreviewUrl);
+    }
+
+    @Benchmark
+    public URI invalidUrl () {
+        return UrlValidator.parseWebUrl(myBadUrl);
+    }
+
+    @Benchmark
+    public URI readValidated () {
+        return UrlValidator.readValidated(myImageUrl, true);
+    }
+}
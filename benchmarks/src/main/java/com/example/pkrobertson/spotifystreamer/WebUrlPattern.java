@@ -0,0 +1,50 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.regex.Pattern;
+
+/**
+ * WebUrlPattern - a copy of android.util.Patterns.WEB_URL as shipped in API 23, the regex the
+ *     list adapters ran on every bind and UrlValidator ran before it moved to java.net.URI
+ *
+ *     kept here so the old check can be measured and compared on a plain JVM. Unlike
+ *     UrlValidator it accepts URLs without a scheme and rtsp URLs, and rejects hosts without a
+ *     top level domain such as "localhost".
+ *
+ *     this class is used by BindPathBenchmark and UrlValidatorAgreementTest
+ *
+ */
+public class WebUrlPattern {
+
+    private static final String GOOD_IRI_CHAR  = "a-zA-Z0-9\u00A0-\uD7FF\uF900-\uFDCF\uFDF0-\uFFEF";
+    private static final String GOOD_GTLD_CHAR = "a-zA-Z\u00A0-\uD7FF\uF900-\uFDCF\uFDF0-\uFFEF";
+
+    private static final String IP_ADDRESS =
+            "((25[0-5]|2[0-4][0-9]|[0-1][0-9]{2}|[1-9][0-9]|[1-9])\\.(25[0-5]|2[0-4]"
+            + "[0-9]|[0-1][0-9]{2}|[1-9][0-9]|[1-9]|0)\\.(25[0-5]|2[0-4][0-9]|[0-1]"
+            + "[0-9]{2}|[1-9][0-9]|[1-9]|0)\\.(25[0-5]|2[0-4][0-9]|[0-1][0-9]{2}"
+            + "|[1-9][0-9]|[0-9]))";
+
+    private static final String IRI =
+            "[" + GOOD_IRI_CHAR + "]([" + GOOD_IRI_CHAR + "\\-]{0,61}[" + GOOD_IRI_CHAR + "]){0,1}";
+    private static final String GTLD        = "[" + GOOD_GTLD_CHAR + "]{2,63}";
+    private static final String HOST_NAME   = "(" + IRI + "\\.)+" + GTLD;
+    private static final String DOMAIN_NAME = "(" + HOST_NAME + "|" + IP_ADDRESS + ")";
+
+    public static final Pattern WEB_URL = Pattern.compile(
+            "((?:(http|https|Http|Https|rtsp|Rtsp):\\/\\/(?:(?:[a-zA-Z0-9\\$\\-\\_\\.\\+\\!\\*\\'\\(\\)"
+            + "\\,\\;\\?\\&\\=]|(?:\\%[a-fA-F0-9]{2})){1,64}(?:\\:(?:[a-zA-Z0-9\\$\\-\\_"
+            + "\\.\\+\\!\\*\\'\\(\\)\\,\\;\\?\\&\\=]|(?:\\%[a-fA-F0-9]{2})){1,25})?\\@)?)?"
+            + "(?:" + DOMAIN_NAME + ")"
+            + "(?:\\:\\d{1,5})?)"
+            + "(\\/(?:(?:[" + GOOD_IRI_CHAR + "\\;\\/\\?\\:\\@\\&\\=\\#\\~"
+            + "\\-\\.\\+\\!\\*\\'\\(\\)\\,\\_])|(?:\\%[a-fA-F0-9]{2}))*)?"
+            + "(?:\\b|$)");
+
+    private WebUrlPattern () {
+    }
+
+    // isWebUrl -- the old check, a URL that is present and matches WEB_URL as a whole
+    public static boolean isWebUrl (String url) {
+        return (url != null) && WEB_URL.matcher(url).matches();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * UrlValidatorAgreementTest - UrlValidator against the WEB_URL regex it replaced, both must
+ *     give the same answer for every URL shape Spotify and the stand-in server hand out
+ *
+ *     the cases where they differ on purpose are checked too, so a change to either side shows
+ *     up here
+ *
+ */
+public class UrlValidatorAgreementTest {
+
+    private static final Pattern FIXTURE_URL = Pattern.compile("\"(https?://[^\"]*)\"");
+
+    // image and preview URLs as Spotify, the stand-in server and the emulator endpoint give them
+    private static final String[] SPOTIFY_URLS = {
+            "https://i.scdn.co/image/3ae64830597c11f441564ca6b2d0d2c65fb45123",
+            "http://i.scdn.co/image/3ae64830597c11f441564ca6b2d0d2c65fb45123",
+            "https://p.scdn.co/mp3-preview/3526f607bcd4f51ad0bc05f814579a42c2c0ba57",
+            "https://p.scdn.co/mp3-preview/3526f607bcd4f51ad0bc05f814579a42c2c0ba57?cid=null",
+            "https://mosaic.scdn.co/640/ab67616d0000b273a2f8a6b16b1f7b5e0c1e6f2b",
+            "http://10.0.2.2:8080/image/3ae64830597c11f441564ca6b2d0d2c65fb45123",
+            "http://10.0.2.2:8080/mp3-preview/3526f607bcd4f51ad0bc05f814579a42c2c0ba57?cid=null",
+            "http://127.0.0.1:8080/image/3ae64830597c11f441564ca6b2d0d2c65fb45123",
+    };
+
+    // values both reject
+    private static final String[] NOT_URLS = {
+            "",
+            "null",
+            "not a url",
+            "https://",
+            "https:///image/abc",
+            "mailto:someone@example.com",
+    };
+
+    private static boolean newCheck (String url) {
+        return UrlValidator.parseWebUrl(url) != null;
+    }
+
+    // fixtureUrls -- every URL in the recorded Spotify responses
+    private static List<String> fixtureUrls () {
+        List<String> result = new ArrayList<String>();
+        for (String name : new String[] { Fixtures.SEARCH_ARTISTS, Fixtures.TOP_TRACKS }) {
+            Matcher matcher = FIXTURE_URL.matcher(Fixtures.load(name));
+            while (matcher.find()) {
+                result.add(matcher.group(1));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void agreeOnFixtureUrls () {
+        List<String> urls = fixtureUrls();
+        assertTrue(urls.size() > 100);
+        for (String url : urls) {
+            assertTrue(url, WebUrlPattern.isWebUrl(url));
+            assertTrue(url, newCheck(url));
+        }
+    }
+
+    @Test
+    public void agreeOnSpotifyUrlShapes () {
+        for (String url : SPOTIFY_URLS) {
+            assertTrue(url, WebUrlPattern.isWebUrl(url));
+            assertTrue(url, newCheck(url));
+        }
+    }
+
+    @Test
+    public void agreeOnNonUrls () {
+        assertFalse(WebUrlPattern.isWebUrl(null));
+        assertNull(UrlValidator.parseWebUrl(null));
+        for (String value : NOT_URLS) {
+            assertFalse(value, WebUrlPattern.isWebUrl(value));
+            assertFalse(value, newCheck(value));
+        }
+    }
+
+    @Test
+    public void parsedUrlKeepsTheOriginalText () {
+        for (String url : SPOTIFY_URLS) {
+            assertNotNull(url, UrlValidator.parseWebUrl(url));
+            assertEquals(url, UrlValidator.parseWebUrl(url).toString());
+        }
+    }
+
+    // knownDifferences -- shapes Spotify does not return, where the two checks disagree
+    @Test
+    public void knownDifferences () {
+        // a scheme is required now, WEB_URL took a bare host and path
+        assertTrue(WebUrlPattern.isWebUrl("i.scdn.co/image/3ae64830597c11f441564ca6b2d0d2c65fb45123"));
+        assertFalse(newCheck("i.scdn.co/image/3ae64830597c11f441564ca6b2d0d2c65fb45123"));
+
+        // only http and https, WEB_URL also took rtsp
+        assertTrue(WebUrlPattern.isWebUrl("rtsp://p.scdn.co/mp3-preview/abc"));
+        assertFalse(newCheck("rtsp://p.scdn.co/mp3-preview/abc"));
+
+        // the scheme is matched ignoring case, WEB_URL only took "http", "Http" and the like
+        assertFalse(WebUrlPattern.isWebUrl("HTTPS://i.scdn.co/image/abc"));
+        assertTrue(newCheck("HTTPS://i.scdn.co/image/abc"));
+
+        // hosts without a top level domain are accepted now, WEB_URL rejected them
+        assertFalse(WebUrlPattern.isWebUrl("http://localhost:8080/image/abc"));
+        assertTrue(newCheck("http://localhost:8080/image/abc"));
+    }
+}
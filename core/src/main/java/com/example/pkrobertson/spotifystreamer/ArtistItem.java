@@ -0,0 +1,56 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.net.URI;
+
+/**
+ * ArtistItem - class that stores artist name, artist Spotify ID and artist image URL
+ *
+ *     this structure is built by ItemMapper and used by the ArtistListAdapter to show and
+ *     render artists
+ *
+ *     the image URL is validated once when the item is built, artistImageValid is false when
+ *     there is no usable image and ItemListCodec saves it along with the item. Items decoded
+ *     by ItemListCodec only parse the URL if getArtistImageUri is called.
+ *
+ */
+
+public class ArtistItem {
+    public final String artistName;
+    public final String artistSpotifyId;
+    public final String artistImageURL;
+
+    // true when the image URL is a valid web URL
+    public final boolean artistImageValid;
+
+    // parsed image URL, parsed on first use for decoded items
+    private volatile URI artistImageUri;
+
+    public ArtistItem (String artistName, String artistSpotifyId, String artistImageURL) {
+        this.artistName       = artistName;
+        this.artistSpotifyId  = artistSpotifyId;
+        this.artistImageURL   = artistImageURL;
+        this.artistImageUri   = UrlValidator.parseWebUrl(artistImageURL);
+        this.artistImageValid = (artistImageUri != null);
+    }
+
+    // constructor used when decoding saved items, the URL was validated before it was saved
+    ArtistItem (String artistName, String artistSpotifyId, String artistImageURL, boolean imageValid) {
+        this.artistName       = artistName;
+        this.artistSpotifyId  = artistSpotifyId;
+        this.artistImageURL   = artistImageURL;
+        this.artistImageValid = imageValid;
+    }
+
+    // getArtistImageUri -- validated image URL, null when the URL is missing or not valid
+    public URI getArtistImageUri () {
+        if (artistImageValid && (artistImageUri == null)) {
+            artistImageUri = UrlValidator.readValidated(artistImageURL, true);
+        }
+        return artistImageUri;
+    }
+
+    @Override
+    public String toString() {
+        return (artistName + "|" + artistSpotifyId + "|" + artistImageURL);
+    }
+}
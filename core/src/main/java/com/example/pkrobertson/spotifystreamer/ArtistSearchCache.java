@@ -0,0 +1,223 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * ArtistSearchCache - in-memory LRU cache of artist search results keyed by the normalized query
+ *     (case, whitespace and diacritics folded), with a time to live and a bound on the number
+ *     of queries kept
+ *
+ *     when a query extends a cached shorter query ("beatl" then "beatle"), getPrefixMatch answers
+ *     from the shorter query's results filtered locally while the network search refines them
+ *
+ *     expired results are no longer returned by get but are kept, within the LRU bound, so
+ *     getStale can still show them while Spotify is unavailable
+ *
+ *     this class is used by ArtistSearchTask
+ *
+ */
+public class ArtistSearchCache {
+
+    // cache limits used by the shared instance
+    private static final int  MAX_ENTRIES = 50;
+    private static final long TTL_MS      = 10 * 60 * 1000; // 10 minutes
+
+    private static final Pattern DIACRITICS  = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITE_SPACE = Pattern.compile("\\s+");
+
+    private static ArtistSearchCache sInstance;
+
+    // one cached search result
+    private static class CacheEntry {
+        final List<ArtistItem> artistItems;
+        final long             createdMs;
+
+        CacheEntry (List<ArtistItem> artistItems, long createdMs) {
+            this.artistItems = artistItems;
+            this.createdMs   = createdMs;
+        }
+    }
+
+    private final int  mMaxEntries;
+    private final long mTtlMs;
+
+    // access ordered map, the eldest entry is the least recently used
+    private final LinkedHashMap<String, CacheEntry> mEntries;
+
+    // statistics
+    private long mHitCount;
+    private long mPrefixHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mExpiredCount;
+
+    // getInstance -- returns the cache shared by all artist searches
+    public static synchronized ArtistSearchCache getInstance () {
+        if (sInstance == null) {
+            sInstance = new ArtistSearchCache(MAX_ENTRIES, TTL_MS);
+        }
+        return sInstance;
+    }
+
+    public ArtistSearchCache (int maxEntries, long ttlMs) {
+        mMaxEntries = maxEntries;
+        mTtlMs      = ttlMs;
+        mEntries    = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, CacheEntry> eldest) {
+                if (size() > mMaxEntries) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // normalizeQuery -- fold case, diacritics and white space so equivalent queries share a key
+    public static String normalizeQuery (String query) {
+        if (query == null) {
+            return "";
+        }
+        String result = Normalizer.normalize(query, Normalizer.Form.NFD);
+        result = DIACRITICS.matcher(result).replaceAll("");
+        result = WHITE_SPACE.matcher(result.trim()).replaceAll(" ");
+        return result.toLowerCase(Locale.US);
+    }
+
+    // get -- returns cached results for this exact (normalized) query or null
+    public synchronized ArrayList<ArtistItem> get (String query) {
+        CacheEntry entry = getEntry(normalizeQuery(query));
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return new ArrayList<ArtistItem>(entry.artistItems);
+    }
+
+    /**
+     * getPrefixMatch - looks for the longest cached query that this query extends and returns
+     *     its results filtered to artists whose name still matches, or null when there is none
+     */
+    public synchronized ArrayList<ArtistItem> getPrefixMatch (String query) {
+        String     key       = normalizeQuery(query);
+        String     bestKey   = null;
+        CacheEntry bestEntry = null;
+
+        for (Map.Entry<String, CacheEntry> candidate : mEntries.entrySet()) {
+            String candidateKey = candidate.getKey();
+
+            // expired entries are only kept for getStale
+            if ( !isExpired(candidate.getValue()) &&
+                    (candidateKey.length() < key.length()) && key.startsWith(candidateKey) &&
+                    ( (bestKey == null) || (candidateKey.length() > bestKey.length()) ) ) {
+                bestKey   = candidateKey;
+                bestEntry = candidate.getValue();
+            }
+        }
+
+        if (bestEntry == null) {
+            return null;
+        }
+        mPrefixHitCount++;
+
+        ArrayList<ArtistItem> result = new ArrayList<ArtistItem>();
+        String[] queryWords = key.split(" ");
+        for (ArtistItem artistItem : bestEntry.artistItems) {
+            if (nameMatches(normalizeQuery(artistItem.artistName), queryWords)) {
+                result.add(artistItem);
+            }
+        }
+        return result;
+    }
+
+    // getStale -- returns results for this exact query even if expired, or null
+    public synchronized ArrayList<ArtistItem> getStale (String query) {
+        CacheEntry entry = mEntries.get(normalizeQuery(query));
+        return (entry == null) ? null : new ArrayList<ArtistItem>(entry.artistItems);
+    }
+
+    // put -- save results for a query, replacing what was there
+    public synchronized void put (String query, List<ArtistItem> artistItems) {
+        mEntries.put(normalizeQuery(query),
+                new CacheEntry(new ArrayList<ArtistItem>(artistItems), System.currentTimeMillis()));
+    }
+
+    // clear -- drop all cached results
+    public synchronized void clear () {
+        mEntries.clear();
+    }
+
+    // getEntry -- find entry by normalized key, null when it has expired
+    private CacheEntry getEntry (String key) {
+        CacheEntry entry = mEntries.get(key);
+        if ( (entry != null) && isExpired(entry) ) {
+            mExpiredCount++;
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean isExpired (CacheEntry entry) {
+        return (System.currentTimeMillis() - entry.createdMs) > mTtlMs;
+    }
+
+    // nameMatches -- every query word must start one of the words in the artist name
+    private static boolean nameMatches (String name, String[] queryWords) {
+        String[] nameWords = name.split(" ");
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized long getHitCount () {
+        return mHitCount;
+    }
+
+    public synchronized long getPrefixHitCount () {
+        return mPrefixHitCount;
+    }
+
+    public synchronized long getMissCount () {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount () {
+        return mEvictionCount;
+    }
+
+    public synchronized long getExpiredCount () {
+        return mExpiredCount;
+    }
+
+    public synchronized int size () {
+        return mEntries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return ("size=" + mEntries.size() +
+                "|hits=" + mHitCount +
+                "|prefixHits=" + mPrefixHitCount +
+                "|misses=" + mMissCount +
+                "|evictions=" + mEvictionCount +
+                "|expired=" + mExpiredCount);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.List;
+
+/**
+ * ImageSelector - picks the Spotify image variant that best fits where it will be shown
+ *
+ *     Spotify returns each artist and album image in a few sizes (typically 640, 300 and 64
+ *     pixels). The best fit is the smallest variant that still covers the target view size in
+ *     pixels, so low density screens download and decode less while tablets stay sharp. When
+ *     no variant covers the target the largest one is used.
+ *
+ *     target sizes are passed in as pixels with screen density already applied, images are
+ *     read through ImageFields so any image model can be used
+ *
+ */
+public class ImageSelector {
+
+    // target sizes in pixels
+    private final int mListImagePx;
+    private final int mPlayImagePx;
+    private final int mNotificationImagePx;
+
+    /**
+     * ImageFields - read access to the URL and size of one image variant
+     */
+    public interface ImageFields<I> {
+        public String  getUrl (I image);
+        public Integer getWidth (I image);
+        public Integer getHeight (I image);
+    }
+
+    public ImageSelector (int listImagePx, int playImagePx, int notificationImagePx) {
+        mListImagePx         = listImagePx;
+        mPlayImagePx         = playImagePx;
+        mNotificationImagePx = notificationImagePx;
+    }
+
+    // selectArtistListImage -- image for a row in the artist list
+    public <I> String selectArtistListImage (List<I> images, ImageFields<I> fields) {
+        return selectBestFit(images, fields, mListImagePx);
+    }
+
+    // selectTrackListImage -- image for a row in the top tracks list, also used as the
+    //     notification large icon so it has to cover both
+    public <I> String selectTrackListImage (List<I> images, ImageFields<I> fields) {
+        return selectBestFit(images, fields, Math.max(mListImagePx, mNotificationImagePx));
+    }
+
+    // selectTrackPlayImage -- image for the now playing view
+    public <I> String selectTrackPlayImage (List<I> images, ImageFields<I> fields) {
+        return selectBestFit(images, fields, mPlayImagePx);
+    }
+
+    public int getListImagePx () {
+        return mListImagePx;
+    }
+
+    public int getNotificationImagePx () {
+        return mNotificationImagePx;
+    }
+
+    /**
+     * selectBestFit - returns the URL of the smallest image whose shorter side covers targetPx,
+     *     or the largest image when none do. Images without a size are only used as a last resort.
+     */
+    public static <I> String selectBestFit (List<I> images, ImageFields<I> fields, int targetPx) {
+        if (images == null) {
+            return null;
+        }
+
+        String bestFit   = null;  // smallest image covering the target
+        String largest   = null;  // fallback when nothing covers the target
+        String unsized   = null;  // fallback when no image has a size
+        int    bestSize  = Integer.MAX_VALUE;
+        int    largeSize = 0;
+
+        for (int i = 0; i < images.size(); i++) {
+            I       image  = images.get(i);
+            String  url    = fields.getUrl(image);
+            if (url == null) {
+                continue;
+            }
+            Integer width  = fields.getWidth(image);
+            Integer height = fields.getHeight(image);
+            if ((width == null) || (height == null)) {
+                if (unsized == null) {
+                    unsized = url;
+                }
+                continue;
+            }
+
+            int size = Math.min(width, height);
+            if ((size >= targetPx) && (size < bestSize)) {
+                bestSize = size;
+                bestFit  = url;
+            }
+            if ((largest == null) || (size > largeSize)) {
+                largeSize = size;
+                largest   = url;
+            }
+        }
+
+        if (bestFit != null) {
+            return bestFit;
+        } else if (largest != null) {
+            return largest;
+        } else {
+            return unsized;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ItemListCodec - compact byte[] form of ArtistItem and TopTrackItem lists, used instead of
+ *     putParcelableArrayList when fragments save their state
+ *
+ *     every distinct string is written once to a string table and items refer to it by index,
+ *     so artist and album names repeated across tracks cost one or two bytes each. URLs are
+ *     split after the last '/' so the CDN prefix shared by all images is stored only once.
+ *     URL validation results are stored too, so decoding does no URI work: a decoded item
+ *     parses a URL only if its URI is asked for.
+ *
+ */
+public class ItemListCodec {
+    private static final int  FORMAT_VERSION = 1;
+    private static final byte KIND_ARTISTS   = 1;
+    private static final byte KIND_TRACKS    = 2;
+
+    // StringTable -- assigns indices to strings while encoding, 0 is reserved for null
+    private static class StringTable {
+        final Map<String, Integer> indices = new HashMap<String, Integer>();
+        final List<String>         strings = new ArrayList<String>();
+
+        int indexOf (String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = indices.get(value);
+            if (index == null) {
+                strings.add(value);
+                index = strings.size();
+                indices.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    // encodeArtists -- compact form of an artist list
+    public static byte[] encodeArtists (List<ArtistItem> artistItems) {
+        StringTable table = new StringTable();
+        int[]       refs  = new int[artistItems.size() * 4];
+        byte[]      flags = new byte[artistItems.size()];
+
+        int r = 0;
+        for (int i = 0; i < artistItems.size(); i++) {
+            ArtistItem artistItem = artistItems.get(i);
+            refs[r++] = table.indexOf(artistItem.artistName);
+            refs[r++] = table.indexOf(artistItem.artistSpotifyId);
+            r = addUrl(table, refs, r, artistItem.artistImageURL);
+            flags[i] = (byte) ((artistItem.artistImageValid) ? 1 : 0);
+        }
+        return write(KIND_ARTISTS, table, refs, flags, 4);
+    }
+
+    // encodeTracks -- compact form of a track list
+    public static byte[] encodeTracks (List<TopTrackItem> topTrackItems) {
+        StringTable table = new StringTable();
+        int[]       refs  = new int[topTrackItems.size() * 9];
+        byte[]      flags = new byte[topTrackItems.size()];
+
+        int r = 0;
+        for (int i = 0; i < topTrackItems.size(); i++) {
+            TopTrackItem topTrackItem = topTrackItems.get(i);
+            refs[r++] = table.indexOf(topTrackItem.topTrackArtistName);
+            refs[r++] = table.indexOf(topTrackItem.topTrackName);
+            refs[r++] = table.indexOf(topTrackItem.topTrackAlbumName);
+            r = addUrl(table, refs, r, topTrackItem.topTrackListImageURL);
+            r = addUrl(table, refs, r, topTrackItem.topTrackPlayImageURL);
+            r = addUrl(table, refs, r, topTrackItem.topTrackAudioURL);
+            flags[i] = (byte) ((topTrackItem.topTrackListImageValid ? 1 : 0) |
+                               (topTrackItem.topTrackPlayImageValid ? 2 : 0) |
+                               (topTrackItem.topTrackAudioValid ? 4 : 0));
+        }
+        return write(KIND_TRACKS, table, refs, flags, 9);
+    }
+
+    // decodeArtists -- artist list from encodeArtists, or null if the data is not usable
+    public static ArrayList<ArtistItem> decodeArtists (byte[] data) {
+        try {
+            DataInputStream in      = new DataInputStream(new ByteArrayInputStream(data));
+            String[]        strings = readHeader(in, KIND_ARTISTS);
+            int             count   = readLength(in);
+
+            ArrayList<ArtistItem> result = new ArrayList<ArtistItem>(count);
+            for (int i = 0; i < count; i++) {
+                String artistName      = strings[readVarInt(in)];
+                String artistSpotifyId = strings[readVarInt(in)];
+                String artistImageURL  = readUrl(in, strings);
+                result.add(new ArtistItem(artistName, artistSpotifyId, artistImageURL,
+                        (in.readByte() & 1) != 0));
+            }
+            return result;
+        } catch (IOException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // decodeTracks -- track list from encodeTracks, or null if the data is not usable
+    public static ArrayList<TopTrackItem> decodeTracks (byte[] data) {
+        try {
+            DataInputStream in      = new DataInputStream(new ByteArrayInputStream(data));
+            String[]        strings = readHeader(in, KIND_TRACKS);
+            int             count   = readLength(in);
+
+            ArrayList<TopTrackItem> result = new ArrayList<TopTrackItem>(count);
+            for (int i = 0; i < count; i++) {
+                String topTrackArtistName   = strings[readVarInt(in)];
+                String topTrackName         = strings[readVarInt(in)];
+                String topTrackAlbumName    = strings[readVarInt(in)];
+                String topTrackListImageURL = readUrl(in, strings);
+                String topTrackPlayImageURL = readUrl(in, strings);
+                String topTrackAudioURL     = readUrl(in, strings);
+                result.add(new TopTrackItem(topTrackArtistName, topTrackName, topTrackAlbumName,
+                        topTrackListImageURL, topTrackPlayImageURL, topTrackAudioURL, in.readByte()));
+            }
+            return result;
+        } catch (IOException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // addUrl -- store a URL as prefix (up to the last '/') and remainder
+    private static int addUrl (StringTable table, int[] refs, int r, String url) {
+        int split = (url != null) ? url.lastIndexOf('/') + 1 : 0;
+        if (split <= 0) {
+            refs[r++] = 0;
+            refs[r++] = table.indexOf(url);
+        } else {
+            refs[r++] = table.indexOf(url.substring(0, split));
+            refs[r++] = table.indexOf(url.substring(split));
+        }
+        return r;
+    }
+
+    private static String readUrl (DataInputStream in, String[] strings) throws IOException {
+        String prefix = strings[readVarInt(in)];
+        String rest   = strings[readVarInt(in)];
+        return (prefix == null) ? rest : prefix + rest;
+    }
+
+    // write -- header, string table, then the references and flags of each item
+    private static byte[] write (byte kind, StringTable table, int[] refs, byte[] flags, int refsPerItem) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream      out   = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(kind);
+            writeVarInt(out, table.strings.size());
+            for (String value : table.strings) {
+                out.writeUTF(value);
+            }
+
+            writeVarInt(out, flags.length);
+            for (int i = 0; i < flags.length; i++) {
+                for (int j = 0; j < refsPerItem; j++) {
+                    writeVarInt(out, refs[i * refsPerItem + j]);
+                }
+                out.writeByte(flags[i]);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // readHeader -- check version and kind, returns the string table with null at index 0
+    private static String[] readHeader (DataInputStream in, byte kind) throws IOException {
+        if ((in.readByte() != FORMAT_VERSION) || (in.readByte() != kind)) {
+            throw new IOException("unknown format");
+        }
+        String[] strings = new String[readLength(in) + 1];
+        for (int i = 1; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    // readLength -- a string or item count, rejected when negative or longer than what is left,
+    //     every string and item takes at least one byte
+    private static int readLength (DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if ((length < 0) || (length > in.available())) {
+            throw new IOException("bad length " + length);
+        }
+        return length;
+    }
+
+    // writeVarInt -- 7 bits per byte, small indices take a single byte
+    private static void writeVarInt (DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt (DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("bad varint");
+    }
+}
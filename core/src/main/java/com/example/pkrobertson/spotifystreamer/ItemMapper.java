@@ -0,0 +1,102 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ItemMapper - maps Spotify artist search and top tracks results to ArtistItem and
+ *     TopTrackItem, picking the image variants with ImageSelector
+ *
+ *     the Spotify models are read through the small Fields interfaces, so the mapping does
+ *     not depend on the web API library and can be run against fixtures on any JVM
+ *
+ *     this class is used by ArtistSearchTask, TopTracksSearchTask and TopTracksPrefetcher
+ *     through SpotifyItems
+ *
+ */
+public class ItemMapper<A, T, I> {
+
+    private final ImageSelector                     myImageSelector;
+    private final ImageSelector.ImageFields<I>      myImageFields;
+    private final ArtistFields<A, I>                myArtistFields;
+    private final TrackFields<T, I>                 myTrackFields;
+
+    /**
+     * ArtistFields - read access to an artist in the search result
+     */
+    public interface ArtistFields<A, I> {
+        public String  getName (A artist);
+        public String  getId (A artist);
+        public List<I> getImages (A artist);
+    }
+
+    /**
+     * TrackFields - read access to a track in the top tracks result
+     */
+    public interface TrackFields<T, I> {
+        public String  getArtistName (T track);
+        public String  getName (T track);
+        public String  getAlbumName (T track);
+        public List<I> getAlbumImages (T track);
+        public String  getPreviewUrl (T track);
+    }
+
+    public ItemMapper (ImageSelector imageSelector, ImageSelector.ImageFields<I> imageFields,
+                       ArtistFields<A, I> artistFields, TrackFields<T, I> trackFields) {
+        myImageSelector = imageSelector;
+        myImageFields   = imageFields;
+        myArtistFields  = artistFields;
+        myTrackFields   = trackFields;
+    }
+
+    public ImageSelector getImageSelector () {
+        return myImageSelector;
+    }
+
+    // buildArtistItems -- map the artists in a search result to artist items
+    public ArrayList<ArtistItem> buildArtistItems (List<A> artists) {
+        ArrayList<ArtistItem> artistItems = new ArrayList<ArtistItem>(artists.size());
+
+        for (int i = 0; i < artists.size(); i++) {
+            A artist = artists.get(i);
+
+            // get artist name and ID directly from the search results
+            String artistName      = myArtistFields.getName(artist);
+            String artistSpotifyId = myArtistFields.getId(artist);
+
+            // pick the image that best fits the artist list row
+            String artistImageURL  = myImageSelector.selectArtistListImage(
+                    myArtistFields.getImages(artist), myImageFields);
+
+            // create new artist item based on search results
+            artistItems.add(new ArtistItem (artistName, artistSpotifyId, artistImageURL));
+        }
+        return artistItems;
+    }
+
+    // buildTopTrackItems -- map the tracks in a top tracks result to top track items
+    public ArrayList<TopTrackItem> buildTopTrackItems (List<T> tracks) {
+        ArrayList<TopTrackItem> topTrackItems = new ArrayList<TopTrackItem>(tracks.size());
+
+        for (int i = 0; i < tracks.size(); i++) {
+            T track = tracks.get(i);
+
+            // get track and album name directly from the search results
+            String topTrackArtistName   = myTrackFields.getArtistName(track);
+            String topTrackName         = myTrackFields.getName(track);
+            String topTrackAlbumName    = myTrackFields.getAlbumName(track);
+            String topTrackAudioURL     = myTrackFields.getPreviewUrl(track);
+
+            // pick the album images that best fit the track list row and the play view
+            List<I> albumImages         = myTrackFields.getAlbumImages(track);
+            String topTrackListImageURL = myImageSelector.selectTrackListImage(albumImages, myImageFields);
+            String topTrackPlayImageURL = myImageSelector.selectTrackPlayImage(albumImages, myImageFields);
+
+            // create new top tracks item based on search results
+            topTrackItems.add(new TopTrackItem (
+                    topTrackArtistName, topTrackName, topTrackAlbumName,
+                    topTrackListImageURL, topTrackPlayImageURL, topTrackAudioURL));
+        }
+        return topTrackItems;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * ListDiff - works out the item level inserts, removals, moves and changes that turn one list
+ *     into another, so a list view only animates and rebinds the rows that really changed
+ *
+ *     items are matched by key. Items found in both lists keep their place when they belong to
+ *     the longest run already in the new order, every other matched item is moved, so the number
+ *     of moves is as small as it can be. Duplicate keys are told apart by how often they were
+ *     seen before.
+ *
+ *     compute does not touch the views and is meant to run off the main thread, dispatch then
+ *     replays the result on the main thread
+ *
+ *     this class is used by DiffingListAdapter
+ *
+ */
+public class ListDiff {
+
+    // operations, stored as (type, position, position) triples
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_MOVE   = 2;
+    private static final int OP_CHANGE = 3;
+
+    /**
+     * Keys - tells ListDiff which items are the same and whether their contents changed. Must be
+     *     safe to call off the main thread.
+     */
+    public interface Keys<T> {
+        public String getItemKey (T item);
+        public boolean areContentsTheSame (T oldItem, T newItem);
+    }
+
+    /**
+     * Receiver - gets the operations in the order they must be applied, positions are those of
+     *     the list as it is at that point
+     */
+    public interface Receiver {
+        public void onInserted (int position);
+        public void onRemoved (int position);
+        public void onMoved (int fromPosition, int toPosition);
+        public void onChanged (int position);
+    }
+
+    private int[] myOps = new int[30];
+    private int   myOpCount;
+
+    // unique keys of the new list, in order
+    private final List<String> myNewKeys;
+
+    // statistics
+    private int  myInsertCount;
+    private int  myRemoveCount;
+    private int  myMoveCount;
+    private int  myChangeCount;
+    private long myComputeNs;
+
+    private ListDiff (List<String> newKeys) {
+        myNewKeys = newKeys;
+    }
+
+    /**
+     * compute - work out the operations that turn oldItems into newItems. Neither list may
+     *     change while this runs.
+     */
+    public static <T> ListDiff compute (List<T> oldItems, List<T> newItems, Keys<T> keys) {
+        long startNs = System.nanoTime();
+
+        List<String> oldKeys = uniqueKeys(oldItems, keys);
+        List<String> newKeys = uniqueKeys(newItems, keys);
+        ListDiff diff = new ListDiff(newKeys);
+
+        HashMap<String, Integer> oldIndex = indexOf(oldKeys);
+        HashMap<String, Integer> newIndex = indexOf(newKeys);
+
+        // removals first, from the end so earlier positions stay put
+        ArrayList<String> working = new ArrayList<String>(oldKeys.size());
+        for (int i = oldKeys.size() - 1; i >= 0; i--) {
+            if (!newIndex.containsKey(oldKeys.get(i))) {
+                diff.addOp(OP_REMOVE, i, 0);
+                diff.myRemoveCount++;
+            }
+        }
+        for (String key : oldKeys) {
+            if (newIndex.containsKey(key)) {
+                working.add(key);
+            }
+        }
+
+        // the kept items already in new order stay where they are
+        boolean[] stays = new boolean[newKeys.size()];
+        int[] keptNewPositions = new int[working.size()];
+        for (int i = 0; i < working.size(); i++) {
+            keptNewPositions[i] = newIndex.get(working.get(i));
+        }
+        for (int newPosition : longestIncreasingRun(keptNewPositions)) {
+            stays[newPosition] = true;
+        }
+
+        // walk the new list from the end, moving or inserting each item in front of the one that
+        // follows it, the items that stay keep their order so everything ends up in place
+        for (int i = newKeys.size() - 1; i >= 0; i--) {
+            if (stays[i]) {
+                continue;
+            }
+
+            String key    = newKeys.get(i);
+            int    anchor = (i + 1 < newKeys.size()) ? working.indexOf(newKeys.get(i + 1)) : working.size();
+
+            if (oldIndex.containsKey(key)) {
+                int from = working.indexOf(key);
+                working.remove(from);
+                if (from < anchor) {
+                    anchor--;
+                }
+                working.add(anchor, key);
+                if (from != anchor) {
+                    diff.addOp(OP_MOVE, from, anchor);
+                    diff.myMoveCount++;
+                }
+            } else {
+                working.add(anchor, key);
+                diff.addOp(OP_INSERT, anchor, 0);
+                diff.myInsertCount++;
+            }
+        }
+
+        // finally the items whose contents changed, at their final positions
+        for (int i = 0; i < newKeys.size(); i++) {
+            Integer oldPosition = oldIndex.get(newKeys.get(i));
+            if ( (oldPosition != null) &&
+                    !keys.areContentsTheSame(oldItems.get(oldPosition), newItems.get(i)) ) {
+                diff.addOp(OP_CHANGE, i, 0);
+                diff.myChangeCount++;
+            }
+        }
+
+        diff.myComputeNs = System.nanoTime() - startNs;
+        return diff;
+    }
+
+    // dispatch -- replay the operations, in order
+    public void dispatch (Receiver receiver) {
+        for (int i = 0; i < myOpCount; i += 3) {
+            switch (myOps[i]) {
+                case OP_INSERT:
+                    receiver.onInserted(myOps[i + 1]);
+                    break;
+                case OP_REMOVE:
+                    receiver.onRemoved(myOps[i + 1]);
+                    break;
+                case OP_MOVE:
+                    receiver.onMoved(myOps[i + 1], myOps[i + 2]);
+                    break;
+                default:
+                    receiver.onChanged(myOps[i + 1]);
+                    break;
+            }
+        }
+    }
+
+    // getNewKeys -- unique keys of the new list, used for stable item IDs
+    public List<String> getNewKeys () {
+        return myNewKeys;
+    }
+
+    public int getInsertCount () {
+        return myInsertCount;
+    }
+
+    public int getRemoveCount () {
+        return myRemoveCount;
+    }
+
+    public int getMoveCount () {
+        return myMoveCount;
+    }
+
+    public int getChangeCount () {
+        return myChangeCount;
+    }
+
+    public long getComputeNs () {
+        return myComputeNs;
+    }
+
+    private void addOp (int type, int first, int second) {
+        if (myOpCount + 3 > myOps.length) {
+            myOps = Arrays.copyOf(myOps, myOps.length * 2);
+        }
+        myOps[myOpCount++] = type;
+        myOps[myOpCount++] = first;
+        myOps[myOpCount++] = second;
+    }
+
+    // uniqueKeys -- item keys, a repeated key gets the number of earlier copies appended
+    private static <T> List<String> uniqueKeys (List<T> items, Keys<T> keys) {
+        ArrayList<String>        result = new ArrayList<String>(items.size());
+        HashMap<String, Integer> seen   = new HashMap<String, Integer>();
+
+        for (T item : items) {
+            String  key   = keys.getItemKey(item);
+            key           = (key == null) ? "" : key;
+            Integer count = seen.get(key);
+
+            seen.put(key, (count == null) ? 1 : count + 1);
+            result.add((count == null) ? key : key + '\u0000' + count);
+        }
+        return result;
+    }
+
+    private static HashMap<String, Integer> indexOf (List<String> keys) {
+        HashMap<String, Integer> result = new HashMap<String, Integer>(keys.size() * 2);
+        for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), i);
+        }
+        return result;
+    }
+
+    // longestIncreasingRun -- values of one longest strictly increasing subsequence
+    private static int[] longestIncreasingRun (int[] values) {
+        int[] tailIndex = new int[values.length];
+        int[] previous  = new int[values.length];
+        int   length    = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            // find the first run end that is not smaller than this value
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tailIndex[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            previous[i]    = (low > 0) ? tailIndex[low - 1] : -1;
+            tailIndex[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] result = new int[length];
+        for (int i = length - 1, k = (length > 0) ? tailIndex[length - 1] : -1; i >= 0; i--) {
+            result[i] = values[k];
+            k = previous[k];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return ("inserted=" + myInsertCount +
+                "|removed=" + myRemoveCount +
+                "|moved=" + myMoveCount +
+                "|changed=" + myChangeCount +
+                "|computeUs=" + (myComputeNs / 1000));
+    }
+}
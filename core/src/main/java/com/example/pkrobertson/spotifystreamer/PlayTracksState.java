@@ -0,0 +1,12 @@
+package com.example.pkrobertson.spotifystreamer;
+
+/**
+ * PlayTracksState - playback states presented to the outside world by PlayTracksService
+ *
+ */
+public enum PlayTracksState {
+    PLAYTRACKS_INACTIVE,
+    PLAYTRACKS_PLAYING,
+    PLAYTRACKS_PAUSED,
+    PLAYTRACKS_ERROR
+}
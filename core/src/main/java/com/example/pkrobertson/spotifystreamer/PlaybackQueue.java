@@ -0,0 +1,68 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.util.List;
+
+/**
+ * PlaybackQueue - the top tracks being played and the position now playing. Moving past
+ *     either end wraps around, so playback keeps cycling through the tracks until stopped.
+ *
+ *     this class is used by PlayTracksService
+ *
+ */
+public class PlaybackQueue {
+
+    // position when there are no tracks
+    public static final int NO_POSITION = -1;
+
+    private List<TopTrackItem> myItems    = null;
+    private int                myPosition = NO_POSITION;
+
+    // setTracks -- play a new list of tracks, starting at "position"
+    public void setTracks (List<TopTrackItem> items, int position) {
+        myItems    = items;
+        myPosition = position;
+    }
+
+    public int size () {
+        return (myItems != null) ? myItems.size() : 0;
+    }
+
+    public int getPosition () {
+        return myPosition;
+    }
+
+    // get -- track at a queue position
+    public TopTrackItem get (int position) {
+        return myItems.get(position);
+    }
+
+    // getCurrent -- track now playing, null when there is none
+    public TopTrackItem getCurrent () {
+        if ( (myItems != null) && (myPosition != NO_POSITION) ) {
+            return myItems.get(myPosition);
+        }
+        return null;
+    }
+
+    // getNextPosition -- position played after the current one, wrapping to the first track
+    public int getNextPosition () {
+        return (myPosition >= (size() - 1)) ? 0 : myPosition + 1;
+    }
+
+    // getPreviousPosition -- position played before the current one, wrapping to the last track
+    public int getPreviousPosition () {
+        return (myPosition <= 0) ? size() - 1 : myPosition - 1;
+    }
+
+    public void moveTo (int position) {
+        myPosition = position;
+    }
+
+    public void moveToNext () {
+        myPosition = getNextPosition();
+    }
+
+    public void moveToPrevious () {
+        myPosition = getPreviousPosition();
+    }
+}
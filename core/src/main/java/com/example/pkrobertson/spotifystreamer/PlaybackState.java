@@ -0,0 +1,69 @@
+package com.example.pkrobertson.spotifystreamer;
+
+/**
+ * PlaybackState - private states used by PlayTracksService to manage the media player, the
+ *     changes allowed between them and how each one is presented to the outside world
+ *
+ *     STATE_STOPPED is final, the service is going away. Any other state can start a new
+ *     track (STATE_PREPARING) or fail (STATE_ERROR), only a prepared or paused player can play
+ *     and only a playing one can pause.
+ *
+ *     this class is used by PlayTracksService
+ *
+ */
+public enum PlaybackState {
+    STATE_INITIALIZE,
+    STATE_PREPARING,
+    STATE_PLAYING,
+    STATE_PAUSED,
+    STATE_STOPPED,
+    STATE_ERROR;
+
+    // canMoveTo -- true when a change from this state to "next" is allowed
+    public boolean canMoveTo (PlaybackState next) {
+        switch (this) {
+            case STATE_STOPPED:
+                return false;
+
+            case STATE_INITIALIZE:
+            case STATE_ERROR:
+                return (next == STATE_PREPARING) || (next == STATE_ERROR) || (next == STATE_STOPPED);
+
+            case STATE_PREPARING:
+            case STATE_PAUSED:
+                return (next != STATE_INITIALIZE) && (next != STATE_PAUSED);
+
+            default:
+                // playing, a gapless switch to the next track stays in STATE_PLAYING
+                return (next != STATE_INITIALIZE);
+        }
+    }
+
+    // isActive -- a track is loading, playing or paused
+    public boolean isActive () {
+        return (this == STATE_PREPARING) || (this == STATE_PLAYING) || (this == STATE_PAUSED);
+    }
+
+    // hasTrackPosition -- the media player has a duration and position to report or seek in
+    public boolean hasTrackPosition () {
+        return (this == STATE_PLAYING) || (this == STATE_PAUSED);
+    }
+
+    // toPlayTracksState -- state as seen from outside the service
+    public PlayTracksState toPlayTracksState () {
+        switch (this) {
+            case STATE_PREPARING :
+            case STATE_PLAYING   :
+                return PlayTracksState.PLAYTRACKS_PLAYING;
+
+            case STATE_PAUSED    :
+                return PlayTracksState.PLAYTRACKS_PAUSED;
+
+            case STATE_ERROR     :
+                return PlayTracksState.PLAYTRACKS_ERROR;
+
+            default              :
+                return PlayTracksState.PLAYTRACKS_INACTIVE;
+        }
+    }
+}
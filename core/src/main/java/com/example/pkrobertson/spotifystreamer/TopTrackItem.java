@@ -0,0 +1,103 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.net.URI;
+
+/**
+ * TopTrackItem - class that stores the track name, album name and track image URL
+ *
+ *     this structure is built by ItemMapper and used by the TopTracksListAdapter to show and
+ *     render artist tracks
+ *
+ *     image and audio URLs are validated once when the item is built, the Valid fields are
+ *     false when a URL is missing or not valid and ItemListCodec saves them along with the
+ *     item. Items decoded by ItemListCodec only parse a URL if its Uri getter is called.
+ *
+ */
+public class TopTrackItem {
+    public final String topTrackArtistName;
+    public final String topTrackName;
+    public final String topTrackAlbumName;
+    public final String topTrackListImageURL;
+    public final String topTrackPlayImageURL;
+    public final String topTrackAudioURL;
+
+    // true when each URL is a valid web URL
+    public final boolean topTrackListImageValid;
+    public final boolean topTrackPlayImageValid;
+    public final boolean topTrackAudioValid;
+
+    // parsed URLs, parsed on first use for decoded items
+    private volatile URI topTrackListImageUri;
+    private volatile URI topTrackPlayImageUri;
+    private volatile URI topTrackAudioUri;
+
+    public TopTrackItem (String topTrackArtistName,
+                         String topTrackName,
+                         String topTrackAlbumName,
+                         String topTrackListImageURL,
+                         String topTrackPlayImageURL,
+                         String topTrackAudioURL) {
+        this.topTrackArtistName   = topTrackArtistName;
+        this.topTrackName         = topTrackName;
+        this.topTrackAlbumName    = topTrackAlbumName;
+        this.topTrackListImageURL = topTrackListImageURL;
+        this.topTrackPlayImageURL = topTrackPlayImageURL;
+        this.topTrackAudioURL     = topTrackAudioURL;
+        this.topTrackListImageUri   = UrlValidator.parseWebUrl(topTrackListImageURL);
+        this.topTrackPlayImageUri   = UrlValidator.parseWebUrl(topTrackPlayImageURL);
+        this.topTrackAudioUri       = UrlValidator.parseWebUrl(topTrackAudioURL);
+        this.topTrackListImageValid = (topTrackListImageUri != null);
+        this.topTrackPlayImageValid = (topTrackPlayImageUri != null);
+        this.topTrackAudioValid     = (topTrackAudioUri != null);
+    }
+
+    // constructor used when decoding saved items, "valid" holds one bit per URL as written
+    //     by ItemListCodec
+    TopTrackItem (String topTrackArtistName,
+                  String topTrackName,
+                  String topTrackAlbumName,
+                  String topTrackListImageURL,
+                  String topTrackPlayImageURL,
+                  String topTrackAudioURL,
+                  byte   valid) {
+        this.topTrackArtistName   = topTrackArtistName;
+        this.topTrackName         = topTrackName;
+        this.topTrackAlbumName    = topTrackAlbumName;
+        this.topTrackListImageURL = topTrackListImageURL;
+        this.topTrackPlayImageURL = topTrackPlayImageURL;
+        this.topTrackAudioURL     = topTrackAudioURL;
+        this.topTrackListImageValid = ((valid & 1) != 0);
+        this.topTrackPlayImageValid = ((valid & 2) != 0);
+        this.topTrackAudioValid     = ((valid & 4) != 0);
+    }
+
+    // getTopTrackListImageUri -- validated list image URL, null when missing or not valid
+    public URI getTopTrackListImageUri () {
+        if (topTrackListImageValid && (topTrackListImageUri == null)) {
+            topTrackListImageUri = UrlValidator.readValidated(topTrackListImageURL, true);
+        }
+        return topTrackListImageUri;
+    }
+
+    // getTopTrackPlayImageUri -- validated play screen image URL, null when missing or not valid
+    public URI getTopTrackPlayImageUri () {
+        if (topTrackPlayImageValid && (topTrackPlayImageUri == null)) {
+            topTrackPlayImageUri = UrlValidator.readValidated(topTrackPlayImageURL, true);
+        }
+        return topTrackPlayImageUri;
+    }
+
+    // getTopTrackAudioUri -- validated preview URL, null when missing or not valid
+    public URI getTopTrackAudioUri () {
+        if (topTrackAudioValid && (topTrackAudioUri == null)) {
+            topTrackAudioUri = UrlValidator.readValidated(topTrackAudioURL, true);
+        }
+        return topTrackAudioUri;
+    }
+
+    @Override
+    public String toString() {
+        return (topTrackArtistName + "|" + topTrackName + "|" + topTrackAlbumName + "|" +
+                topTrackListImageURL + "|" + topTrackPlayImageURL + "|" + topTrackAudioURL);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * UrlValidator - checks image and audio URLs returned by Spotify once, when ArtistItem and
+ *     TopTrackItem are built, so list binders and the player only read a flag
+ *
+ *     a web URL is an absolute http or https URL with a host. This is stricter and looser than
+ *     the android.util.Patterns.WEB_URL check it replaced: a URL without a scheme or with an
+ *     rtsp scheme is rejected, an upper case scheme or a host without a top level domain such
+ *     as "localhost" is accepted. Both agree on the URLs Spotify returns, as
+ *     UrlValidatorAgreementTest in the benchmarks module checks.
+ *
+ */
+public class UrlValidator {
+
+    // parseWebUrl -- returns the parsed URL, or null when it is missing or not a web URL
+    public static URI parseWebUrl (String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI    uri    = new URI(url);
+            String scheme = uri.getScheme();
+            if ( ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) &&
+                    (uri.getHost() != null) ) {
+                return uri;
+            }
+        } catch (URISyntaxException e) {
+            // not a URL
+        }
+        return null;
+    }
+
+    // readValidated -- rebuild a URL checked before it was saved. Skips the scheme and host
+    //     check but is still a full parse, so decoded items only call it when asked for the URI.
+    public static URI readValidated (String url, boolean valid) {
+        if (!valid || (url == null)) {
+            return null;
+        }
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
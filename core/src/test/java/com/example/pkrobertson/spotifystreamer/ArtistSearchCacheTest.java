@@ -0,0 +1,103 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ArtistSearchCacheTest - query normalization, time to live, least recently used eviction and
+ *     answering a longer query from a cached shorter one
+ *
+ */
+public class ArtistSearchCacheTest {
+
+    private static final long LONG_TTL_MS = 60 * 60 * 1000;
+
+    // a time to live below zero expires entries as soon as they are put
+    private static final long EXPIRED_TTL_MS = -1;
+
+    private static final List<ArtistItem> BEAT_ARTISTS = Arrays.asList(
+            new ArtistItem("The Beatles", "1", null),
+            new ArtistItem("Beat Happening", "2", null),
+            new ArtistItem("Beatle Bob", "3", null));
+
+    private static List<String> names (List<ArtistItem> artistItems) {
+        String[] result = new String[artistItems.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = artistItems.get(i).artistName;
+        }
+        return Arrays.asList(result);
+    }
+
+    @Test
+    public void normalizedQueriesShareAnEntry () {
+        ArtistSearchCache cache = new ArtistSearchCache(10, LONG_TTL_MS);
+        cache.put("Sigur R\u00f3s", BEAT_ARTISTS);
+
+        assertNotNull(cache.get("  sigur   ROS "));
+        assertEquals(1, cache.getHitCount());
+        assertNull(cache.get("sigur"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredEntriesOnlyServedStale () {
+        ArtistSearchCache cache = new ArtistSearchCache(10, EXPIRED_TTL_MS);
+        cache.put("beatl", BEAT_ARTISTS);
+
+        assertNull(cache.get("beatl"));
+        assertEquals(1, cache.getExpiredCount());
+        assertNull(cache.getPrefixMatch("beatles"));
+        assertEquals(BEAT_ARTISTS.size(), cache.getStale("beatl").size());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted () {
+        ArtistSearchCache cache = new ArtistSearchCache(2, LONG_TTL_MS);
+        cache.put("a", BEAT_ARTISTS);
+        cache.put("b", BEAT_ARTISTS);
+        cache.get("a");
+        cache.put("c", BEAT_ARTISTS);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.getStale("a"));
+        assertNull(cache.getStale("b"));
+        assertNotNull(cache.getStale("c"));
+    }
+
+    @Test
+    public void prefixMatchFiltersLongestCachedQuery () {
+        ArtistSearchCache cache = new ArtistSearchCache(10, LONG_TTL_MS);
+        cache.put("b", Arrays.asList(new ArtistItem("Bj\u00f6rk", "4", null)));
+        cache.put("beatl", BEAT_ARTISTS);
+
+        assertEquals(Arrays.asList("The Beatles", "Beatle Bob"), names(cache.getPrefixMatch("Beatle")));
+        assertEquals(Arrays.asList("Beatle Bob"), names(cache.getPrefixMatch("beatle bo")));
+        assertEquals(2, cache.getPrefixHitCount());
+    }
+
+    @Test
+    public void prefixMatchNeedsAShorterQuery () {
+        ArtistSearchCache cache = new ArtistSearchCache(10, LONG_TTL_MS);
+        cache.put("beatles", BEAT_ARTISTS);
+
+        assertNull(cache.getPrefixMatch("beatles"));
+        assertNull(cache.getPrefixMatch("beat"));
+        assertNull(cache.getPrefixMatch("coldplay"));
+    }
+
+    @Test
+    public void cachedListIsACopy () {
+        ArtistSearchCache cache = new ArtistSearchCache(10, LONG_TTL_MS);
+        cache.put("beatl", BEAT_ARTISTS);
+        cache.get("beatl").clear();
+
+        assertEquals(BEAT_ARTISTS.size(), cache.get("beatl").size());
+    }
+}
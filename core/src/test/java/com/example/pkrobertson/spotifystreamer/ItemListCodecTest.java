@@ -0,0 +1,134 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ItemListCodecTest - encoded lists decode to the same items, and data that is cut short, not
+ *     in the format or corrupted decodes to null instead of throwing
+ *
+ */
+public class ItemListCodecTest {
+
+    private static final String IMAGE_PREFIX   = "https://i.scdn.co/image/";
+    private static final String PREVIEW_PREFIX = "https://p.scdn.co/mp3-preview/";
+
+    private static List<ArtistItem> artists () {
+        return Arrays.asList(
+                new ArtistItem("Coldplay", "4gzpq5DPGxSnKTe4SA8HAU", IMAGE_PREFIX + "c0ldp1ay"),
+                new ArtistItem("Sigur R\u00f3s", "6UUrUCIZtQeOf8tC0WuzRy", null),
+                new ArtistItem("No Image", "0000000000000000000000", "not a url"),
+                new ArtistItem(null, null, ""));
+    }
+
+    private static List<TopTrackItem> tracks () {
+        return Arrays.asList(
+                new TopTrackItem("Coldplay", "Yellow", "Parachutes",
+                        IMAGE_PREFIX + "small", IMAGE_PREFIX + "large", PREVIEW_PREFIX + "yellow"),
+                new TopTrackItem("Coldplay", "Trouble", "Parachutes",
+                        IMAGE_PREFIX + "small", IMAGE_PREFIX + "large", null),
+                new TopTrackItem("Coldplay", "Clocks", "A Rush of Blood to the Head",
+                        null, "ftp://example.com/large", PREVIEW_PREFIX + "clocks"));
+    }
+
+    @Test
+    public void artistsRoundTrip () {
+        List<ArtistItem> items   = artists();
+        List<ArtistItem> decoded = ItemListCodec.decodeArtists(ItemListCodec.encodeArtists(items));
+
+        assertNotNull(decoded);
+        assertEquals(items.size(), decoded.size());
+        for (int i = 0; i < items.size(); i++) {
+            ArtistItem item = items.get(i);
+            ArtistItem copy = decoded.get(i);
+            assertEquals(item.artistName, copy.artistName);
+            assertEquals(item.artistSpotifyId, copy.artistSpotifyId);
+            assertEquals(item.artistImageURL, copy.artistImageURL);
+            assertEquals(item.artistImageValid, copy.artistImageValid);
+            assertEquals(item.getArtistImageUri(), copy.getArtistImageUri());
+        }
+    }
+
+    @Test
+    public void tracksRoundTrip () {
+        List<TopTrackItem> items   = tracks();
+        List<TopTrackItem> decoded = ItemListCodec.decodeTracks(ItemListCodec.encodeTracks(items));
+
+        assertNotNull(decoded);
+        assertEquals(items.size(), decoded.size());
+        for (int i = 0; i < items.size(); i++) {
+            TopTrackItem item = items.get(i);
+            TopTrackItem copy = decoded.get(i);
+            assertEquals(item.toString(), copy.toString());
+            assertEquals(item.topTrackListImageValid, copy.topTrackListImageValid);
+            assertEquals(item.getTopTrackListImageUri(), copy.getTopTrackListImageUri());
+            assertEquals(item.topTrackPlayImageValid, copy.topTrackPlayImageValid);
+            assertEquals(item.getTopTrackPlayImageUri(), copy.getTopTrackPlayImageUri());
+            assertEquals(item.topTrackAudioValid, copy.topTrackAudioValid);
+            assertEquals(item.getTopTrackAudioUri(), copy.getTopTrackAudioUri());
+        }
+    }
+
+    @Test
+    public void emptyListsRoundTrip () {
+        assertEquals(0, ItemListCodec.decodeArtists(
+                ItemListCodec.encodeArtists(new ArrayList<ArtistItem>())).size());
+        assertEquals(0, ItemListCodec.decodeTracks(
+                ItemListCodec.encodeTracks(new ArrayList<TopTrackItem>())).size());
+    }
+
+    @Test
+    public void wrongKindIsRejected () {
+        assertNull(ItemListCodec.decodeTracks(ItemListCodec.encodeArtists(artists())));
+        assertNull(ItemListCodec.decodeArtists(ItemListCodec.encodeTracks(tracks())));
+    }
+
+    @Test
+    public void truncatedDataIsRejected () {
+        byte[] data = ItemListCodec.encodeTracks(tracks());
+        for (int length = 0; length < data.length; length++) {
+            assertNull("length " + length, ItemListCodec.decodeTracks(Arrays.copyOf(data, length)));
+        }
+    }
+
+    @Test
+    public void negativeLengthsAreRejected () {
+        // version 1, artists, string count -2 as a 5 byte varint
+        assertNull(ItemListCodec.decodeArtists(new byte[] {
+                1, 1, (byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }));
+
+        // version 1, artists, no strings, item count -1
+        assertNull(ItemListCodec.decodeArtists(new byte[] {
+                1, 1, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }));
+    }
+
+    @Test
+    public void lengthsLongerThanTheDataAreRejected () {
+        // version 1, tracks, 2^28 strings
+        assertNull(ItemListCodec.decodeTracks(new byte[] {
+                1, 2, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 }));
+    }
+
+    @Test
+    public void corruptedDataNeverThrows () {
+        byte[] data   = ItemListCodec.encodeTracks(tracks());
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            byte[] corrupt = data.clone();
+            for (int flips = 1 + random.nextInt(3); flips > 0; flips--) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            }
+            // null or some list, either is fine as long as nothing escapes
+            ItemListCodec.decodeTracks(corrupt);
+            ItemListCodec.decodeArtists(corrupt);
+        }
+    }
+}
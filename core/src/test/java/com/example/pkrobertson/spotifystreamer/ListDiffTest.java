@@ -0,0 +1,175 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ListDiffTest - replays the operations of a diff on the old list and checks the result is the
+ *     new list, for hand picked and random edits
+ *
+ *     items are "key:contents" strings, an inserted row is null until it is bound
+ *
+ */
+public class ListDiffTest {
+
+    private static final ListDiff.Keys<String> KEYS = new ListDiff.Keys<String>() {
+        public String getItemKey (String item) {
+            return item.substring(0, item.indexOf(':'));
+        }
+
+        public boolean areContentsTheSame (String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    // Rows -- a list view's rows, changed the way the adapter notifications change them
+    private static class Rows implements ListDiff.Receiver {
+        final List<String> rows;
+        final Set<Integer> changed = new HashSet<Integer>();
+
+        Rows (List<String> oldItems) {
+            rows = new ArrayList<String>(oldItems);
+        }
+
+        public void onInserted (int position) {
+            rows.add(position, null);
+        }
+
+        public void onRemoved (int position) {
+            rows.remove(position);
+        }
+
+        public void onMoved (int fromPosition, int toPosition) {
+            rows.add(toPosition, rows.remove(fromPosition));
+        }
+
+        public void onChanged (int position) {
+            changed.add(position);
+        }
+    }
+
+    // apply -- diff the lists, replay the diff and check every row ended up in place
+    private static ListDiff apply (List<String> oldItems, List<String> newItems) {
+        ListDiff diff = ListDiff.compute(oldItems, newItems, KEYS);
+        Rows     rows = new Rows(oldItems);
+        diff.dispatch(rows);
+
+        assertEquals(newItems.size(), rows.rows.size());
+        Set<String>  oldKeys = new HashSet<String>(numberedKeys(oldItems));
+        List<String> newKeys = numberedKeys(newItems);
+
+        Set<Integer> expectChanged = new HashSet<Integer>();
+        for (int i = 0; i < newItems.size(); i++) {
+            String row     = rows.rows.get(i);
+            String newItem = newItems.get(i);
+            if (!oldKeys.contains(newKeys.get(i))) {
+                assertNull("row " + i + " should be inserted", row);
+                continue;
+            }
+            assertEquals("row " + i, KEYS.getItemKey(newItem), KEYS.getItemKey(row));
+            if (!row.equals(newItem)) {
+                expectChanged.add(i);
+            }
+        }
+        assertEquals(expectChanged, rows.changed);
+        assertEquals(diff.getChangeCount(), rows.changed.size());
+        return diff;
+    }
+
+    // numberedKeys -- item keys with the number of earlier copies, the second "a" is "a#1"
+    private static List<String> numberedKeys (List<String> items) {
+        List<String> result = new ArrayList<String>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String key    = KEYS.getItemKey(items.get(i));
+            int    copies = 0;
+            for (int j = 0; j < i; j++) {
+                if (KEYS.getItemKey(items.get(j)).equals(key)) {
+                    copies++;
+                }
+            }
+            result.add(key + "#" + copies);
+        }
+        return result;
+    }
+
+    @Test
+    public void identicalListsHaveNoOperations () {
+        List<String> items = Arrays.asList("a:1", "b:1", "c:1");
+        ListDiff diff = apply(items, items);
+        assertEquals(0, diff.getInsertCount() + diff.getRemoveCount() + diff.getMoveCount() +
+                diff.getChangeCount());
+    }
+
+    @Test
+    public void insertsAndRemoves () {
+        ListDiff diff = apply(Arrays.asList("a:1", "b:1", "c:1", "d:1"),
+                              Arrays.asList("x:1", "a:1", "c:1", "y:1"));
+        assertEquals(2, diff.getInsertCount());
+        assertEquals(2, diff.getRemoveCount());
+        assertEquals(0, diff.getMoveCount());
+    }
+
+    @Test
+    public void movingOneItemIsOneMove () {
+        ListDiff diff = apply(Arrays.asList("a:1", "b:1", "c:1", "d:1", "e:1"),
+                              Arrays.asList("b:1", "c:1", "d:1", "e:1", "a:1"));
+        assertEquals(1, diff.getMoveCount());
+        assertEquals(0, diff.getInsertCount() + diff.getRemoveCount());
+    }
+
+    @Test
+    public void changedContentsAreReportedAtNewPositions () {
+        ListDiff diff = apply(Arrays.asList("a:1", "b:1", "c:1"),
+                              Arrays.asList("c:2", "a:1", "b:2"));
+        assertEquals(2, diff.getChangeCount());
+    }
+
+    @Test
+    public void duplicateKeys () {
+        apply(Arrays.asList("a:1", "a:2", "b:1", "a:3"),
+              Arrays.asList("b:1", "a:1", "a:2"));
+    }
+
+    @Test
+    public void emptyLists () {
+        List<String> empty = new ArrayList<String>();
+        apply(empty, empty);
+        assertEquals(3, apply(empty, Arrays.asList("a:1", "b:1", "c:1")).getInsertCount());
+        assertEquals(3, apply(Arrays.asList("a:1", "b:1", "c:1"), empty).getRemoveCount());
+    }
+
+    @Test
+    public void randomEdits () {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<String> oldItems = randomList(random);
+            List<String> newItems = randomList(random);
+            apply(oldItems, newItems);
+        }
+    }
+
+    @Test
+    public void getNewKeysFollowsNewList () {
+        ListDiff diff = ListDiff.compute(Arrays.asList("a:1"), Arrays.asList("b:1", "a:1"), KEYS);
+        assertEquals(Arrays.asList("b", "a"), diff.getNewKeys());
+    }
+
+    // randomList -- up to 20 items drawn from 12 keys, so lists overlap and keys repeat
+    private static List<String> randomList (Random random) {
+        int          size   = random.nextInt(21);
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            result.add("k" + random.nextInt(12) + ":" + random.nextInt(3));
+        }
+        return result;
+    }
+}
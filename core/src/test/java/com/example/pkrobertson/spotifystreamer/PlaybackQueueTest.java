@@ -0,0 +1,82 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * PlaybackQueueTest - moving through the queue, wrapping around at either end
+ *
+ */
+public class PlaybackQueueTest {
+
+    private static List<TopTrackItem> tracks (int count) {
+        List<TopTrackItem> result = new ArrayList<TopTrackItem>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new TopTrackItem("Artist", "Track " + i, "Album", null, null, null));
+        }
+        return result;
+    }
+
+    @Test
+    public void emptyQueueHasNoCurrentTrack () {
+        PlaybackQueue queue = new PlaybackQueue();
+        assertEquals(0, queue.size());
+        assertEquals(PlaybackQueue.NO_POSITION, queue.getPosition());
+        assertNull(queue.getCurrent());
+    }
+
+    @Test
+    public void nextWrapsToFirstTrack () {
+        List<TopTrackItem> items = tracks(3);
+        PlaybackQueue      queue = new PlaybackQueue();
+        queue.setTracks(items, 1);
+
+        queue.moveToNext();
+        assertEquals(2, queue.getPosition());
+        assertEquals(0, queue.getNextPosition());
+        queue.moveToNext();
+        assertEquals(0, queue.getPosition());
+        assertSame(items.get(0), queue.getCurrent());
+    }
+
+    @Test
+    public void previousWrapsToLastTrack () {
+        List<TopTrackItem> items = tracks(3);
+        PlaybackQueue      queue = new PlaybackQueue();
+        queue.setTracks(items, 0);
+
+        assertEquals(2, queue.getPreviousPosition());
+        queue.moveToPrevious();
+        assertSame(items.get(2), queue.getCurrent());
+        queue.moveToPrevious();
+        assertEquals(1, queue.getPosition());
+    }
+
+    @Test
+    public void singleTrackWrapsToItself () {
+        PlaybackQueue queue = new PlaybackQueue();
+        queue.setTracks(tracks(1), 0);
+
+        assertEquals(0, queue.getNextPosition());
+        assertEquals(0, queue.getPreviousPosition());
+    }
+
+    @Test
+    public void newTracksReplaceTheQueue () {
+        List<TopTrackItem> items = tracks(5);
+        PlaybackQueue      queue = new PlaybackQueue();
+        queue.setTracks(tracks(2), 1);
+        queue.setTracks(items, 4);
+
+        assertEquals(5, queue.size());
+        assertSame(items.get(4), queue.getCurrent());
+        queue.moveTo(2);
+        assertSame(items.get(2), queue.get(queue.getPosition()));
+    }
+}
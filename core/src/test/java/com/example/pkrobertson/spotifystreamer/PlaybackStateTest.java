@@ -0,0 +1,62 @@
+package com.example.pkrobertson.spotifystreamer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * PlaybackStateTest - the full table of allowed state changes and how each state is presented
+ *     outside the service
+ *
+ */
+public class PlaybackStateTest {
+
+    private static final boolean Y = true;
+    private static final boolean N = false;
+
+    // ALLOWED -- rows are the current state, columns the next one, both in declaration order:
+    //     INITIALIZE, PREPARING, PLAYING, PAUSED, STOPPED, ERROR
+    private static final boolean[][] ALLOWED = {
+            /* INITIALIZE */ { N, Y, N, N, Y, Y },
+            /* PREPARING  */ { N, Y, Y, N, Y, Y },
+            /* PLAYING    */ { N, Y, Y, Y, Y, Y },
+            /* PAUSED     */ { N, Y, Y, N, Y, Y },
+            /* STOPPED    */ { N, N, N, N, N, N },
+            /* ERROR      */ { N, Y, N, N, Y, Y },
+    };
+
+    @Test
+    public void transitionTable () {
+        PlaybackState[] states = PlaybackState.values();
+        assertEquals(ALLOWED.length, states.length);
+
+        for (int from = 0; from < states.length; from++) {
+            for (int to = 0; to < states.length; to++) {
+                assertEquals(states[from] + " -> " + states[to],
+                        ALLOWED[from][to], states[from].canMoveTo(states[to]));
+            }
+        }
+    }
+
+    @Test
+    public void activeStates () {
+        for (PlaybackState state : PlaybackState.values()) {
+            boolean active = (state == PlaybackState.STATE_PREPARING) ||
+                    (state == PlaybackState.STATE_PLAYING) || (state == PlaybackState.STATE_PAUSED);
+            boolean hasPosition = (state == PlaybackState.STATE_PLAYING) ||
+                    (state == PlaybackState.STATE_PAUSED);
+            assertEquals(state.toString(), active, state.isActive());
+            assertEquals(state.toString(), hasPosition, state.hasTrackPosition());
+        }
+    }
+
+    @Test
+    public void outsideStates () {
+        assertEquals(PlayTracksState.PLAYTRACKS_INACTIVE, PlaybackState.STATE_INITIALIZE.toPlayTracksState());
+        assertEquals(PlayTracksState.PLAYTRACKS_PLAYING,  PlaybackState.STATE_PREPARING.toPlayTracksState());
+        assertEquals(PlayTracksState.PLAYTRACKS_PLAYING,  PlaybackState.STATE_PLAYING.toPlayTracksState());
+        assertEquals(PlayTracksState.PLAYTRACKS_PAUSED,   PlaybackState.STATE_PAUSED.toPlayTracksState());
+        assertEquals(PlayTracksState.PLAYTRACKS_INACTIVE, PlaybackState.STATE_STOPPED.toPlayTracksState());
+        assertEquals(PlayTracksState.PLAYTRACKS_ERROR,    PlaybackState.STATE_ERROR.toPlayTracksState());
+    }
+}